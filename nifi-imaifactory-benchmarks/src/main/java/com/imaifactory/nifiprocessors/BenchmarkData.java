@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Deterministic sample content shared by the benchmarks.
+ */
+final class BenchmarkData {
+
+    static final OutputStream NULL_OUTPUT = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private static final String[] METHODS = {"GET", "POST", "PUT", "DELETE"};
+    private static final String[] STATUSES = {"200", "200", "200", "304", "404", "500"};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @return LTSV lines of {@code fields} fields each, about {@code size} bytes in total
+     */
+    static byte[] ltsv(int fields, int size) {
+        final Random random = new Random(42);
+        final StringBuilder content = new StringBuilder(size + 1024);
+        while (content.length() < size) {
+            content.append("host:10.0.").append(random.nextInt(256)).append('.').append(random.nextInt(256));
+            content.append("\ttime:[10/Oct/2000:13:55:").append(10 + random.nextInt(50)).append(" -0700]");
+            content.append("\treq:").append(METHODS[random.nextInt(METHODS.length)]).append(" /item/").append(random.nextInt(100000)).append(" HTTP/1.1");
+            content.append("\tstatus:").append(STATUSES[random.nextInt(STATUSES.length)]);
+            for (int i = 4; i < fields; i++) {
+                content.append("\tfield").append(i).append(':').append(Long.toHexString(random.nextLong()));
+            }
+            content.append('\n');
+        }
+        return content.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return a mix of access log, error and unparseable lines, about {@code size} bytes in total
+     */
+    static byte[] logLines(int size) {
+        final Random random = new Random(42);
+        final StringBuilder content = new StringBuilder(size + 1024);
+        while (content.length() < size) {
+            final int kind = random.nextInt(10);
+            if (kind < 7) {
+                content.append("10.0.").append(random.nextInt(256)).append('.').append(random.nextInt(256))
+                        .append(" - - [10/Oct/2000:13:55:36 -0700] \"")
+                        .append(METHODS[random.nextInt(METHODS.length)]).append(" /item/").append(random.nextInt(100000))
+                        .append(" HTTP/1.1\" ").append(STATUSES[random.nextInt(STATUSES.length)])
+                        .append(' ').append(random.nextInt(10000));
+            } else if (kind < 9) {
+                content.append("2000-10-10 13:55:36 ERROR [worker-").append(random.nextInt(16)).append("] request ")
+                        .append(random.nextInt(100000)).append(" failed: timeout");
+            } else {
+                content.append("--- rotated ---");
+            }
+            content.append('\n');
+        }
+        return content.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
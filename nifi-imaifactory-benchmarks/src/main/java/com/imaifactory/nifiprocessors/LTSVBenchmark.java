@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LTSV parse and JSON serialize, as done by {@link ConvertLTSVToJSON} for one
+ * FlowFile. Throughput is in FlowFiles; divide by the size for bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LTSVBenchmark {
+
+    @Param({"4", "32"})
+    public int fieldsPerLine;
+
+    @Param({"4096", "1048576", "16777216"})
+    public int flowFileSize;
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private byte[] content;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        content = BenchmarkData.ltsv(fieldsPerLine, flowFileSize);
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    public void singleThreaded() throws IOException {
+        final LTSVTokenizer tokenizer = new LTSVTokenizer(new ByteArrayInputStream(content));
+        try {
+            ConvertLTSVToJSON.writeRecords(tokenizer, jsonFactory.createGenerator(BenchmarkData.NULL_OUTPUT));
+        } finally {
+            tokenizer.release();
+        }
+    }
+
+    @Benchmark
+    public void parallel() throws IOException {
+        new ParallelLTSVConverter(jsonFactory, pool, 256 * 1024)
+                .convert(new ByteArrayInputStream(content), BenchmarkData.NULL_OUTPUT);
+    }
+}
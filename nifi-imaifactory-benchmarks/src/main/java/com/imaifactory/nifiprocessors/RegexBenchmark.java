@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.io.SerializedString;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Named-group extraction with several patterns, as done by
+ * {@link ConvertToJSONWithRegex} for one FlowFile of mixed log lines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RegexBenchmark {
+
+    private static final String[] PATTERNS = {
+            "^(?<host>\\S+) - - \\[(?<time>[^\\]]+)\\] \"(?<method>[A-Z]+) (?<path>\\S+) [^\"]*\" (?<status>\\d{3}) (?<size>\\d+)$",
+            "^(?<date>\\S+ \\S+) ERROR \\[(?<thread>[^\\]]+)\\] (?<message>.*)$",
+            "^(?<date>\\S+ \\S+) WARN (?<message>.*)$",
+    };
+
+    @Param({"1", "3"})
+    public int patternCount;
+
+    @Param({"false", "true"})
+    public boolean linearTime;
+
+    @Param({"65536", "4194304"})
+    public int flowFileSize;
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private byte[] content;
+    private NamedGroupPattern[] patterns;
+    private int[] order;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        content = BenchmarkData.logLines(flowFileSize);
+        patterns = new NamedGroupPattern[patternCount];
+        for (int i = 0; i < patternCount; i++) {
+            patterns[i] = NamedGroupPattern.compile("p" + i, PATTERNS[i], linearTime);
+        }
+    }
+
+    @Benchmark
+    public long extract() throws IOException {
+        final MultiPatternMatcher matcher = new MultiPatternMatcher(patterns, order, 0);
+        final ConvertToJSONWithRegex.Counts counts = new ConvertToJSONWithRegex.Counts();
+        final LineReader lines = new LineReader(new ByteArrayInputStream(content));
+        try {
+            ConvertToJSONWithRegex.writeRecords(lines, matcher, new SerializedString("format"), null,
+                    jsonFactory.createGenerator(BenchmarkData.NULL_OUTPUT), true,
+                    BenchmarkData.NULL_OUTPUT, BenchmarkData.NULL_OUTPUT, counts);
+        } finally {
+            lines.release();
+        }
+        order = matcher.getOrder();
+        return counts.matched;
+    }
+}
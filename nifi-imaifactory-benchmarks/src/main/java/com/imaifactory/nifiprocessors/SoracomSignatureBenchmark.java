@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verification of one SORACOM Beam request by {@link VerifySoracomSignature}.
+ * <p>
+ * {@link #concatenatedHex} is the original implementation, kept as the
+ * baseline for the allocation rate reported by {@code -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SoracomSignatureBenchmark {
+
+    private static final String SECRET = "topsecret";
+    private static final String IMEI = "359675070019530";
+    private static final String IMSI = "440103114938318";
+    private static final String TIMESTAMP = "1494631852102";
+
+    @Param({"1000"})
+    public int secretCount;
+
+    private String signature;
+    private SoracomSignatureVerifier verifier;
+    private SoracomSecrets secrets;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        signature = DigestUtils.sha256Hex(SECRET + "x-soracom-imei=" + IMEI + "x-soracom-imsi=" + IMSI
+                + "x-soracom-timestamp=" + TIMESTAMP);
+        verifier = new SoracomSignatureVerifier(SECRET);
+
+        final StringBuilder file = new StringBuilder();
+        for (int i = 0; i < secretCount; i++) {
+            file.append(44010311490000L + i * 7).append(" = group-").append(i).append('\n');
+        }
+        file.append("440103114938318 = ").append(SECRET).append('\n');
+        secrets = SoracomSecrets.load(new StringReader(file.toString()));
+    }
+
+    @Benchmark
+    public boolean concatenatedHex() {
+        String stringToSign = SECRET;
+        stringToSign = stringToSign + "x-soracom-imei=" + IMEI;
+        stringToSign = stringToSign + "x-soracom-imsi=" + IMSI;
+        stringToSign = stringToSign + "x-soracom-timestamp=" + TIMESTAMP;
+        return DigestUtils.sha256Hex(stringToSign).equals(signature);
+    }
+
+    @Benchmark
+    public boolean preSeededDigest() {
+        return verifier.verify(IMEI, IMSI, TIMESTAMP, signature);
+    }
+
+    @Benchmark
+    public boolean secretLookupAndVerify() {
+        return secrets.lookup(IMSI).verify(IMEI, IMSI, TIMESTAMP, signature);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.processor.AbstractProcessor;
+import org.apache.nifi.processor.ProcessContext;
+import org.apache.nifi.processor.ProcessSession;
+import org.apache.nifi.processor.exception.ProcessException;
+import org.apache.nifi.processor.util.StandardValidators;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base class for processors that handle each FlowFile on its own but take
+ * many of them per trigger, which amortizes the framework overhead of a
+ * trigger over a batch of small FlowFiles.
+ * <p>
+ * Up to Batch Size FlowFiles are taken with {@link ProcessSession#get(int)}.
+ * Once Batch Duration has elapsed, the FlowFiles not yet processed are put
+ * back on the queue for the next trigger. Subclasses route each FlowFile to
+ * success or failure on its own, so one bad FlowFile does not affect the
+ * rest of the batch.
+ */
+public abstract class AbstractBatchingProcessor extends AbstractProcessor {
+
+    public static final PropertyDescriptor BATCH_SIZE = new PropertyDescriptor.Builder()
+            .name("Batch Size")
+            .required(true)
+            .defaultValue("100")
+            .description("The maximum number of FlowFiles processed in one trigger")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor BATCH_DURATION = new PropertyDescriptor.Builder()
+            .name("Batch Duration")
+            .required(true)
+            .defaultValue("100 ms")
+            .description("The time after which no further FlowFiles of a batch are started; "
+                    + "the rest are left on the queue for the next trigger")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .build();
+
+    @Override
+    public final void onTrigger(final ProcessContext context, final ProcessSession session) throws ProcessException {
+        final List<FlowFile> flowFiles = session.get(context.getProperty(BATCH_SIZE).asInteger());
+        if (flowFiles.isEmpty()) {
+            return;
+        }
+
+        final long deadline = System.nanoTime() + context.getProperty(BATCH_DURATION).asTimePeriod(TimeUnit.NANOSECONDS);
+        for (int i = 0; i < flowFiles.size(); i++) {
+            if (i > 0 && System.nanoTime() - deadline > 0) {
+                for (int j = i; j < flowFiles.size(); j++) {
+                    session.transfer(flowFiles.get(j));
+                }
+                return;
+            }
+            onTrigger(context, session, flowFiles.get(i));
+        }
+    }
+
+    /**
+     * Processes one FlowFile of the batch and transfers it, routing it to
+     * failure rather than throwing when only this FlowFile is at fault.
+     */
+    protected abstract void onTrigger(ProcessContext context, ProcessSession session, FlowFile flowFile) throws ProcessException;
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+/**
+ * A view of a line that allows only a limited number of character reads.
+ * <p>
+ * Regex engines read their input through {@link #charAt(int)}, so the number
+ * of reads bounds the work done on one line. A catastrophically backtracking
+ * pattern therefore fails fast with {@link BudgetExceededException} instead of
+ * holding the thread.
+ */
+final class BudgetedCharSequence implements CharSequence {
+
+    private CharSequence line;
+    private long remaining;
+
+    /**
+     * @return this, reading {@code line} with a budget of {@code steps} character reads
+     */
+    BudgetedCharSequence reset(CharSequence line, long steps) {
+        this.line = line;
+        this.remaining = steps;
+        return this;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (--remaining < 0) {
+            throw new BudgetExceededException();
+        }
+        return line.charAt(index);
+    }
+
+    @Override
+    public int length() {
+        return line.length();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return line.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return line.toString();
+    }
+
+    static final class BudgetExceededException extends RuntimeException {
+
+        BudgetExceededException() {
+            super("Match step budget exceeded", null, false, false);
+        }
+    }
+}
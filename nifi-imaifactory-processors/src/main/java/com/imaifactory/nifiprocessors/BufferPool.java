@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Per-thread pools of the buffers and decoders that the processors would
+ * otherwise allocate for every FlowFile: the read buffers of
+ * {@link LineReader}, its decoded lines and UTF-8 decoder, the write buffers
+ * of {@link #newOutputStream}, and the scratch buffers of
+ * {@link SoracomSignatureVerifier}.
+ * <p>
+ * A buffer is taken for the lifetime of one reader or stream and released
+ * when it is done with, so several can be in use on a thread at once, as
+ * when one callback writes to success, unmatched and failure together.
+ * Arrays are only reused for the exact length they are asked for; the
+ * processors ask for a handful of fixed sizes. Each thread keeps at most
+ * {@link #MAX_POOLED_BYTES} of arrays and {@link #MAX_POOLED_DECODERS}
+ * decoders, and what is released beyond that, such as a buffer grown for a
+ * very long line, is left to the garbage collector.
+ * <p>
+ * JSON generators are not pooled here: a generator is bound to its output
+ * stream, and the Jackson factories already recycle the byte and char
+ * buffers of their generators per thread.
+ */
+final class BufferPool {
+
+    static final int WRITE_BUFFER_SIZE = 16 * 1024;
+    static final int MAX_POOLED_BYTES = 1024 * 1024;
+    static final int MAX_POOLED_DECODERS = 2;
+
+    private static final int MAX_POOLED_ARRAYS = 16;
+
+    private static final ThreadLocal<BufferPool> pools = new ThreadLocal<BufferPool>() {
+        @Override
+        protected BufferPool initialValue() {
+            return new BufferPool();
+        }
+    };
+
+    private final byte[][] bytes = new byte[MAX_POOLED_ARRAYS][];
+    private int byteCount;
+    private final char[][] chars = new char[MAX_POOLED_ARRAYS][];
+    private int charCount;
+    private final CharsetDecoder[] decoders = new CharsetDecoder[MAX_POOLED_DECODERS];
+    private int decoderCount;
+    private long pooledBytes;
+
+    private BufferPool() {
+    }
+
+    /**
+     * @return an array of exactly {@code length} bytes, with arbitrary content
+     */
+    static byte[] takeBytes(int length) {
+        final BufferPool pool = pools.get();
+        for (int i = pool.byteCount - 1; i >= 0; i--) {
+            final byte[] buffer = pool.bytes[i];
+            if (buffer.length == length) {
+                pool.bytes[i] = pool.bytes[--pool.byteCount];
+                pool.bytes[pool.byteCount] = null;
+                pool.pooledBytes -= length;
+                return buffer;
+            }
+        }
+        return new byte[length];
+    }
+
+    /**
+     * Returns an array taken with {@link #takeBytes} to the pool of the current
+     * thread. It must not be used by the caller afterwards.
+     */
+    static void release(byte[] buffer) {
+        final BufferPool pool = pools.get();
+        if (pool.byteCount < MAX_POOLED_ARRAYS && pool.pooledBytes + buffer.length <= MAX_POOLED_BYTES) {
+            pool.bytes[pool.byteCount++] = buffer;
+            pool.pooledBytes += buffer.length;
+        }
+    }
+
+    /**
+     * @return an array of exactly {@code length} chars, with arbitrary content
+     */
+    static char[] takeChars(int length) {
+        final BufferPool pool = pools.get();
+        for (int i = pool.charCount - 1; i >= 0; i--) {
+            final char[] buffer = pool.chars[i];
+            if (buffer.length == length) {
+                pool.chars[i] = pool.chars[--pool.charCount];
+                pool.chars[pool.charCount] = null;
+                pool.pooledBytes -= length * 2L;
+                return buffer;
+            }
+        }
+        return new char[length];
+    }
+
+    static void release(char[] buffer) {
+        final BufferPool pool = pools.get();
+        if (pool.charCount < MAX_POOLED_ARRAYS && pool.pooledBytes + buffer.length * 2L <= MAX_POOLED_BYTES) {
+            pool.chars[pool.charCount++] = buffer;
+            pool.pooledBytes += buffer.length * 2L;
+        }
+    }
+
+    /**
+     * @return a UTF-8 decoder that replaces malformed and unmappable input
+     */
+    static CharsetDecoder takeDecoder() {
+        final BufferPool pool = pools.get();
+        if (pool.decoderCount > 0) {
+            final CharsetDecoder decoder = pool.decoders[--pool.decoderCount];
+            pool.decoders[pool.decoderCount] = null;
+            return decoder;
+        }
+        return StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    static void release(CharsetDecoder decoder) {
+        final BufferPool pool = pools.get();
+        if (pool.decoderCount < MAX_POOLED_DECODERS) {
+            pool.decoders[pool.decoderCount++] = decoder.reset();
+        }
+    }
+
+    /**
+     * @return a buffered stream over {@code out} whose buffer comes from the
+     * pool and goes back to it when the stream is closed. Closing it also closes {@code out}
+     */
+    static OutputStream newOutputStream(OutputStream out) {
+        return new PooledOutputStream(out);
+    }
+
+    /**
+     * @return the number of bytes of arrays the current thread's pool holds
+     */
+    static long getPooledBytes() {
+        return pools.get().pooledBytes;
+    }
+
+    private static final class PooledOutputStream extends OutputStream {
+        private final OutputStream out;
+        private byte[] buffer = takeBytes(WRITE_BUFFER_SIZE);
+        private int count;
+
+        PooledOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                flushBuffer();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length >= buffer.length) {
+                flushBuffer();
+                out.write(bytes, offset, length);
+                return;
+            }
+            if (length > buffer.length - count) {
+                flushBuffer();
+            }
+            System.arraycopy(bytes, offset, buffer, count, length);
+            count += length;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            flushBuffer();
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (buffer == null) {
+                return;
+            }
+            try (OutputStream out = this.out) {
+                flushBuffer();
+            } finally {
+                release(buffer);
+                buffer = null;
+            }
+        }
+
+        private void flushBuffer() throws IOException {
+            if (count > 0) {
+                out.write(buffer, 0, count);
+                count = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorInputStream;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorOutputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorOutputStream;
+import org.apache.nifi.components.AllowableValue;
+import org.apache.nifi.components.PropertyDescriptor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The compression of the content the converters read and write, so that
+ * compressed logs can be converted without CompressContent writing a
+ * decompressed copy before the converter and a compressed one after it.
+ * <p>
+ * Compressed input is recognized by the magic number at the start of the
+ * content. LTSV and log lines do not start with any of them: the gzip and
+ * zstd magic numbers are not valid UTF-8, and the LZ4 one, while ASCII,
+ * starts with the control character EOT. Text is therefore not mistaken
+ * for compressed content. Concatenated gzip members and LZ4
+ * frames, as written by appending to a log file, are read as one stream.
+ */
+enum Compression {
+
+    NONE("none", null, "The content is not compressed", null),
+    GZIP("gzip", "application/gzip", "gzip (RFC 1952)", new byte[]{0x1f, (byte) 0x8b}),
+    ZSTD("zstd", "application/zstd", "Zstandard (RFC 8478)", new byte[]{0x28, (byte) 0xb5, 0x2f, (byte) 0xfd}),
+    LZ4("lz4", "application/x-lz4-framed", "The LZ4 frame format", new byte[]{0x04, 0x22, 0x4d, 0x18});
+
+    private static final int BUFFER_SIZE = 65536;
+    private static final int MAX_MAGIC_LENGTH = 4;
+
+    static final AllowableValue AUTO_DETECT = new AllowableValue("auto-detect", "auto-detect",
+            "Decompress gzip, zstd and lz4 content, recognized by its magic number, and read anything else as it is");
+
+    static final PropertyDescriptor INPUT_PROPERTY = new PropertyDescriptor.Builder()
+            .name("Input Compression")
+            .required(true)
+            .allowableValues(AUTO_DETECT, NONE.allowableValue)
+            .defaultValue(AUTO_DETECT.getValue())
+            .description("Whether compressed content is decompressed while it is read")
+            .build();
+
+    static final PropertyDescriptor OUTPUT_PROPERTY = new PropertyDescriptor.Builder()
+            .name("Output Compression")
+            .required(true)
+            .allowableValues(allowableValues())
+            .defaultValue(NONE.allowableValue.getValue())
+            .description("The compression of the records written to success, applied while they are written. "
+                    + "When set, mime.type is the type of the compression rather than of the output format")
+            .build();
+
+    private final AllowableValue allowableValue;
+    private final String mimeType;
+    private final byte[] magic;
+
+    Compression(String name, String mimeType, String description, byte[] magic) {
+        this.allowableValue = new AllowableValue(name, name, description);
+        this.mimeType = mimeType;
+        this.magic = magic;
+    }
+
+    static Compression forValue(String value) {
+        for (Compression compression : values()) {
+            if (compression.allowableValue.getValue().equals(value)) {
+                return compression;
+            }
+        }
+        throw new IllegalArgumentException("Unknown compression " + value);
+    }
+
+    private static AllowableValue[] allowableValues() {
+        final Compression[] compressions = values();
+        final AllowableValue[] allowableValues = new AllowableValue[compressions.length];
+        for (int i = 0; i < compressions.length; i++) {
+            allowableValues[i] = compressions[i].allowableValue;
+        }
+        return allowableValues;
+    }
+
+    /**
+     * @return the content of {@code in}, decompressed if it starts with a known magic number
+     */
+    static InputStream decompress(InputStream in) throws IOException {
+        final PushbackInputStream pushback = new PushbackInputStream(in, MAX_MAGIC_LENGTH);
+        final byte[] head = new byte[MAX_MAGIC_LENGTH];
+        int length = 0;
+        int read;
+        while (length < head.length && (read = pushback.read(head, length, head.length - length)) > 0) {
+            length += read;
+        }
+        if (length > 0) {
+            pushback.unread(head, 0, length);
+        }
+        return detect(head, length).createInputStream(pushback);
+    }
+
+    /**
+     * @return the compression whose magic number {@code head} starts with, or NONE
+     */
+    static Compression detect(byte[] head, int length) {
+        for (Compression compression : values()) {
+            if (compression.magic != null && compression.magic.length <= length && startsWith(head, compression.magic)) {
+                return compression;
+            }
+        }
+        return NONE;
+    }
+
+    private static boolean startsWith(byte[] head, byte[] magic) {
+        for (int i = 0; i < magic.length; i++) {
+            if (head[i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private InputStream createInputStream(InputStream in) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPInputStream(in, BUFFER_SIZE);
+            case ZSTD:
+                return new ZstdCompressorInputStream(in);
+            case LZ4:
+                return new FramedLZ4CompressorInputStream(in, true);
+            default:
+                return in;
+        }
+    }
+
+    /**
+     * @return a stream that writes the compressed form of what is written to it to {@code out}.
+     * Closing it finishes the compressed stream and closes {@code out}
+     */
+    OutputStream compress(OutputStream out) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPOutputStream(out, BUFFER_SIZE);
+            case ZSTD:
+                return new ZstdCompressorOutputStream(out);
+            case LZ4:
+                return new FramedLZ4CompressorOutputStream(out);
+            default:
+                return out;
+        }
+    }
+
+    /**
+     * @return the mime type of content in this compression, or null for NONE
+     */
+    String getMimeType() {
+        return mimeType;
+    }
+}
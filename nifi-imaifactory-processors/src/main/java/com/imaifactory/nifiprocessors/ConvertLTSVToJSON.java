@@ -16,48 +16,207 @@
  */
 package com.imaifactory.nifiprocessors;
 
-import am.ik.ltsv4j.LTSV;
-import am.ik.ltsv4j.LTSVParser;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.nifi.annotation.behavior.WritesAttribute;
+import org.apache.nifi.annotation.behavior.WritesAttributes;
 import org.apache.nifi.annotation.documentation.CapabilityDescription;
+import org.apache.nifi.annotation.lifecycle.OnScheduled;
+import org.apache.nifi.annotation.lifecycle.OnStopped;
 import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.components.ValidationContext;
+import org.apache.nifi.components.ValidationResult;
+import org.apache.nifi.components.Validator;
 import org.apache.nifi.flowfile.FlowFile;
 import org.apache.nifi.flowfile.attributes.CoreAttributes;
 import org.apache.nifi.processor.*;
 import org.apache.nifi.processor.exception.ProcessException;
+import org.apache.nifi.processor.io.InputStreamCallback;
+import org.apache.nifi.processor.io.OutputStreamCallback;
 import org.apache.nifi.processor.io.StreamCallback;
-import org.apache.nifi.stream.io.BufferedOutputStream;
-import org.codehaus.jackson.map.ObjectMapper;
+import org.apache.nifi.processor.util.StandardValidators;
+import org.apache.nifi.stream.io.ByteCountingOutputStream;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 
+@WritesAttributes({
+        @WritesAttribute(attribute = "ltsv.record.count", description = "Number of records converted"),
+        @WritesAttribute(attribute = "ltsv.invalid.count", description = "Number of lines routed to invalid, when Max Invalid Lines is set"),
+        @WritesAttribute(attribute = "ltsv.bytes.in", description = "Size of the LTSV content"),
+        @WritesAttribute(attribute = "ltsv.convert.millis", description = "Time taken to convert the content"),
+        @WritesAttribute(attribute = "fragment.identifier", description = "When the output is split, the same random ID on all FlowFiles split from one input"),
+        @WritesAttribute(attribute = "fragment.index", description = "When the output is split, the position of the FlowFile among them, starting at 0"),
+        @WritesAttribute(attribute = "fragment.count", description = "When the output is split, the number of FlowFiles split from one input"),
+        @WritesAttribute(attribute = "segment.original.filename", description = "When the output is split, the filename of the input")
+})
 @CapabilityDescription("The processor which converts LTSV to JSON")
-public class ConvertLTSVToJSON extends AbstractProcessor {
+public class ConvertLTSVToJSON extends AbstractBatchingProcessor {
 
-    private static final String APPLICATION_JSON = "application/json";
+    static final String RECORD_COUNT_ATTRIBUTE = "ltsv.record.count";
+    static final String INVALID_COUNT_ATTRIBUTE = "ltsv.invalid.count";
+    static final String BYTES_IN_ATTRIBUTE = "ltsv.bytes.in";
+    static final String CONVERT_MILLIS_ATTRIBUTE = "ltsv.convert.millis";
+    static final String FRAGMENT_ID_ATTRIBUTE = "fragment.identifier";
+    static final String FRAGMENT_INDEX_ATTRIBUTE = "fragment.index";
+    static final String FRAGMENT_COUNT_ATTRIBUTE = "fragment.count";
+    static final String ORIGINAL_FILENAME_ATTRIBUTE = "segment.original.filename";
+
+    static final String RECORDS_COUNTER = "Records parsed";
+    static final String LINES_INVALID_COUNTER = "Lines invalid";
+    static final String FLOWFILES_FAILED_COUNTER = "FlowFiles failed";
+    static final String BYTES_IN_COUNTER = "Bytes in";
+    static final String BYTES_OUT_COUNTER = "Bytes out";
+
+    private static final LatencyCounters convertLatency = new LatencyCounters("Convert");
 
     public static final Relationship REL_SUCCESS = new Relationship.Builder().name("success")
             .description("Successfully converted attributes to JSON").build();
     public static final Relationship REL_FAILURE = new Relationship.Builder().name("failure")
             .description("Failed to convert attributes to JSON").build();
+    public static final Relationship REL_INVALID = new Relationship.Builder().name("invalid")
+            .description("When Max Invalid Lines is set, the lines that are not valid LTSV, each as its line number, a tab and the line").build();
+
+    public static final PropertyDescriptor PARALLELISM = new PropertyDescriptor.Builder()
+            .name("Parallelism")
+            .required(true)
+            .defaultValue("1")
+            .description("The number of threads used to convert one FlowFile that is at least Parallel Conversion "
+                    + "Threshold in size. The threads are shared by all tasks of this processor. 1 disables parallel conversion. "
+                    + "Only JSON output is converted in parallel")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor PARALLEL_THRESHOLD = new PropertyDescriptor.Builder()
+            .name("Parallel Conversion Threshold")
+            .required(true)
+            .defaultValue("64 MB")
+            .description("FlowFiles smaller than this are converted on the calling thread")
+            .addValidator(StandardValidators.DATA_SIZE_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor CHUNK_SIZE = new PropertyDescriptor.Builder()
+            .name("Parallel Chunk Size")
+            .required(true)
+            .defaultValue("4 MB")
+            .description("The approximate size of the line-aligned chunks converted in parallel. "
+                    + "Up to two chunks per thread are held in memory")
+            .addValidator(StandardValidators.DATA_SIZE_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor MAX_INVALID_LINES = new PropertyDescriptor.Builder()
+            .name("Max Invalid Lines")
+            .required(false)
+            .description("When set, lines that are not valid LTSV are routed to invalid instead of failing the FlowFile, "
+                    + "unless there are more of them than this. When unset, the first invalid line fails the FlowFile")
+            .addValidator(StandardValidators.NON_NEGATIVE_INTEGER_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor MAX_RECORDS_PER_FLOWFILE = new PropertyDescriptor.Builder()
+            .name("Max Records Per FlowFile")
+            .required(false)
+            .description("When set, the output is split into FlowFiles of at most this many records, written in the "
+                    + "same pass and each a complete document of the Output Format, with fragment attributes. "
+                    + "Splitting disables parallel conversion")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor MAX_BYTES_PER_FLOWFILE = new PropertyDescriptor.Builder()
+            .name("Max Bytes Per FlowFile")
+            .required(false)
+            .description("When set, the output is split into FlowFiles of about this size before Output Compression, "
+                    + "written in the same pass with fragment attributes. A FlowFile ends with the record that reaches "
+                    + "the size, so it may exceed it by up to one record. Splitting disables parallel conversion")
+            .addValidator(StandardValidators.DATA_SIZE_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor OUTPUT_FORMAT = OutputFormat.PROPERTY;
+
+    public static final PropertyDescriptor INPUT_COMPRESSION = Compression.INPUT_PROPERTY;
+
+    public static final PropertyDescriptor OUTPUT_COMPRESSION = Compression.OUTPUT_PROPERTY;
+
+    public static final PropertyDescriptor INCLUDE_FIELDS = new PropertyDescriptor.Builder()
+            .name("Include Fields")
+            .required(false)
+            .description("Comma separated labels of the only fields to write. Other fields are skipped while the line "
+                    + "is split. Cannot be combined with Exclude Fields")
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor EXCLUDE_FIELDS = new PropertyDescriptor.Builder()
+            .name("Exclude Fields")
+            .required(false)
+            .description("Comma separated labels of fields not to write. Cannot be combined with Include Fields")
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .build();
+
+    static final Validator FIELD_TYPES_VALIDATOR = new Validator() {
+        @Override
+        public ValidationResult validate(final String subject, final String input, final ValidationContext context) {
+            String explanation = null;
+            try {
+                LTSVSchema.parse(null, null, input);
+            } catch (IllegalArgumentException e) {
+                explanation = e.getMessage();
+            }
+            return new ValidationResult.Builder().subject(subject).input(input)
+                    .valid(explanation == null).explanation(explanation).build();
+        }
+    };
+
+    public static final PropertyDescriptor FIELD_TYPES = new PropertyDescriptor.Builder()
+            .name("Field Types")
+            .required(false)
+            .description("Comma separated label:type pairs, e.g. status:long,reqtime:double,msec:epoch, of fields "
+                    + "to write as native JSON values. Types are long, double, boolean, and epoch for seconds since "
+                    + "the epoch with an optional fraction, written as milliseconds. The timestamp and iso8601 types "
+                    + "read a time such as [18/Oct/2026:14:04:05 +0900] or 2026-10-18T14:04:05+09:00 and write it as "
+                    + "milliseconds since the epoch or as ISO-8601 with milliseconds. A value that does not parse is "
+                    + "written as a string and an empty value as null. Other fields are written as strings")
+            .addValidator(FIELD_TYPES_VALIDATOR)
+            .build();
 
     private List<PropertyDescriptor> descriptors;
 
     private Set<Relationship> relationships;
 
-    private static final ObjectMapper objectMapper = new ObjectMapper();
-    private static final LTSVParser ltsvParser = LTSV.parser();
+    private volatile OutputFormat format;
+    private volatile boolean decompress;
+    private volatile Compression compression;
+    private volatile LTSVSchema schema;
+    private volatile ForkJoinPool pool;
+    private volatile long parallelThreshold;
+    private volatile int chunkSize;
+    private volatile long maxInvalidLines;
+    private volatile long maxRecords;
+    private volatile long maxBytes;
 
     @Override
     protected void init(final ProcessorInitializationContext context) {
         final List<PropertyDescriptor> descriptors = new ArrayList<PropertyDescriptor>();
+        descriptors.add(OUTPUT_FORMAT);
+        descriptors.add(INPUT_COMPRESSION);
+        descriptors.add(OUTPUT_COMPRESSION);
+        descriptors.add(INCLUDE_FIELDS);
+        descriptors.add(EXCLUDE_FIELDS);
+        descriptors.add(FIELD_TYPES);
+        descriptors.add(PARALLELISM);
+        descriptors.add(PARALLEL_THRESHOLD);
+        descriptors.add(CHUNK_SIZE);
+        descriptors.add(MAX_INVALID_LINES);
+        descriptors.add(MAX_RECORDS_PER_FLOWFILE);
+        descriptors.add(MAX_BYTES_PER_FLOWFILE);
+        descriptors.add(BATCH_SIZE);
+        descriptors.add(BATCH_DURATION);
         this.descriptors = Collections.unmodifiableList(descriptors);
         final Set<Relationship> relationships = new HashSet<Relationship>();
         relationships.add(REL_SUCCESS);
         relationships.add(REL_FAILURE);
+        relationships.add(REL_INVALID);
         this.relationships = Collections.unmodifiableSet(relationships);
     }
 
@@ -72,26 +231,298 @@ public class ConvertLTSVToJSON extends AbstractProcessor {
     }
 
     @Override
-    public void onTrigger(final ProcessContext context, final ProcessSession session) throws ProcessException {
-        final FlowFile original = session.get();
-        if ( original == null ) {
-            return;
+    protected Collection<ValidationResult> customValidate(final ValidationContext context) {
+        return validateFieldSelection(context);
+    }
+
+    static List<ValidationResult> validateFieldSelection(final ValidationContext context) {
+        final List<ValidationResult> results = new ArrayList<>();
+        if (context.getProperty(INCLUDE_FIELDS).isSet() && context.getProperty(EXCLUDE_FIELDS).isSet()) {
+            results.add(new ValidationResult.Builder().subject(EXCLUDE_FIELDS.getName()).valid(false)
+                    .explanation("Only one of " + INCLUDE_FIELDS.getName() + " and " + EXCLUDE_FIELDS.getName()
+                            + " may be set").build());
+        }
+        return results;
+    }
+
+    @OnScheduled
+    public void onScheduled(final ProcessContext context) {
+        this.format = OutputFormat.forValue(context.getProperty(OUTPUT_FORMAT).getValue());
+        this.decompress = Compression.AUTO_DETECT.getValue().equals(context.getProperty(INPUT_COMPRESSION).getValue());
+        this.compression = Compression.forValue(context.getProperty(OUTPUT_COMPRESSION).getValue());
+        this.schema = createSchema(context.getProperty(INCLUDE_FIELDS).getValue(),
+                context.getProperty(EXCLUDE_FIELDS).getValue(), context.getProperty(FIELD_TYPES).getValue());
+        final int parallelism = context.getProperty(PARALLELISM).asInteger();
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        this.parallelThreshold = context.getProperty(PARALLEL_THRESHOLD).asDataSize(DataUnit.B).longValue();
+        this.chunkSize = (int) Math.min(context.getProperty(CHUNK_SIZE).asDataSize(DataUnit.B).longValue(), Integer.MAX_VALUE / 2);
+        this.maxInvalidLines = context.getProperty(MAX_INVALID_LINES).isSet()
+                ? context.getProperty(MAX_INVALID_LINES).asLong() : -1;
+        this.maxRecords = context.getProperty(MAX_RECORDS_PER_FLOWFILE).isSet()
+                ? context.getProperty(MAX_RECORDS_PER_FLOWFILE).asLong() : Long.MAX_VALUE;
+        this.maxBytes = context.getProperty(MAX_BYTES_PER_FLOWFILE).isSet()
+                ? context.getProperty(MAX_BYTES_PER_FLOWFILE).asDataSize(DataUnit.B).longValue() : Long.MAX_VALUE;
+    }
+
+    /**
+     * @return the schema of the field properties, or null if none is set
+     */
+    static LTSVSchema createSchema(String include, String exclude, String types) {
+        return include == null && exclude == null && types == null ? null : LTSVSchema.parse(include, exclude, types);
+    }
+
+    @OnStopped
+    public void onStopped() {
+        final ForkJoinPool pool = this.pool;
+        if (pool != null) {
+            pool.shutdownNow();
+            this.pool = null;
         }
+    }
+
+    @Override
+    protected void onTrigger(final ProcessContext context, final ProcessSession session, final FlowFile original) throws ProcessException {
+        final OutputFormat format = this.format;
+        final boolean decompress = this.decompress;
+        final Compression compression = this.compression;
+        final LTSVSchema schema = this.schema;
+        final long maxRecords = this.maxRecords;
+        final long maxBytes = this.maxBytes;
+        final boolean split = maxRecords < Long.MAX_VALUE || maxBytes < Long.MAX_VALUE;
+        final ForkJoinPool pool = this.pool;
+        final boolean parallel = pool != null && !split && format == OutputFormat.JSON && original.getSize() >= parallelThreshold;
+        final int chunkSize = this.chunkSize;
+        final long maxInvalidLines = this.maxInvalidLines;
+        final long[] records = new long[1];
+        final long bytesIn = original.getSize();
+        final long start = System.nanoTime();
+        final FlowFile[] invalid = {maxInvalidLines < 0 ? null : session.create(original)};
+        final long[] invalidCount = new long[1];
+        final List<FlowFile> results = new ArrayList<>();
+        final List<Long> resultRecords = new ArrayList<>();
 
         try {
-            FlowFile result = session.write(original, new StreamCallback() {
-                @Override
-                public void process(InputStream in, OutputStream out) throws IOException {
-                    try (OutputStream outputStream = new BufferedOutputStream(out)) {
-                        outputStream.write(objectMapper.writeValueAsBytes(ltsvParser.parseLines(in)));
+            if (split) {
+                session.read(original, new InputStreamCallback() {
+                    @Override
+                    public void process(final InputStream rawIn) throws IOException {
+                        try (final InputStream in = decompress ? Compression.decompress(rawIn) : rawIn) {
+                            if (maxInvalidLines < 0) {
+                                records[0] = writeSplits(in, null);
+                                return;
+                            }
+                            invalid[0] = session.write(invalid[0], new OutputStreamCallback() {
+                                @Override
+                                public void process(OutputStream invalidOut) throws IOException {
+                                    try (OutputStream invalidStream = BufferPool.newOutputStream(invalidOut)) {
+                                        final InvalidLines invalidLines = new InvalidLines(invalidStream, maxInvalidLines);
+                                        records[0] = writeSplits(in, invalidLines);
+                                        invalidCount[0] = invalidLines.getCount();
+                                    }
+                                }
+                            });
+                        }
                     }
+
+                    private long writeSplits(InputStream in, final InvalidLines invalidLines) throws IOException {
+                        final LTSVTokenizer tokenizer = new LTSVTokenizer(in, LTSVTokenizer.DEFAULT_BUFFER_SIZE, schema);
+                        try {
+                            final boolean[] more = {nextRecord(tokenizer, invalidLines)};
+                            long total = 0;
+                            do {
+                                final long[] written = new long[1];
+                                // Track the split before writing it, so that a failed write still removes it.
+                                final FlowFile created = session.create(original);
+                                results.add(created);
+                                final FlowFile result = session.write(created, new OutputStreamCallback() {
+                                    @Override
+                                    public void process(OutputStream out) throws IOException {
+                                        try (final OutputStream outputStream = BufferPool.newOutputStream(compression.compress(out))) {
+                                            final ByteCountingOutputStream counted = new ByteCountingOutputStream(outputStream);
+                                            more[0] = writeRecords(tokenizer, format.createGenerator(counted), invalidLines,
+                                                    format.isRootArray(), more[0], maxRecords, maxBytes, counted, written);
+                                        }
+                                    }
+                                });
+                                results.set(results.size() - 1, result);
+                                resultRecords.add(written[0]);
+                                total += written[0];
+                            } while (more[0]);
+                            return total;
+                        } finally {
+                            tokenizer.release();
+                        }
+                    }
+                });
+            } else {
+                results.add(session.write(original, new StreamCallback() {
+                    @Override
+                    public void process(final InputStream rawIn, OutputStream out) throws IOException {
+                        try (final InputStream in = decompress ? Compression.decompress(rawIn) : rawIn;
+                             final OutputStream outputStream = BufferPool.newOutputStream(compression.compress(out))) {
+                            if (maxInvalidLines < 0) {
+                                records[0] = convert(in, outputStream, null);
+                                return;
+                            }
+                            invalid[0] = session.write(invalid[0], new OutputStreamCallback() {
+                                @Override
+                                public void process(OutputStream invalidOut) throws IOException {
+                                    try (OutputStream invalidStream = BufferPool.newOutputStream(invalidOut)) {
+                                        final InvalidLines invalidLines = new InvalidLines(invalidStream, maxInvalidLines);
+                                        records[0] = convert(in, outputStream, invalidLines);
+                                        invalidCount[0] = invalidLines.getCount();
+                                    }
+                                }
+                            });
+                        }
+                    }
+
+                    private long convert(InputStream in, OutputStream out, InvalidLines invalidLines) throws IOException {
+                        if (parallel) {
+                            return new ParallelLTSVConverter(OutputFormat.JSON.getFactory(), pool, chunkSize, schema).convert(in, out, invalidLines);
+                        }
+                        final LTSVTokenizer tokenizer = new LTSVTokenizer(in, LTSVTokenizer.DEFAULT_BUFFER_SIZE, schema);
+                        try {
+                            return writeRecords(tokenizer, format.createGenerator(out), invalidLines, format.isRootArray());
+                        } finally {
+                            tokenizer.release();
+                        }
+                    }
+                }));
+                resultRecords.add(records[0]);
+            }
+            final long nanos = System.nanoTime() - start;
+            convertLatency.record(session, nanos);
+            session.adjustCounter(RECORDS_COUNTER, records[0], false);
+            session.adjustCounter(BYTES_IN_COUNTER, bytesIn, false);
+
+            final Map<String, String> attributes = new HashMap<>();
+            attributes.put(CoreAttributes.MIME_TYPE.key(),
+                    compression == Compression.NONE ? format.getMimeType() : compression.getMimeType());
+            attributes.put(BYTES_IN_ATTRIBUTE, String.valueOf(bytesIn));
+            attributes.put(CONVERT_MILLIS_ATTRIBUTE, String.valueOf(nanos / 1000000));
+            if (invalid[0] != null) {
+                attributes.put(INVALID_COUNT_ATTRIBUTE, String.valueOf(invalidCount[0]));
+                if (invalidCount[0] > 0) {
+                    session.adjustCounter(LINES_INVALID_COUNTER, invalidCount[0], false);
+                    invalid[0] = session.putAttribute(invalid[0], INVALID_COUNT_ATTRIBUTE, String.valueOf(invalidCount[0]));
+                    session.transfer(invalid[0], REL_INVALID);
+                } else {
+                    session.remove(invalid[0]);
+                }
+            }
+            if (split) {
+                attributes.put(FRAGMENT_ID_ATTRIBUTE, UUID.randomUUID().toString());
+                attributes.put(FRAGMENT_COUNT_ATTRIBUTE, String.valueOf(results.size()));
+                attributes.put(ORIGINAL_FILENAME_ATTRIBUTE, original.getAttribute(CoreAttributes.FILENAME.key()));
+            }
+            long bytesOut = 0;
+            for (int i = 0; i < results.size(); i++) {
+                attributes.put(RECORD_COUNT_ATTRIBUTE, String.valueOf(resultRecords.get(i)));
+                if (split) {
+                    attributes.put(FRAGMENT_INDEX_ATTRIBUTE, String.valueOf(i));
                 }
-            });
-            result = session.putAttribute(result, CoreAttributes.MIME_TYPE.key(), APPLICATION_JSON);
-            session.transfer(result,REL_SUCCESS);
+                final FlowFile result = session.putAllAttributes(results.get(i), attributes);
+                bytesOut += result.getSize();
+                session.transfer(result, REL_SUCCESS);
+            }
+            session.adjustCounter(BYTES_OUT_COUNTER, bytesOut, false);
+            if (split) {
+                session.remove(original);
+            }
         } catch (Exception e) {
             getLogger().error(e.getMessage());
+            if (invalid[0] != null) {
+                session.remove(invalid[0]);
+            }
+            if (split) {
+                session.remove(results);
+            }
+            session.adjustCounter(FLOWFILES_FAILED_COUNTER, 1, false);
             session.transfer(original, REL_FAILURE);
         }
     }
+
+    static long writeRecords(LTSVTokenizer tokenizer, JsonGenerator generator) throws IOException {
+        return writeRecords(tokenizer, generator, null, true);
+    }
+
+    /**
+     * Writes records one at a time as elements of a single JSON array, so that
+     * neither the parsed records nor the serialized output are held in memory.
+     *
+     * @param invalid   where to put lines that are not valid LTSV, or null to fail on the first one
+     * @param rootArray whether to write the records as one array rather than as a sequence of root values
+     * @return the number of records written
+     */
+    static long writeRecords(LTSVTokenizer tokenizer, JsonGenerator generator, InvalidLines invalid, boolean rootArray) throws IOException {
+        long records = 0;
+        if (rootArray) {
+            generator.writeStartArray();
+        }
+        while (nextRecord(tokenizer, invalid)) {
+            tokenizer.writeRecord(generator);
+            records++;
+        }
+        if (rootArray) {
+            generator.writeEndArray();
+        }
+        generator.flush();
+        return records;
+    }
+
+    /**
+     * Writes the current record of the tokenizer and the records after it as
+     * one output, until either limit is reached. The tokenizer is left on the
+     * first record of the next output.
+     *
+     * @param current whether the tokenizer is on a record, from {@link #nextRecord} or a previous call
+     * @param target  the stream the generator writes to, to count the bytes written
+     * @param records incremented by the number of records written
+     * @return whether the tokenizer is on a record that is left for the next output
+     */
+    static boolean writeRecords(LTSVTokenizer tokenizer, JsonGenerator generator, InvalidLines invalid, boolean rootArray,
+                                boolean current, long maxRecords, long maxBytes, ByteCountingOutputStream target,
+                                long[] records) throws IOException {
+        if (rootArray) {
+            generator.writeStartArray();
+        }
+        long written = 0;
+        boolean more = current;
+        while (more) {
+            tokenizer.writeRecord(generator);
+            written++;
+            more = nextRecord(tokenizer, invalid);
+            // The generator's own buffer counts too, where it reports it.
+            if (written >= maxRecords || target.getBytesWritten() + Math.max(0, generator.getOutputBuffered()) >= maxBytes) {
+                break;
+            }
+        }
+        if (rootArray) {
+            generator.writeEndArray();
+        }
+        generator.flush();
+        records[0] += written;
+        return more;
+    }
+
+    /**
+     * Advances the tokenizer to the next valid line, putting the invalid lines
+     * on the way into {@code invalid}.
+     *
+     * @param invalid where to put lines that are not valid LTSV, or null to fail on the first one
+     * @return false when the content is exhausted
+     */
+    static boolean nextRecord(LTSVTokenizer tokenizer, InvalidLines invalid) throws IOException {
+        while (tokenizer.nextLine()) {
+            if (tokenizer.isValid()) {
+                return true;
+            }
+            if (invalid == null) {
+                throw new ProcessException("Line " + tokenizer.getLineNumber() + " has a field without a label separator");
+            }
+            tokenizer.addLineTo(invalid);
+        }
+        return false;
+    }
 }
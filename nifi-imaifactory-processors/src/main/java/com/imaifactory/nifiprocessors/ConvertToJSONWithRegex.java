@@ -16,25 +16,32 @@
  */
 package com.imaifactory.nifiprocessors;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
 import org.apache.nifi.annotation.behavior.*;
 import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.annotation.lifecycle.OnScheduled;
+import org.apache.nifi.components.AllowableValue;
 import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.components.ValidationContext;
+import org.apache.nifi.components.ValidationResult;
+import org.apache.nifi.components.Validator;
 import org.apache.nifi.flowfile.FlowFile;
 import org.apache.nifi.flowfile.attributes.CoreAttributes;
 import org.apache.nifi.processor.*;
 import org.apache.nifi.processor.exception.ProcessException;
+import org.apache.nifi.processor.io.OutputStreamCallback;
 import org.apache.nifi.processor.io.StreamCallback;
 import org.apache.nifi.processor.util.StandardValidators;
-import org.apache.nifi.stream.io.BufferedOutputStream;
-import org.codehaus.jackson.map.ObjectMapper;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.CharBuffer;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 
 @EventDriven
@@ -42,41 +49,164 @@ import java.util.regex.Pattern;
 @SupportsBatching
 @Tags({"json", "attributes", "flowfile"})
 @InputRequirement(InputRequirement.Requirement.INPUT_REQUIRED)
-@WritesAttribute(attribute = "JSONAttributes", description = "JSON representation of Attributes")
-@CapabilityDescription("The processor which converts text data to JSON with Regex")
-public class ConvertToJSONWithRegex extends AbstractProcessor {
+@WritesAttributes({
+        @WritesAttribute(attribute = "regex.matched.count", description = "Number of lines that matched the regular expression"),
+        @WritesAttribute(attribute = "regex.unmatched.count", description = "Number of lines that did not match the regular expression"),
+        @WritesAttribute(attribute = "regex.failed.count", description = "Number of lines that exceeded Max Match Steps Per Line"),
+        @WritesAttribute(attribute = "regex.bytes.in", description = "Size of the text content"),
+        @WritesAttribute(attribute = "regex.convert.millis", description = "Time taken to match and convert the content")
+})
+@DynamicProperty(name = "Pattern name", value = "Regular expression with named groups",
+        description = "Adds a further pattern that is tried on each line; the property name identifies the pattern")
+@CapabilityDescription("The processor which converts text data to JSON with Regex. "
+        + "Each line matching one of the regular expressions is written as one JSON object per line, "
+        + "and lines that do not match are routed as raw text to 'unmatched' in the same pass.")
+public class ConvertToJSONWithRegex extends AbstractBatchingProcessor {
 
-    private static final String APPLICATION_JSON = "application/json";
+    static final String MATCHED_COUNT_ATTRIBUTE = "regex.matched.count";
+    static final String UNMATCHED_COUNT_ATTRIBUTE = "regex.unmatched.count";
+    static final String FAILED_COUNT_ATTRIBUTE = "regex.failed.count";
+    static final String BYTES_IN_ATTRIBUTE = "regex.bytes.in";
+    static final String CONVERT_MILLIS_ATTRIBUTE = "regex.convert.millis";
+
+    static final String RECORDS_COUNTER = "Records parsed";
+    static final String LINES_UNMATCHED_COUNTER = "Lines unmatched";
+    static final String LINES_FAILED_COUNTER = "Lines failed";
+    static final String BYTES_IN_COUNTER = "Bytes in";
+    static final String BYTES_OUT_COUNTER = "Bytes out";
+
+    private static final LatencyCounters convertLatency = new LatencyCounters("Convert");
 
     public static final Relationship REL_SUCCESS = new Relationship.Builder().name("success")
             .description("Successfully converted attributes to JSON").build();
 
     public static final Relationship REL_FAILURE = new Relationship.Builder().name("failure")
-            .description("Failed to convert attributes to JSON").build();
+            .description("Failed to convert attributes to JSON. Lines that exceeded Max Match Steps Per Line "
+                    + "are also routed here as raw text").build();
+
+    public static final Relationship REL_UNMATCHED = new Relationship.Builder().name("unmatched")
+            .description("Lines that did not match the regular expression, as raw text").build();
+
+    static final Validator NAMED_GROUP_REGEX_VALIDATOR = new Validator() {
+        @Override
+        public ValidationResult validate(final String subject, final String input, final ValidationContext context) {
+            String explanation = null;
+            try {
+                if (NamedGroupPattern.compile(input).getGroupCount() == 0) {
+                    explanation = "Regular expression must contain at least one named group such as (?<key>...)";
+                }
+            } catch (PatternSyntaxException e) {
+                explanation = "Not a valid regular expression: " + e.getDescription();
+            }
+            return new ValidationResult.Builder().subject(subject).input(input)
+                    .valid(explanation == null).explanation(explanation).build();
+        }
+    };
+
+    static final String DEFAULT_PATTERN_NAME = "default";
 
     public static final PropertyDescriptor REGEX = new PropertyDescriptor.Builder()
             .name("Regular Expression")
             .required(false)
-            .description("Regular expression with named keys to extract values from text")
+            .description("Regular expression with named keys to extract values from text. "
+                    + "Further expressions can be added as dynamic properties; at least one expression is required.")
+            .addValidator(NAMED_GROUP_REGEX_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor PATTERN_NAME_FIELD = new PropertyDescriptor.Builder()
+            .name("Pattern Name Field")
+            .required(false)
+            .description("If set, each JSON object gets a field of this name holding the name of the pattern that matched: '"
+                    + DEFAULT_PATTERN_NAME + "' for Regular Expression, or the name of the dynamic property")
             .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
             .build();
 
+    static final AllowableValue JAVA_ENGINE = new AllowableValue("Java", "Java",
+            "java.util.regex: the full Java syntax, but a pattern may backtrack for a long time on some lines");
+    static final AllowableValue LINEAR_ENGINE = new AllowableValue("RE2/J", "RE2/J",
+            "Matching takes time linear in the line length for every pattern. "
+                    + "Back-references and lookaround are not supported");
+
+    public static final PropertyDescriptor REGEX_ENGINE = new PropertyDescriptor.Builder()
+            .name("Regex Engine")
+            .required(true)
+            .allowableValues(JAVA_ENGINE, LINEAR_ENGINE)
+            .defaultValue(JAVA_ENGINE.getValue())
+            .description("The engine used to match the regular expressions")
+            .build();
+
+    public static final PropertyDescriptor MAX_MATCH_STEPS = new PropertyDescriptor.Builder()
+            .name("Max Match Steps Per Line")
+            .required(true)
+            .defaultValue("0")
+            .description("The number of character reads the engine may make on one line across all patterns. "
+                    + "Lines that need more are routed to failure as raw text. 0 means no limit")
+            .addValidator(StandardValidators.NON_NEGATIVE_INTEGER_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor TIME_GROUP = new PropertyDescriptor.Builder()
+            .name("Time Group")
+            .required(false)
+            .description("The named group holding the time of a line, such as [18/Oct/2026:14:04:05 +0900] or "
+                    + "2026-10-18T14:04:05+09:00, to write as Time Group Type instead of as a string. A value that "
+                    + "does not parse is written as a string and an empty value as null")
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .build();
+
+    static final AllowableValue TIMESTAMP_TYPE = new AllowableValue("timestamp", "timestamp",
+            "Milliseconds since the epoch");
+    static final AllowableValue ISO8601_TYPE = new AllowableValue("iso8601", "iso8601",
+            "ISO-8601 with milliseconds and the offset of the value, e.g. 2026-10-18T14:04:05.000+09:00");
+
+    public static final PropertyDescriptor TIME_GROUP_TYPE = new PropertyDescriptor.Builder()
+            .name("Time Group Type")
+            .required(true)
+            .allowableValues(TIMESTAMP_TYPE, ISO8601_TYPE)
+            .defaultValue(TIMESTAMP_TYPE.getValue())
+            .description("How the value of Time Group is written, as for the types of the same name in ConvertLTSVToJSON")
+            .build();
+
+    public static final PropertyDescriptor OUTPUT_FORMAT = OutputFormat.PROPERTY;
+
+    public static final PropertyDescriptor INPUT_COMPRESSION = Compression.INPUT_PROPERTY;
+
+    public static final PropertyDescriptor OUTPUT_COMPRESSION = Compression.OUTPUT_PROPERTY;
+
     private List<PropertyDescriptor> properties;
 
     private Set<Relationship> relationships;
 
-    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private volatile NamedGroupPattern[] patterns;
+    private volatile SerializableString patternNameField;
+    private volatile int[] patternOrder;
+    private volatile long maxMatchSteps;
+    private volatile String timeGroup;
+    private volatile boolean timeGroupIso8601;
+    private volatile OutputFormat format;
+    private volatile boolean decompress;
+    private volatile Compression compression;
 
     @Override
     protected void init(final ProcessorInitializationContext context) {
 
         final List<PropertyDescriptor> properties = new ArrayList<>();
         properties.add(REGEX);
+        properties.add(PATTERN_NAME_FIELD);
+        properties.add(REGEX_ENGINE);
+        properties.add(MAX_MATCH_STEPS);
+        properties.add(TIME_GROUP);
+        properties.add(TIME_GROUP_TYPE);
+        properties.add(OUTPUT_FORMAT);
+        properties.add(INPUT_COMPRESSION);
+        properties.add(OUTPUT_COMPRESSION);
+        properties.add(BATCH_SIZE);
+        properties.add(BATCH_DURATION);
         this.properties = Collections.unmodifiableList(properties);
 
         final Set<Relationship> relationships = new HashSet<Relationship>();
         relationships.add(REL_SUCCESS);
         relationships.add(REL_FAILURE);
+        relationships.add(REL_UNMATCHED);
         this.relationships = Collections.unmodifiableSet(relationships);
     }
 
@@ -91,56 +221,306 @@ public class ConvertToJSONWithRegex extends AbstractProcessor {
     }
 
     @Override
-    public void onTrigger(final ProcessContext context, final ProcessSession session) throws ProcessException {
-        final FlowFile original = session.get();
-        if ( original == null ) {
-            return;
+    protected PropertyDescriptor getSupportedDynamicPropertyDescriptor(final String propertyDescriptorName) {
+        return new PropertyDescriptor.Builder()
+                .name(propertyDescriptorName)
+                .required(false)
+                .dynamic(true)
+                .addValidator(NAMED_GROUP_REGEX_VALIDATOR)
+                .build();
+    }
+
+    @Override
+    protected Collection<ValidationResult> customValidate(final ValidationContext context) {
+        return validatePatterns(context);
+    }
+
+    /**
+     * Checks that Regular Expression or a dynamic property gives a pattern, and
+     * that every pattern is supported by the selected engine.
+     */
+    static List<ValidationResult> validatePatterns(final ValidationContext context) {
+        final boolean linearTime = LINEAR_ENGINE.getValue().equals(context.getProperty(REGEX_ENGINE).getValue());
+        final List<ValidationResult> results = new ArrayList<>();
+        boolean hasPattern = false;
+        for (PropertyDescriptor descriptor : context.getProperties().keySet()) {
+            if ((descriptor.isDynamic() || descriptor.equals(REGEX)) && context.getProperty(descriptor).isSet()) {
+                hasPattern = true;
+                if (linearTime) {
+                    try {
+                        NamedGroupPattern.compile(descriptor.getName(), context.getProperty(descriptor).getValue(), true);
+                    } catch (RuntimeException e) {
+                        results.add(new ValidationResult.Builder().subject(descriptor.getName()).valid(false)
+                                .explanation("Not supported by " + LINEAR_ENGINE.getDisplayName() + ": " + e.getMessage()).build());
+                    }
+                }
+            }
+        }
+        if (!hasPattern) {
+            results.add(new ValidationResult.Builder().subject(REGEX.getName()).valid(false)
+                    .explanation("At least one regular expression is required, either as " + REGEX.getName()
+                            + " or as a dynamic property").build());
+        }
+        return results;
+    }
+
+    @OnScheduled
+    public void onScheduled(final ProcessContext context) {
+        final boolean linearTime = LINEAR_ENGINE.getValue().equals(context.getProperty(REGEX_ENGINE).getValue());
+        this.patterns = compilePatterns(context.getProperties(), linearTime);
+        this.patternOrder = null;
+        this.maxMatchSteps = context.getProperty(MAX_MATCH_STEPS).asLong();
+        this.timeGroup = context.getProperty(TIME_GROUP).getValue();
+        this.timeGroupIso8601 = ISO8601_TYPE.getValue().equals(context.getProperty(TIME_GROUP_TYPE).getValue());
+        this.format = OutputFormat.forValue(context.getProperty(OUTPUT_FORMAT).getValue());
+        this.decompress = Compression.AUTO_DETECT.getValue().equals(context.getProperty(INPUT_COMPRESSION).getValue());
+        this.compression = Compression.forValue(context.getProperty(OUTPUT_COMPRESSION).getValue());
+
+        final String patternNameField = context.getProperty(PATTERN_NAME_FIELD).getValue();
+        this.patternNameField = patternNameField == null ? null : new SerializedString(patternNameField);
+    }
+
+    /**
+     * @param properties the properties of the component, with Regular Expression
+     *                   and the dynamic properties holding the patterns
+     * @return Regular Expression, if set, followed by the dynamic properties in name order
+     */
+    static NamedGroupPattern[] compilePatterns(final Map<PropertyDescriptor, String> properties, final boolean linearTime) {
+        final List<NamedGroupPattern> patterns = new ArrayList<>();
+        if (properties.get(REGEX) != null) {
+            patterns.add(NamedGroupPattern.compile(DEFAULT_PATTERN_NAME, properties.get(REGEX), linearTime));
+        }
+        final SortedMap<String, String> dynamicPatterns = new TreeMap<>();
+        for (Map.Entry<PropertyDescriptor, String> property : properties.entrySet()) {
+            if (property.getKey().isDynamic()) {
+                dynamicPatterns.put(property.getKey().getName(), property.getValue());
+            }
         }
-        final String regex = context.getProperty(REGEX).toString();
-        //TODO Should be moved to initialization phase.
-        final Set keys = getNamedGroupCandidates(regex);
-        //TODO Should validate that regex includes keys.
-        final Pattern pattern = Pattern.compile(regex);
+        for (Map.Entry<String, String> pattern : dynamicPatterns.entrySet()) {
+            patterns.add(NamedGroupPattern.compile(pattern.getKey(), pattern.getValue(), linearTime));
+        }
+        return patterns.toArray(new NamedGroupPattern[patterns.size()]);
+    }
+
+    @Override
+    protected void onTrigger(final ProcessContext context, final ProcessSession session, final FlowFile original) throws ProcessException {
+        final MultiPatternMatcher matcher = new MultiPatternMatcher(patterns, patternOrder, maxMatchSteps);
+        final SerializableString patternNameField = this.patternNameField;
+        final TimeGroup timeGroup = this.timeGroup == null ? null : new TimeGroup(this.timeGroup, timeGroupIso8601);
+        final OutputFormat format = this.format;
+        final boolean decompress = this.decompress;
+        final Compression compression = this.compression;
+        final Counts counts = new Counts();
+        counts.bytesIn = original.getSize();
+        final long start = System.nanoTime();
+        final FlowFile[] unmatched = {session.create(original)};
+        final FlowFile[] failed = {session.create(original)};
 
         try {
             FlowFile result = session.write(original, new StreamCallback() {
                 @Override
-                public void process(InputStream in, OutputStream out) throws IOException {
-                    try (OutputStream outputStream = new BufferedOutputStream(out)) {
-                        String line = in.toString();
-                        Matcher matches = pattern.matcher(line);
-                        if(matches.find()) {
-                            Map parsed = parse(keys, matches);
-                        }else {
-                            return;
-                        }
+                public void process(final InputStream rawIn, final OutputStream out) throws IOException {
+                    try (final InputStream in = decompress ? Compression.decompress(rawIn) : rawIn) {
+                        unmatched[0] = session.write(unmatched[0], new OutputStreamCallback() {
+                            @Override
+                            public void process(final OutputStream unmatchedOut) throws IOException {
+                                failed[0] = session.write(failed[0], new OutputStreamCallback() {
+                                    @Override
+                                    public void process(final OutputStream failedOut) throws IOException {
+                                        final LineReader lines = new LineReader(in);
+                                        try (OutputStream outputStream = BufferPool.newOutputStream(compression.compress(out));
+                                             OutputStream unmatchedStream = BufferPool.newOutputStream(unmatchedOut);
+                                             OutputStream failedStream = BufferPool.newOutputStream(failedOut)) {
+                                            writeRecords(lines, matcher, patternNameField, timeGroup,
+                                                    format.createGenerator(outputStream), format.isTextual(), unmatchedStream, failedStream, counts);
+                                        } finally {
+                                            lines.release();
+                                        }
+                                    }
+                                });
+                            }
+                        });
                     }
                 }
             });
-            result = session.putAttribute(result, CoreAttributes.MIME_TYPE.key(), APPLICATION_JSON);
+            counts.nanos = System.nanoTime() - start;
+            convertLatency.record(session, counts.nanos);
+            session.adjustCounter(RECORDS_COUNTER, counts.matched, false);
+            session.adjustCounter(LINES_UNMATCHED_COUNTER, counts.unmatched, false);
+            session.adjustCounter(LINES_FAILED_COUNTER, counts.failed, false);
+            session.adjustCounter(BYTES_IN_COUNTER, counts.bytesIn, false);
+            session.adjustCounter(BYTES_OUT_COUNTER, result.getSize(), false);
+            result = session.putAllAttributes(result, counts.toAttributes());
+            result = session.putAttribute(result, CoreAttributes.MIME_TYPE.key(),
+                    compression == Compression.NONE ? format.getMimeType() : compression.getMimeType());
             session.transfer(result,REL_SUCCESS);
+            patternOrder = matcher.getOrder();
+            transferOrRemove(session, unmatched[0], counts.unmatched, counts, REL_UNMATCHED);
+            transferOrRemove(session, failed[0], counts.failed, counts, REL_FAILURE);
         } catch (Exception e) {
             getLogger().error(e.getMessage());
+            session.remove(unmatched[0]);
+            session.remove(failed[0]);
             session.transfer(original, REL_FAILURE);
         }
     }
 
-    private static Set<String> getNamedGroupCandidates(String regex) {
-        Set<String> namedGroups = new TreeSet<String>();
+    private static void transferOrRemove(ProcessSession session, FlowFile flowFile, long lines, Counts counts, Relationship relationship) {
+        if (lines > 0) {
+            session.transfer(session.putAllAttributes(flowFile, counts.toAttributes()), relationship);
+        } else {
+            session.remove(flowFile);
+        }
+    }
 
-        Matcher m = Pattern.compile("\\(\\?<([a-zA-Z][a-zA-Z0-9]*)>").matcher(regex);
+    /**
+     * Matches the content line by line and writes each match as a root-level
+     * object, followed by a line break if {@code lineDelimited}. Lines that
+     * match no pattern are copied unchanged to {@code unmatched}, and lines
+     * that exhaust the step budget to {@code failed}.
+     *
+     * @param timeGroup the group written as a time, or null
+     */
+    static void writeRecords(LineReader lines, MultiPatternMatcher matcher, SerializableString patternNameField,
+                             TimeGroup timeGroup, JsonGenerator generator, boolean lineDelimited, OutputStream unmatched,
+                             OutputStream failed, Counts counts) throws IOException {
+        final int[] timeFields = timeGroup == null ? null : timeGroup.fieldIndexes(matcher);
+        if (lineDelimited) {
+            // Only textual JSON separates root values; the binary generators reject the setting.
+            generator.setRootValueSeparator(null);
+        }
+        while (lines.nextLine()) {
+            final CharBuffer line = lines.decodeLine();
+            final int index;
+            try {
+                index = matcher.find(line);
+            } catch (BudgetedCharSequence.BudgetExceededException e) {
+                writeLine(lines, failed);
+                counts.failed++;
+                continue;
+            }
+            if (index >= 0) {
+                writeRecord(matcher.getPattern(index), matcher.getMatcher(index), patternNameField, line.array(), generator,
+                        timeFields == null ? -1 : timeFields[index], timeGroup);
+                if (lineDelimited) {
+                    generator.writeRaw('\n');
+                }
+                counts.matched++;
+            } else {
+                writeLine(lines, unmatched);
+                counts.unmatched++;
+            }
+        }
+        generator.flush();
+    }
+
+    private static void writeLine(LineReader lines, OutputStream out) throws IOException {
+        out.write(lines.getBuffer(), lines.getLineStart(), lines.getLineEnd() - lines.getLineStart());
+        out.write('\n');
+    }
 
-        while (m.find()) {
-            namedGroups.add(m.group(1));
+    private static void writeRecord(NamedGroupPattern pattern, GroupMatcher matcher, SerializableString patternNameField,
+                                    char[] line, JsonGenerator generator, int timeField, TimeGroup timeGroup) throws IOException {
+        generator.writeStartObject();
+        if (patternNameField != null) {
+            generator.writeFieldName(patternNameField);
+            generator.writeString(pattern.getName());
+        }
+        for (int i = 0; i < pattern.getGroupCount(); i++) {
+            generator.writeFieldName(pattern.getFieldName(i));
+            final int group = pattern.getGroup(i);
+            final int start = matcher.start(group);
+            if (start < 0) {
+                generator.writeNull();
+            } else if (i == timeField) {
+                timeGroup.write(generator, line, start, matcher.end(group) - start);
+            } else {
+                generator.writeString(line, start, matcher.end(group) - start);
+            }
         }
-        return namedGroups;
+        generator.writeEndObject();
     }
 
-    private static Map parse(Set keys, Matcher matches) {
-        HashMap<String, String> map = new HashMap<String, String>();
-        for(Object key: keys){
-            map.put(key.toString(), matches.group(key.toString()));
+    /**
+     * Writes the named group that holds the time of a line with a
+     * {@link TimestampParser}. Not thread-safe; one is used per FlowFile.
+     */
+    static final class TimeGroup {
+        private static final int MAX_LENGTH = 64;
+
+        private final String name;
+        private final boolean iso8601;
+        private final TimestampParser timestamps = new TimestampParser();
+        private final byte[] time = new byte[MAX_LENGTH];
+
+        TimeGroup(String name, boolean iso8601) {
+            this.name = name;
+            this.iso8601 = iso8601;
+        }
+
+        /**
+         * @return for each pattern of {@code matcher}, the index of the time group among its groups, or -1
+         */
+        int[] fieldIndexes(MultiPatternMatcher matcher) {
+            final int[] indexes = new int[matcher.getPatternCount()];
+            for (int i = 0; i < indexes.length; i++) {
+                final NamedGroupPattern pattern = matcher.getPattern(i);
+                indexes[i] = -1;
+                for (int j = 0; j < pattern.getGroupCount(); j++) {
+                    if (pattern.getName(j).equals(name)) {
+                        indexes[i] = j;
+                    }
+                }
+            }
+            return indexes;
+        }
+
+        void write(JsonGenerator generator, char[] line, int start, int length) throws IOException {
+            if (length == 0) {
+                generator.writeNull();
+                return;
+            }
+            if (length <= MAX_LENGTH && copyAscii(line, start, length)) {
+                final long millis = timestamps.parse(time, 0, length);
+                if (millis != TimestampParser.INVALID) {
+                    if (iso8601) {
+                        generator.writeUTF8String(timestamps.formatIso8601(), 0, TimestampParser.ISO_8601_LENGTH);
+                    } else {
+                        generator.writeNumber(millis);
+                    }
+                    return;
+                }
+            }
+            generator.writeString(line, start, length);
+        }
+
+        private boolean copyAscii(char[] line, int start, int length) {
+            for (int i = 0; i < length; i++) {
+                final char c = line[start + i];
+                if (c > 0x7f) {
+                    return false;
+                }
+                time[i] = (byte) c;
+            }
+            return true;
+        }
+    }
+
+    static final class Counts {
+        long matched;
+        long unmatched;
+        long failed;
+        long bytesIn;
+        long nanos;
+
+        Map<String, String> toAttributes() {
+            final Map<String, String> attributes = new HashMap<>();
+            attributes.put(MATCHED_COUNT_ATTRIBUTE, String.valueOf(matched));
+            attributes.put(UNMATCHED_COUNT_ATTRIBUTE, String.valueOf(unmatched));
+            attributes.put(FAILED_COUNT_ATTRIBUTE, String.valueOf(failed));
+            attributes.put(BYTES_IN_ATTRIBUTE, String.valueOf(bytesIn));
+            attributes.put(CONVERT_MILLIS_ATTRIBUTE, String.valueOf(nanos / 1000000));
+            return attributes;
         }
-        return map;
     }
 }
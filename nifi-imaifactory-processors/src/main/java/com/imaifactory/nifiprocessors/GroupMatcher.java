@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+/**
+ * The part of a regex matcher that the converters need, so that the regex
+ * engine behind a {@link NamedGroupPattern} can be chosen per processor.
+ */
+interface GroupMatcher {
+
+    /**
+     * Looks for the next match in a new input.
+     */
+    boolean find(CharSequence input);
+
+    /**
+     * @return the start of the group in the last match, or -1 if it did not participate
+     */
+    int start(int group);
+
+    /**
+     * @return the end of the group in the last match, or -1 if it did not participate
+     */
+    int end(int group);
+}
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import org.apache.nifi.processor.exception.ProcessException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Collects lines that could not be converted, each as its 1-based line
+ * number, a tab and the raw line, and fails the conversion once there are
+ * more than allowed.
+ */
+final class InvalidLines {
+
+    private final OutputStream out;
+    private final long maxInvalid;
+    private long count;
+
+    InvalidLines(OutputStream out, long maxInvalid) {
+        this.out = out;
+        this.maxInvalid = maxInvalid;
+    }
+
+    /**
+     * @throws ProcessException if this line is one more than allowed
+     */
+    void add(long lineNumber, byte[] buffer, int offset, int length) throws IOException {
+        if (++count > maxInvalid) {
+            throw new ProcessException("More than " + maxInvalid + " invalid lines, the last at line " + lineNumber);
+        }
+        out.write(Long.toString(lineNumber).getBytes(StandardCharsets.US_ASCII));
+        out.write('\t');
+        out.write(buffer, offset, length);
+        out.write('\n');
+    }
+
+    long getCount() {
+        return count;
+    }
+}
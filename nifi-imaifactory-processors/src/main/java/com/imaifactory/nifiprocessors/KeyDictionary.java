@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A bounded dictionary from the UTF-8 bytes of field names to pre-encoded
+ * {@link SerializableString}s, so that a generator copies the escaped bytes
+ * of a name that repeats on every line instead of decoding, escaping and
+ * encoding it each time.
+ * <p>
+ * The dictionary is direct mapped: each name has one slot, and a name that
+ * is not present replaces whatever occupies its slot. It never holds more
+ * than its capacity, and a flood of distinct names from bad input only
+ * costs the hit rate while it lasts. Names longer than the maximum length
+ * are not kept at all.
+ * <p>
+ * It is shared by all threads without locking. Entries are immutable and
+ * published through final fields, so a thread sees either a whole entry or
+ * none, and two threads racing for a slot at worst both create the name.
+ */
+final class KeyDictionary {
+
+    static final int DEFAULT_CAPACITY = 1024;
+    static final int DEFAULT_MAX_KEY_LENGTH = 64;
+
+    private final Entry[] entries;
+    private final int maxKeyLength;
+
+    KeyDictionary() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_KEY_LENGTH);
+    }
+
+    /**
+     * @param capacity     the number of slots, rounded up to a power of two
+     * @param maxKeyLength the length in bytes above which names are not kept
+     */
+    KeyDictionary(int capacity, int maxKeyLength) {
+        int slots = 1;
+        while (slots < capacity) {
+            slots <<= 1;
+        }
+        this.entries = new Entry[slots];
+        this.maxKeyLength = maxKeyLength;
+    }
+
+    SerializableString get(byte[] buffer, int offset, int length) {
+        if (length > maxKeyLength) {
+            return new SerializedString(new String(buffer, offset, length, StandardCharsets.UTF_8));
+        }
+        final int hash = hash(buffer, offset, length);
+        final int slot = hash & (entries.length - 1);
+        final Entry entry = entries[slot];
+        if (entry != null && entry.hash == hash && entry.matches(buffer, offset, length)) {
+            return entry.name;
+        }
+        final Entry added = new Entry(hash, Arrays.copyOfRange(buffer, offset, offset + length),
+                new SerializedString(new String(buffer, offset, length, StandardCharsets.UTF_8)));
+        entries[slot] = added;
+        return added.name;
+    }
+
+    int size() {
+        int size = 0;
+        for (Entry entry : entries) {
+            if (entry != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    private static int hash(byte[] buffer, int offset, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = hash * 31 + buffer[offset + i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Entry {
+        private final int hash;
+        private final byte[] bytes;
+        private final SerializableString name;
+
+        Entry(int hash, byte[] bytes, SerializableString name) {
+            this.hash = hash;
+            this.bytes = bytes;
+            this.name = name;
+        }
+
+        boolean matches(byte[] buffer, int offset, int length) {
+            if (bytes.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] != buffer[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import org.apache.nifi.annotation.documentation.CapabilityDescription;
+import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.annotation.lifecycle.OnEnabled;
+import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.components.ValidationContext;
+import org.apache.nifi.components.ValidationResult;
+import org.apache.nifi.controller.AbstractControllerService;
+import org.apache.nifi.controller.ConfigurationContext;
+import org.apache.nifi.logging.ComponentLog;
+import org.apache.nifi.serialization.RecordReader;
+import org.apache.nifi.serialization.RecordReaderFactory;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+
+@Tags({"ltsv", "record", "reader", "parse"})
+@CapabilityDescription("Reads LTSV lines as records, with the same field selection and types as ConvertLTSVToJSON. "
+        + "With Include Fields the schema is the included fields; otherwise it is the fields of the first record.")
+public class LTSVReader extends AbstractControllerService implements RecordReaderFactory {
+
+    private static final List<PropertyDescriptor> properties;
+
+    static {
+        final List<PropertyDescriptor> descriptors = new ArrayList<>();
+        descriptors.add(ConvertLTSVToJSON.INCLUDE_FIELDS);
+        descriptors.add(ConvertLTSVToJSON.EXCLUDE_FIELDS);
+        descriptors.add(ConvertLTSVToJSON.FIELD_TYPES);
+        properties = Collections.unmodifiableList(descriptors);
+    }
+
+    private volatile LTSVSchema schema;
+
+    @Override
+    protected List<PropertyDescriptor> getSupportedPropertyDescriptors() {
+        return properties;
+    }
+
+    @Override
+    protected Collection<ValidationResult> customValidate(final ValidationContext context) {
+        return ConvertLTSVToJSON.validateFieldSelection(context);
+    }
+
+    @OnEnabled
+    public void onEnabled(final ConfigurationContext context) {
+        this.schema = ConvertLTSVToJSON.createSchema(context.getProperty(ConvertLTSVToJSON.INCLUDE_FIELDS).getValue(),
+                context.getProperty(ConvertLTSVToJSON.EXCLUDE_FIELDS).getValue(),
+                context.getProperty(ConvertLTSVToJSON.FIELD_TYPES).getValue());
+    }
+
+    @Override
+    public RecordReader createRecordReader(final Map<String, String> variables, final InputStream in, final ComponentLog logger) {
+        return new LTSVRecordReader(in, schema);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import org.apache.nifi.serialization.MalformedRecordException;
+import org.apache.nifi.serialization.RecordReader;
+import org.apache.nifi.serialization.SimpleRecordSchema;
+import org.apache.nifi.serialization.record.DataType;
+import org.apache.nifi.serialization.record.MapRecord;
+import org.apache.nifi.serialization.record.Record;
+import org.apache.nifi.serialization.record.RecordField;
+import org.apache.nifi.serialization.record.RecordFieldType;
+import org.apache.nifi.serialization.record.RecordSchema;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads LTSV lines as records with the same tokenizer, field selection and
+ * types as {@link ConvertLTSVToJSON}. Empty lines are skipped.
+ * <p>
+ * With an include list the record schema is the included fields. Otherwise
+ * LTSV has no schema of its own, so the schema is taken from the fields of
+ * the first record; fields that only appear on later lines are still read,
+ * and dropped when the caller asks for unknown fields to be dropped.
+ * <p>
+ * Values are read as their schema types when the caller asks for types to
+ * be coerced; a value that is not of its type is then null, like an empty
+ * one. Otherwise every value is read as the string on the line.
+ */
+final class LTSVRecordReader implements RecordReader {
+
+    private final InputStream in;
+    private final LTSVTokenizer tokenizer;
+    private final LTSVSchema schema;
+    private RecordSchema recordSchema;
+    private boolean pending;
+
+    /**
+     * @param schema the fields to read and their types, or null to read every field as a string
+     */
+    LTSVRecordReader(InputStream in, LTSVSchema schema) {
+        this.in = in;
+        this.tokenizer = new LTSVTokenizer(in, LTSVTokenizer.DEFAULT_BUFFER_SIZE, schema);
+        this.schema = schema;
+        if (schema != null && !schema.selectsOthers()) {
+            final List<RecordField> fields = new ArrayList<>();
+            for (int i = 0; i < schema.size(); i++) {
+                if (schema.isSelected(i)) {
+                    fields.add(new RecordField(schema.getLabel(i), dataType(schema.getType(i)), true));
+                }
+            }
+            recordSchema = new SimpleRecordSchema(fields);
+        }
+    }
+
+    @Override
+    public Record nextRecord(boolean coerceTypes, boolean dropUnknownFields) throws IOException, MalformedRecordException {
+        final RecordSchema recordSchema = getSchema();
+        if (!pending && !nextFieldLine()) {
+            return null;
+        }
+        pending = false;
+        final Map<String, Object> values = new LinkedHashMap<>();
+        tokenizer.readRecord(values, coerceTypes);
+        if (dropUnknownFields) {
+            final Iterator<String> names = values.keySet().iterator();
+            while (names.hasNext()) {
+                if (!recordSchema.getField(names.next()).isPresent()) {
+                    names.remove();
+                }
+            }
+        }
+        return new MapRecord(recordSchema, values);
+    }
+
+    @Override
+    public RecordSchema getSchema() throws MalformedRecordException {
+        if (recordSchema == null) {
+            try {
+                pending = nextFieldLine();
+            } catch (IOException e) {
+                throw new MalformedRecordException("Failed to read the first record", e);
+            }
+            final List<RecordField> fields = new ArrayList<>();
+            if (pending) {
+                final Map<String, Object> first = new LinkedHashMap<>();
+                tokenizer.readRecord(first, false);
+                for (String name : first.keySet()) {
+                    final int index = schema == null ? -1 : indexOf(name);
+                    final DataType type = index < 0 ? RecordFieldType.STRING.getDataType() : dataType(schema.getType(index));
+                    fields.add(new RecordField(name, type, true));
+                }
+            }
+            recordSchema = new SimpleRecordSchema(fields);
+        }
+        return recordSchema;
+    }
+
+    @Override
+    public void close() throws IOException {
+        tokenizer.release();
+        in.close();
+    }
+
+    /**
+     * Advances the tokenizer to the next line that has fields.
+     *
+     * @return false at the end of the content
+     */
+    private boolean nextFieldLine() throws IOException, MalformedRecordException {
+        while (tokenizer.nextLine()) {
+            if (!tokenizer.isValid()) {
+                throw new MalformedRecordException("Line " + tokenizer.getLineNumber() + " has a field without a label separator");
+            }
+            if (tokenizer.getFieldCount() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int indexOf(String label) {
+        for (int i = 0; i < schema.size(); i++) {
+            if (schema.getLabel(i).equals(label)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static DataType dataType(LTSVSchema.Type type) {
+        switch (type) {
+            case LONG:
+                return RecordFieldType.LONG.getDataType();
+            case DOUBLE:
+                return RecordFieldType.DOUBLE.getDataType();
+            case BOOLEAN:
+                return RecordFieldType.BOOLEAN.getDataType();
+            case EPOCH:
+            case TIMESTAMP:
+                return RecordFieldType.TIMESTAMP.getDataType();
+            default:
+                return RecordFieldType.STRING.getDataType();
+        }
+    }
+}
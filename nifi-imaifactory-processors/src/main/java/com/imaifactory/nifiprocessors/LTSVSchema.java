@@ -0,0 +1,442 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Which LTSV fields are written and as what JSON type.
+ * <p>
+ * The labels named in the include, exclude and type lists are held in an
+ * open addressing table keyed by their UTF-8 bytes, so the tokenizer can look
+ * up a label where it lies in its buffer. A field that is not selected is
+ * dropped as soon as its label is known, and its value is never looked at
+ * again. The names of known labels are pre-encoded for the generator.
+ * <p>
+ * A typed value that does not parse as its type is written as a string, so
+ * that nothing is lost, and an empty typed value is written as null.
+ */
+final class LTSVSchema {
+
+    enum Type {
+        STRING, LONG, DOUBLE, BOOLEAN,
+        /**
+         * Seconds since the epoch with an optional fraction, such as nginx's
+         * {@code $msec}, written as milliseconds since the epoch.
+         */
+        EPOCH,
+        /**
+         * A timestamp in one of the layouts of {@link TimestampParser}, such
+         * as nginx's {@code $time_local}, written as milliseconds since the
+         * epoch.
+         */
+        TIMESTAMP,
+        /**
+         * A timestamp in one of the layouts of {@link TimestampParser},
+         * written as ISO-8601 with milliseconds and its own offset.
+         */
+        ISO8601
+    }
+
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MAX_LONG = "9223372036854775807".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MIN_LONG_DIGITS = "9223372036854775808".getBytes(StandardCharsets.US_ASCII);
+
+    private final byte[][] labels;
+    private final SerializableString[] names;
+    private final Type[] types;
+    private final boolean[] selected;
+    private final boolean othersSelected;
+    private final int[] slots;
+
+    private LTSVSchema(Map<String, Entry> entries, boolean othersSelected) {
+        final int size = entries.size();
+        labels = new byte[size][];
+        names = new SerializableString[size];
+        types = new Type[size];
+        selected = new boolean[size];
+        this.othersSelected = othersSelected;
+        int capacity = 2;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        slots = new int[capacity];
+
+        int index = 0;
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            labels[index] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            names[index] = new SerializedString(entry.getKey());
+            types[index] = entry.getValue().type;
+            selected[index] = entry.getValue().selected;
+            int slot = hash(labels[index], 0, labels[index].length) & (slots.length - 1);
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & (slots.length - 1);
+            }
+            slots[slot] = index + 1;
+            index++;
+        }
+    }
+
+    /**
+     * @param include comma separated labels to write, or null to write all but {@code exclude}
+     * @param exclude comma separated labels not to write, or null
+     * @param types   comma separated {@code label:type} pairs, or null to write every value as a string
+     * @throws IllegalArgumentException if a list is malformed or both include and exclude are given
+     */
+    static LTSVSchema parse(String include, String exclude, String types) {
+        if (include != null && exclude != null) {
+            throw new IllegalArgumentException("Only one of the include and exclude lists may be given");
+        }
+        final Map<String, Entry> entries = new LinkedHashMap<>();
+        for (String label : splitList(include)) {
+            entries.put(label, new Entry(true));
+        }
+        for (String label : splitList(exclude)) {
+            entries.put(label, new Entry(false));
+        }
+        for (String pair : splitList(types)) {
+            final int colon = pair.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("'" + pair + "' is not of the form label:type");
+            }
+            final String label = pair.substring(0, colon).trim();
+            final Type type = parseType(pair.substring(colon + 1).trim());
+            Entry entry = entries.get(label);
+            if (entry == null) {
+                entry = new Entry(include == null);
+                entries.put(label, entry);
+            }
+            entry.type = type;
+        }
+        return new LTSVSchema(entries, include == null);
+    }
+
+    private static Type parseType(String name) {
+        try {
+            return Type.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown type '" + name + "'; expected one of string, long, double, boolean, epoch, "
+                    + "timestamp, iso8601");
+        }
+    }
+
+    private static List<String> splitList(String list) {
+        final List<String> items = new ArrayList<>();
+        if (list != null) {
+            for (String item : list.split(",")) {
+                if (!item.trim().isEmpty()) {
+                    items.add(item.trim());
+                }
+            }
+        }
+        return items;
+    }
+
+    /**
+     * @return the index of the label, or -1 if it is not named in the schema
+     */
+    int lookup(byte[] buffer, int offset, int length) {
+        int slot = hash(buffer, offset, length) & (slots.length - 1);
+        while (slots[slot] != 0) {
+            final int index = slots[slot] - 1;
+            if (equals(labels[index], buffer, offset, length)) {
+                return index;
+            }
+            slot = (slot + 1) & (slots.length - 1);
+        }
+        return -1;
+    }
+
+    /**
+     * @param index the result of {@link #lookup}
+     */
+    boolean isSelected(int index) {
+        return index < 0 ? othersSelected : selected[index];
+    }
+
+    SerializableString getName(int index) {
+        return names[index];
+    }
+
+    Type getType(int index) {
+        return types[index];
+    }
+
+    /**
+     * Writes a value of the label at {@code index} as its type.
+     *
+     * @param timestamps the parser of the caller's thread for timestamp types
+     */
+    void writeValue(JsonGenerator generator, int index, byte[] buffer, int offset, int length,
+                    TimestampParser timestamps) throws IOException {
+        final Type type = types[index];
+        if (type != Type.STRING && length == 0) {
+            generator.writeNull();
+            return;
+        }
+        switch (type) {
+            case LONG:
+                if (isLong(buffer, offset, length)) {
+                    generator.writeNumber(parseLong(buffer, offset, length));
+                    return;
+                }
+                break;
+            case DOUBLE:
+                final double value = parseDouble(buffer, offset, length);
+                if (!Double.isNaN(value)) {
+                    generator.writeNumber(value);
+                    return;
+                }
+                break;
+            case BOOLEAN:
+                if (equals(TRUE, buffer, offset, length)) {
+                    generator.writeBoolean(true);
+                    return;
+                }
+                if (equals(FALSE, buffer, offset, length)) {
+                    generator.writeBoolean(false);
+                    return;
+                }
+                break;
+            case EPOCH:
+                final long millis = parseEpochMillis(buffer, offset, length);
+                if (millis >= 0) {
+                    generator.writeNumber(millis);
+                    return;
+                }
+                break;
+            case TIMESTAMP:
+                final long timestamp = timestamps.parse(buffer, offset, length);
+                if (timestamp != TimestampParser.INVALID) {
+                    generator.writeNumber(timestamp);
+                    return;
+                }
+                break;
+            case ISO8601:
+                if (timestamps.parse(buffer, offset, length) != TimestampParser.INVALID) {
+                    generator.writeUTF8String(timestamps.formatIso8601(), 0, TimestampParser.ISO_8601_LENGTH);
+                    return;
+                }
+                break;
+            default:
+                break;
+        }
+        generator.writeUTF8String(buffer, offset, length);
+    }
+
+    /**
+     * Reads a value of the label at {@code index} as its type, with the same
+     * rules as {@link #writeValue} except that a value which is not of its
+     * type is read as null: a record field of that type cannot hold the
+     * string. Epoch and timestamp values are read as {@link Timestamp}s.
+     */
+    Object readValue(int index, byte[] buffer, int offset, int length, TimestampParser timestamps) {
+        final Type type = types[index];
+        if (type != Type.STRING && length == 0) {
+            return null;
+        }
+        switch (type) {
+            case LONG:
+                if (isLong(buffer, offset, length)) {
+                    return parseLong(buffer, offset, length);
+                }
+                break;
+            case DOUBLE:
+                final double value = parseDouble(buffer, offset, length);
+                if (!Double.isNaN(value)) {
+                    return value;
+                }
+                break;
+            case BOOLEAN:
+                if (equals(TRUE, buffer, offset, length)) {
+                    return Boolean.TRUE;
+                }
+                if (equals(FALSE, buffer, offset, length)) {
+                    return Boolean.FALSE;
+                }
+                break;
+            case EPOCH:
+                final long millis = parseEpochMillis(buffer, offset, length);
+                if (millis >= 0) {
+                    return new Timestamp(millis);
+                }
+                break;
+            case TIMESTAMP:
+                final long timestamp = timestamps.parse(buffer, offset, length);
+                if (timestamp != TimestampParser.INVALID) {
+                    return new Timestamp(timestamp);
+                }
+                break;
+            case ISO8601:
+                if (timestamps.parse(buffer, offset, length) != TimestampParser.INVALID) {
+                    return new String(timestamps.formatIso8601(), 0, TimestampParser.ISO_8601_LENGTH,
+                            StandardCharsets.US_ASCII);
+                }
+                // read as a string field, which can hold the value as it is
+                return new String(buffer, offset, length, StandardCharsets.UTF_8);
+            default:
+                return new String(buffer, offset, length, StandardCharsets.UTF_8);
+        }
+        return null;
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    String getLabel(int index) {
+        return names[index].getValue();
+    }
+
+    /**
+     * @return whether labels that are not named in the schema are written, i.e. no include list was given
+     */
+    boolean selectsOthers() {
+        return othersSelected;
+    }
+
+    /**
+     * @return whether the bytes are an optional minus sign and digits within the range of a long
+     */
+    static boolean isLong(byte[] buffer, int offset, int length) {
+        final boolean negative = length > 0 && buffer[offset] == '-';
+        final int digits = negative ? length - 1 : length;
+        if (digits == 0 || digits > 19) {
+            return false;
+        }
+        for (int i = length - digits; i < length; i++) {
+            if (buffer[offset + i] < '0' || buffer[offset + i] > '9') {
+                return false;
+            }
+        }
+        if (digits < 19) {
+            return true;
+        }
+        // Compare 19 digits with the limit of the sign as text.
+        final byte[] limit = negative ? MIN_LONG_DIGITS : MAX_LONG;
+        for (int i = 0; i < 19; i++) {
+            final byte b = buffer[offset + length - digits + i];
+            if (b != limit[i]) {
+                return b < limit[i];
+            }
+        }
+        return true;
+    }
+
+    private static long parseLong(byte[] buffer, int offset, int length) {
+        final boolean negative = buffer[offset] == '-';
+        long value = 0;
+        for (int i = negative ? 1 : 0; i < length; i++) {
+            value = value * 10 - (buffer[offset + i] - '0');
+        }
+        return negative ? value : -value;
+    }
+
+    /**
+     * @return the finite value of a decimal number, or NaN if the bytes are not one
+     */
+    static double parseDouble(byte[] buffer, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            final byte b = buffer[offset + i];
+            if ((b < '0' || b > '9') && b != '-' && b != '+' && b != '.' && b != 'e' && b != 'E') {
+                return Double.NaN;
+            }
+        }
+        try {
+            final double value = Double.parseDouble(new String(buffer, offset, length, StandardCharsets.US_ASCII));
+            return Double.isInfinite(value) ? Double.NaN : value;
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * @return the milliseconds of {@code seconds[.fraction]}, truncated, or -1 if the bytes are not of that form
+     */
+    static long parseEpochMillis(byte[] buffer, int offset, int length) {
+        long seconds = 0;
+        int i = 0;
+        while (i < length && buffer[offset + i] >= '0' && buffer[offset + i] <= '9') {
+            if (i == 12) {
+                // Past the year 33000.
+                return -1;
+            }
+            seconds = seconds * 10 + (buffer[offset + i] - '0');
+            i++;
+        }
+        if (i == 0) {
+            return -1;
+        }
+        long millis = 0;
+        if (i < length) {
+            if (buffer[offset + i] != '.') {
+                return -1;
+            }
+            int scale = 100;
+            for (i++; i < length; i++) {
+                final byte b = buffer[offset + i];
+                if (b < '0' || b > '9') {
+                    return -1;
+                }
+                millis += (b - '0') * scale;
+                scale /= 10;
+            }
+        }
+        return seconds * 1000 + millis;
+    }
+
+    private static int hash(byte[] buffer, int offset, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = hash * 31 + buffer[offset + i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equals(byte[] label, byte[] buffer, int offset, int length) {
+        if (label.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (label[i] != buffer[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Entry {
+        private final boolean selected;
+        private Type type = Type.STRING;
+
+        Entry(boolean selected) {
+            this.selected = selected;
+        }
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Tokenizes LTSV content directly on its UTF-8 bytes.
+ * <p>
+ * Lines are read by a {@link LineReader} and split into fields by recording
+ * offsets only, so no String or Map is created per line or per value. Values
+ * are handed to the {@link JsonGenerator} as raw UTF-8 bytes and escaped on
+ * the way out. Labels are looked up in a {@link KeyDictionary} shared by all
+ * tokenizers, so a label that repeats on every line is written from its
+ * pre-encoded bytes.
+ * <p>
+ * The semantics follow ltsv4j's {@code LTSVParser}: lines end at LF, CR or
+ * CRLF, empty fields between tabs are skipped, a field is split at its first
+ * colon, and a label that appears twice keeps its first position but takes
+ * the last value. Repeated labels are merged while the line is split, found
+ * by their schema index or else in a small hash table of the line's labels,
+ * so a line is written in one pass over its fields.
+ * <p>
+ * With an {@link LTSVSchema}, fields that are not selected are dropped while
+ * the line is split, and the rest are written with the schema's names and
+ * types.
+ */
+final class LTSVTokenizer {
+
+    static final int DEFAULT_BUFFER_SIZE = LineReader.DEFAULT_BUFFER_SIZE;
+
+    private static final byte TAB = '\t';
+    private static final byte COLON = ':';
+    private static final int FIELD_STRIDE = 5;
+
+    private static final KeyDictionary keys = new KeyDictionary();
+
+    private final LineReader lines;
+    private final LTSVSchema schema;
+    private final TimestampParser timestamps = new TimestampParser();
+
+    private byte[] buffer;
+    private int lineStart;
+    private int lineEnd;
+
+    // Per field: label start, colon, value start, value end and index in the schema.
+    private int[] fields = new int[FIELD_STRIDE * 32];
+    private int fieldCount;
+    private boolean valid;
+
+    // Open addressing on the label bytes of fields without a schema index. A
+    // slot or schema index is in use only if stamped with the current line.
+    private int[] slotFields = new int[64];
+    private int[] slotLines = new int[64];
+    private final int[] schemaFields;
+    private final int[] schemaFieldLines;
+    private int line;
+
+    LTSVTokenizer(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    LTSVTokenizer(InputStream in, int bufferSize) {
+        this(in, bufferSize, null);
+    }
+
+    /**
+     * @param schema the fields to write and their types, or null to write every field as a string
+     */
+    LTSVTokenizer(InputStream in, int bufferSize, LTSVSchema schema) {
+        this.lines = new LineReader(in, bufferSize);
+        this.schema = schema;
+        this.schemaFields = schema == null ? null : new int[schema.size()];
+        this.schemaFieldLines = schema == null ? null : new int[schema.size()];
+    }
+
+    /**
+     * Advances to the next line and splits it into fields.
+     *
+     * @return false when the content is exhausted
+     */
+    boolean nextLine() throws IOException {
+        if (!lines.nextLine()) {
+            return false;
+        }
+        buffer = lines.getBuffer();
+        lineStart = lines.getLineStart();
+        lineEnd = lines.getLineEnd();
+        tokenize();
+        return true;
+    }
+
+    private void tokenize() {
+        fieldCount = 0;
+        valid = true;
+        if (++line == 0) {
+            Arrays.fill(slotLines, 0);
+            if (schemaFieldLines != null) {
+                Arrays.fill(schemaFieldLines, 0);
+            }
+            line = 1;
+        }
+
+        int start = lineStart;
+        while (start < lineEnd) {
+            int end = start;
+            int colon = -1;
+            while (end < lineEnd && buffer[end] != TAB) {
+                if (colon < 0 && buffer[end] == COLON) {
+                    colon = end;
+                }
+                end++;
+            }
+            if (end > start) {
+                if (colon < 0) {
+                    valid = false;
+                    return;
+                }
+                final int index = schema == null ? -1 : schema.lookup(buffer, start, colon - start);
+                if (schema == null || schema.isSelected(index)) {
+                    final int field = index >= 0 ? fieldOfIndex(index) : fieldOfLabel(start, colon - start);
+                    if (field < fieldCount) {
+                        // A repeated label: keep the first position, take this value.
+                        fields[field * FIELD_STRIDE + 2] = colon + 1;
+                        fields[field * FIELD_STRIDE + 3] = end;
+                    } else {
+                        if (fieldCount * FIELD_STRIDE == fields.length) {
+                            fields = Arrays.copyOf(fields, fields.length * 2);
+                        }
+                        final int offset = fieldCount * FIELD_STRIDE;
+                        fields[offset] = start;
+                        fields[offset + 1] = colon;
+                        fields[offset + 2] = colon + 1;
+                        fields[offset + 3] = end;
+                        fields[offset + 4] = index;
+                        fieldCount++;
+                    }
+                }
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * @return the field of the current line with the schema index, or {@link #fieldCount} after claiming it for the next field
+     */
+    private int fieldOfIndex(int index) {
+        if (schemaFieldLines[index] == line) {
+            return schemaFields[index];
+        }
+        schemaFieldLines[index] = line;
+        schemaFields[index] = fieldCount;
+        return fieldCount;
+    }
+
+    /**
+     * @return the field of the current line with the label, or {@link #fieldCount} after claiming it for the next field
+     */
+    private int fieldOfLabel(int start, int length) {
+        if ((fieldCount + 1) * 2 > slotFields.length) {
+            growSlots();
+        }
+        final int mask = slotFields.length - 1;
+        int slot = hash(start, length) & mask;
+        while (slotLines[slot] == line) {
+            final int field = slotFields[slot];
+            if (labelEquals(field, start, length)) {
+                return field;
+            }
+            slot = (slot + 1) & mask;
+        }
+        slotLines[slot] = line;
+        slotFields[slot] = fieldCount;
+        return fieldCount;
+    }
+
+    private void growSlots() {
+        slotFields = new int[slotFields.length * 2];
+        slotLines = new int[slotFields.length];
+        final int mask = slotFields.length - 1;
+        for (int field = 0; field < fieldCount; field++) {
+            if (fields[field * FIELD_STRIDE + 4] >= 0) {
+                continue;
+            }
+            int slot = hash(labelStart(field), labelLength(field)) & mask;
+            while (slotLines[slot] == line) {
+                slot = (slot + 1) & mask;
+            }
+            slotLines[slot] = line;
+            slotFields[slot] = field;
+        }
+    }
+
+    private int hash(int start, int length) {
+        int hash = 0;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private boolean labelEquals(int field, int start, int length) {
+        if (labelLength(field) != length) {
+            return false;
+        }
+        final int offset = labelStart(field);
+        for (int i = 0; i < length; i++) {
+            if (buffer[offset + i] != buffer[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return whether every field of the current line has a label separator
+     */
+    boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * @return the 1-based number of the current line
+     */
+    long getLineNumber() {
+        return lines.getLineNumber();
+    }
+
+    /**
+     * Returns the read buffer to the {@link BufferPool}. The tokenizer must not be used afterwards.
+     */
+    void release() {
+        lines.release();
+    }
+
+    int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * @return whether the current line has no bytes at all, as opposed to having no selected fields
+     */
+    boolean isEmpty() {
+        return lineStart == lineEnd;
+    }
+
+    /**
+     * Finds the values of the schema's fields on the current line, where a
+     * repeated label has the value of its last occurrence.
+     *
+     * @param starts  set to the offset in {@link #getBuffer()} of the value of each schema index, or -1 if it is absent
+     * @param lengths set to the length of the value of each schema index that is present
+     */
+    void locateValues(int[] starts, int[] lengths) {
+        Arrays.fill(starts, -1);
+        for (int i = 0; i < fieldCount; i++) {
+            final int index = fields[i * FIELD_STRIDE + 4];
+            if (index >= 0) {
+                starts[index] = valueStart(i);
+                lengths[index] = valueLength(i);
+            }
+        }
+    }
+
+    /**
+     * @return the buffer holding the current line, valid until the next call to {@link #nextLine()}
+     */
+    byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Adds the raw bytes of the current line to {@code invalid}.
+     */
+    void addLineTo(InvalidLines invalid) throws IOException {
+        invalid.add(lines.getLineNumber(), buffer, lineStart, lineEnd - lineStart);
+    }
+
+    /**
+     * Writes the current line as a JSON object.
+     */
+    void writeRecord(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        for (int i = 0; i < fieldCount; i++) {
+            final int index = fields[i * FIELD_STRIDE + 4];
+            if (index < 0) {
+                generator.writeFieldName(keys.get(buffer, labelStart(i), labelLength(i)));
+                generator.writeUTF8String(buffer, valueStart(i), valueLength(i));
+            } else {
+                generator.writeFieldName(schema.getName(index));
+                schema.writeValue(generator, index, buffer, valueStart(i), valueLength(i), timestamps);
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Puts the fields of the current line into {@code values} in the order
+     * {@link #writeRecord} writes them.
+     *
+     * @param typed whether values are read as their schema types rather than as strings
+     */
+    void readRecord(Map<String, Object> values, boolean typed) {
+        for (int i = 0; i < fieldCount; i++) {
+            final int index = fields[i * FIELD_STRIDE + 4];
+            if (index < 0) {
+                values.put(keys.get(buffer, labelStart(i), labelLength(i)).getValue(),
+                        new String(buffer, valueStart(i), valueLength(i), StandardCharsets.UTF_8));
+            } else if (!typed) {
+                values.put(schema.getLabel(index),
+                        new String(buffer, valueStart(i), valueLength(i), StandardCharsets.UTF_8));
+            } else {
+                values.put(schema.getLabel(index),
+                        schema.readValue(index, buffer, valueStart(i), valueLength(i), timestamps));
+            }
+        }
+    }
+
+    private int labelStart(int field) {
+        return fields[field * FIELD_STRIDE];
+    }
+
+    private int labelLength(int field) {
+        return fields[field * FIELD_STRIDE + 1] - fields[field * FIELD_STRIDE];
+    }
+
+    private int valueStart(int field) {
+        return fields[field * FIELD_STRIDE + 2];
+    }
+
+    private int valueLength(int field) {
+        return fields[field * FIELD_STRIDE + 3] - fields[field * FIELD_STRIDE + 2];
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import org.apache.nifi.processor.ProcessSession;
+
+/**
+ * A latency histogram for one processing stage, kept as NiFi counters with
+ * one counter per decade from 1 microsecond to 10 seconds, e.g.
+ * {@code "Convert time < 10 ms"}, plus a counter of the total time. This shows the distribution on the processor's counters page
+ * without a profiler. Counter names are built once, so recording a
+ * latency does not allocate.
+ */
+final class LatencyCounters {
+
+    private static final long[] BOUNDS_NANOS = {
+            1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L, 10000000000L
+    };
+    private static final String[] BOUND_NAMES = {"1 us", "10 us", "100 us", "1 ms", "10 ms", "100 ms", "1 s", "10 s"};
+
+    private final String[] bucketNames = new String[BOUNDS_NANOS.length + 1];
+    private final String totalName;
+
+    /**
+     * @param stage the name of the stage, e.g. "Convert"
+     */
+    LatencyCounters(String stage) {
+        for (int i = 0; i < BOUNDS_NANOS.length; i++) {
+            bucketNames[i] = stage + " time < " + BOUND_NAMES[i];
+        }
+        bucketNames[BOUNDS_NANOS.length] = stage + " time >= " + BOUND_NAMES[BOUNDS_NANOS.length - 1];
+        totalName = stage + " time total (us)";
+    }
+
+    void record(ProcessSession session, long nanos) {
+        session.adjustCounter(bucketNames[bucket(nanos)], 1, false);
+        session.adjustCounter(totalName, nanos / 1000, false);
+    }
+
+    static int bucket(long nanos) {
+        int bucket = 0;
+        while (bucket < BOUNDS_NANOS.length && nanos >= BOUNDS_NANOS[bucket]) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    String getBucketName(int bucket) {
+        return bucketNames[bucket];
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+
+/**
+ * Reads content one line at a time into a reusable byte buffer.
+ * <p>
+ * Lines end at LF, CR or CRLF, like {@link java.io.BufferedReader#readLine()},
+ * and the current line is exposed as offsets into {@link #getBuffer()} which
+ * stay valid until the next call to {@link #nextLine()}. The buffer grows only
+ * when a single line does not fit into it.
+ * <p>
+ * The buffers and decoder come from the {@link BufferPool} of the thread and
+ * are given back by {@link #release()}.
+ */
+final class LineReader {
+
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+
+    private final InputStream in;
+
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private boolean eof;
+    private boolean skipLineFeed;
+
+    private int lineStart;
+    private int lineEnd;
+    private long lineNumber;
+
+    private CharsetDecoder decoder;
+    private char[] chars;
+    private CharBuffer charView;
+
+    LineReader(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    LineReader(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buffer = BufferPool.takeBytes(bufferSize);
+    }
+
+    /**
+     * Returns the buffers and decoder to the pool. The reader and the buffer
+     * of its current line must not be used afterwards.
+     */
+    void release() {
+        if (buffer != null) {
+            BufferPool.release(buffer);
+            buffer = null;
+        }
+        if (chars != null) {
+            BufferPool.release(chars);
+            chars = null;
+            charView = null;
+        }
+        if (decoder != null) {
+            BufferPool.release(decoder);
+            decoder = null;
+        }
+    }
+
+    /**
+     * Advances to the next line.
+     *
+     * @return false when the content is exhausted
+     */
+    boolean nextLine() throws IOException {
+        if (skipLineFeed) {
+            if (position == limit && !fill()) {
+                return false;
+            }
+            if (buffer[position] == LF) {
+                position++;
+            }
+            skipLineFeed = false;
+        }
+
+        int scan = position;
+        while (true) {
+            while (scan < limit) {
+                final byte b = buffer[scan];
+                if (b == LF || b == CR) {
+                    lineStart = position;
+                    lineEnd = scan;
+                    position = scan + 1;
+                    if (b == CR) {
+                        if (position < limit) {
+                            if (buffer[position] == LF) {
+                                position++;
+                            }
+                        } else {
+                            skipLineFeed = true;
+                        }
+                    }
+                    lineNumber++;
+                    return true;
+                }
+                scan++;
+            }
+            if (eof) {
+                if (position == limit) {
+                    return false;
+                }
+                lineStart = position;
+                lineEnd = limit;
+                position = limit;
+                lineNumber++;
+                return true;
+            }
+            final int scanned = scan - position;
+            fill();
+            scan = position + scanned;
+        }
+    }
+
+    private boolean fill() throws IOException {
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+        if (limit == buffer.length) {
+            final byte[] grown = BufferPool.takeBytes(buffer.length * 2);
+            System.arraycopy(buffer, 0, grown, 0, limit);
+            BufferPool.release(buffer);
+            buffer = grown;
+        }
+        final int read = in.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            eof = true;
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+
+    byte[] getBuffer() {
+        return buffer;
+    }
+
+    int getLineStart() {
+        return lineStart;
+    }
+
+    /**
+     * @return the offset just past the last byte of the line, excluding the line break
+     */
+    int getLineEnd() {
+        return lineEnd;
+    }
+
+    /**
+     * @return the 1-based number of the current line
+     */
+    long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Decodes the current line from UTF-8, replacing malformed input.
+     *
+     * @return a view of the line starting at position 0 of a reusable char array,
+     *         valid until the next call to this method
+     */
+    CharBuffer decodeLine() {
+        final int length = lineEnd - lineStart;
+        if (chars == null || chars.length < length) {
+            if (chars != null) {
+                BufferPool.release(chars);
+            }
+            // Powers of two, so that the pool sees few distinct lengths.
+            chars = BufferPool.takeChars(Math.max(Integer.highestOneBit(length - 1) << 1, 256));
+            charView = CharBuffer.wrap(chars);
+        }
+
+        int decoded = 0;
+        while (decoded < length && buffer[lineStart + decoded] >= 0) {
+            chars[decoded] = (char) buffer[lineStart + decoded];
+            decoded++;
+        }
+        charView.clear();
+        if (decoded < length) {
+            if (decoder == null) {
+                decoder = BufferPool.takeDecoder();
+            }
+            charView.position(decoded);
+            decoder.reset();
+            decoder.decode(ByteBuffer.wrap(buffer, lineStart + decoded, length - decoded), charView, true);
+            decoder.flush(charView);
+            charView.flip();
+        } else {
+            charView.limit(decoded);
+        }
+        return charView;
+    }
+}
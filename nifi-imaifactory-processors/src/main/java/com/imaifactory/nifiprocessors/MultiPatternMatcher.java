@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+/**
+ * Tries several {@link NamedGroupPattern}s on each line and reports the
+ * first one that matches.
+ * <p>
+ * Patterns are tried in order of how often they matched recently, so that
+ * the most common line format is usually tried first. Hit counts are halved
+ * every time the order is revisited, which lets the order follow a change in
+ * the mix of formats.
+ * <p>
+ * An optional step budget bounds the work done per line across all patterns,
+ * see {@link BudgetedCharSequence}. Instances are not thread-safe.
+ */
+final class MultiPatternMatcher {
+
+    static final int REORDER_INTERVAL = 1024;
+
+    private final NamedGroupPattern[] patterns;
+    private final GroupMatcher[] matchers;
+    private final int[] order;
+    private final long[] hits;
+    private final long stepBudget;
+    private final BudgetedCharSequence budgetedLine = new BudgetedCharSequence();
+    private int linesUntilReorder = REORDER_INTERVAL;
+
+    MultiPatternMatcher(NamedGroupPattern[] patterns) {
+        this(patterns, null, 0);
+    }
+
+    /**
+     * @param initialOrder an order returned by {@link #getOrder()} of an earlier
+     *                     instance for the same patterns, or null
+     * @param stepBudget   the number of character reads allowed per line, or 0 for no limit
+     */
+    MultiPatternMatcher(NamedGroupPattern[] patterns, int[] initialOrder, long stepBudget) {
+        this.patterns = patterns;
+        this.matchers = new GroupMatcher[patterns.length];
+        this.hits = new long[patterns.length];
+        this.stepBudget = stepBudget;
+        for (int i = 0; i < patterns.length; i++) {
+            matchers[i] = patterns[i].newMatcher();
+        }
+        if (initialOrder != null && initialOrder.length == patterns.length) {
+            this.order = initialOrder.clone();
+        } else {
+            this.order = new int[patterns.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+        }
+    }
+
+    /**
+     * @return the index of the first pattern found in the line, or -1 if none is
+     * @throws BudgetedCharSequence.BudgetExceededException if the step budget ran out on this line
+     */
+    int find(CharSequence line) {
+        if (--linesUntilReorder == 0) {
+            reorder();
+        }
+        final CharSequence input = stepBudget > 0 ? budgetedLine.reset(line, stepBudget) : line;
+        for (int i = 0; i < order.length; i++) {
+            final int index = order[i];
+            if (patterns[index].mayMatch(line) && matchers[index].find(input)) {
+                hits[index]++;
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    int getPatternCount() {
+        return patterns.length;
+    }
+
+    NamedGroupPattern getPattern(int index) {
+        return patterns[index];
+    }
+
+    /**
+     * @return the matcher holding the last match of the pattern at {@code index}
+     */
+    GroupMatcher getMatcher(int index) {
+        return matchers[index];
+    }
+
+    /**
+     * @return a copy of the current order, most frequently matching pattern first
+     */
+    int[] getOrder() {
+        return order.clone();
+    }
+
+    private void reorder() {
+        linesUntilReorder = REORDER_INTERVAL;
+        // Insertion sort: the order rarely changes much between two passes.
+        for (int i = 1; i < order.length; i++) {
+            final int index = order[i];
+            int j = i - 1;
+            while (j >= 0 && hits[order[j]] < hits[index]) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = index;
+        }
+        for (int i = 0; i < hits.length; i++) {
+            hits[i] >>= 1;
+        }
+    }
+}
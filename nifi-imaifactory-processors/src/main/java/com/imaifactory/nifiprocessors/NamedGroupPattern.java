@@ -0,0 +1,425 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled regular expression together with the names of its named groups
+ * and their group numbers, so that values can be read with
+ * {@code Matcher.group(int)} instead of a lookup by name for every match.
+ * <p>
+ * It also carries a literal that every match must contain, taken from the
+ * top level of the expression, so that lines which cannot match are rejected
+ * by {@link #mayMatch(CharSequence)} without running the regex engine.
+ * <p>
+ * Matching is done either by {@code java.util.regex} or, for patterns compiled
+ * as linear-time, by RE2/J, which runs in time linear in the input and cannot
+ * backtrack catastrophically, at the cost of back-references and lookaround.
+ */
+final class NamedGroupPattern {
+
+    private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+
+    private final String name;
+    private final Pattern pattern;
+    private final com.google.re2j.Pattern linearTimePattern;
+    private final String[] names;
+    private final int[] groups;
+    private final SerializedString[] fieldNames;
+
+    private final String requiredLiteral;
+    private final boolean literalIsPrefix;
+
+    private NamedGroupPattern(String name, Pattern pattern, com.google.re2j.Pattern linearTimePattern,
+                              String[] names, int[] groups) {
+        this.name = name;
+        this.pattern = pattern;
+        this.linearTimePattern = linearTimePattern;
+        this.names = names;
+        this.groups = groups;
+        this.fieldNames = new SerializedString[names.length];
+        for (int i = 0; i < names.length; i++) {
+            fieldNames[i] = new SerializedString(names[i]);
+        }
+
+        final String regex = pattern.pattern();
+        if (hasInlineFlags(regex)) {
+            this.requiredLiteral = null;
+            this.literalIsPrefix = false;
+        } else {
+            final String prefix = regex.startsWith("^") ? leadingLiteral(regex, 1) : null;
+            if (prefix != null && prefix.length() > 0) {
+                this.requiredLiteral = prefix;
+                this.literalIsPrefix = true;
+            } else {
+                final String literal = longestLiteral(regex);
+                this.requiredLiteral = literal == null || literal.length() < 2 ? null : literal;
+                this.literalIsPrefix = false;
+            }
+        }
+    }
+
+    /**
+     * @throws java.util.regex.PatternSyntaxException if the expression is not valid
+     */
+    static NamedGroupPattern compile(String regex) {
+        return compile(null, regex, false);
+    }
+
+    /**
+     * @param name the name under which matches of this pattern are reported
+     * @param linearTime whether to match with RE2/J instead of {@code java.util.regex}
+     * @throws java.util.regex.PatternSyntaxException if the expression is not valid
+     * @throws com.google.re2j.PatternSyntaxException if the expression is not supported by RE2/J
+     */
+    static NamedGroupPattern compile(String name, String regex, boolean linearTime) {
+        final Pattern pattern = Pattern.compile(regex);
+        // RE2/J spells named groups (?P<name>...)
+        final StringBuilder re2Regex = new StringBuilder(regex.length() + 8);
+        final List<String> names = new ArrayList<>();
+        final List<Integer> groups = new ArrayList<>();
+
+        int start = 0;
+        int group = 0;
+        int classDepth = 0;
+        for (int i = 0; i < regex.length(); i++) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == 'Q') {
+                    final int end = regex.indexOf("\\E", i + 2);
+                    i = end < 0 ? regex.length() : end + 1;
+                } else {
+                    i++;
+                }
+            } else if (c == '[') {
+                classDepth++;
+            } else if (c == ']' && classDepth > 0) {
+                classDepth--;
+            } else if (c == '(' && classDepth == 0) {
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == '?') {
+                    final int nameStart = i + 3;
+                    if (nameStart < regex.length() && regex.charAt(i + 2) == '<' && Character.isLetter(regex.charAt(nameStart))) {
+                        re2Regex.append(regex, start, i + 2).append('P');
+                        start = i + 2;
+                        group++;
+                        final int nameEnd = regex.indexOf('>', nameStart);
+                        names.add(regex.substring(nameStart, nameEnd));
+                        groups.add(group);
+                    }
+                } else {
+                    group++;
+                }
+            }
+        }
+
+        final int[] groupArray = new int[groups.size()];
+        for (int i = 0; i < groupArray.length; i++) {
+            groupArray[i] = groups.get(i);
+        }
+        re2Regex.append(regex, start, regex.length());
+        final com.google.re2j.Pattern linearTimePattern = linearTime ? com.google.re2j.Pattern.compile(re2Regex.toString()) : null;
+        return new NamedGroupPattern(name, pattern, linearTimePattern, names.toArray(new String[names.size()]), groupArray);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return the {@code java.util.regex} form of the pattern, whichever engine is used for matching
+     */
+    Pattern getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @return a new matcher using the engine this pattern was compiled for
+     */
+    GroupMatcher newMatcher() {
+        if (linearTimePattern != null) {
+            final com.google.re2j.Matcher matcher = linearTimePattern.matcher("");
+            return new GroupMatcher() {
+                @Override
+                public boolean find(CharSequence input) {
+                    return matcher.reset(input).find();
+                }
+
+                @Override
+                public int start(int group) {
+                    return matcher.start(group);
+                }
+
+                @Override
+                public int end(int group) {
+                    return matcher.end(group);
+                }
+            };
+        }
+        final java.util.regex.Matcher matcher = pattern.matcher("");
+        return new GroupMatcher() {
+            @Override
+            public boolean find(CharSequence input) {
+                return matcher.reset(input).find();
+            }
+
+            @Override
+            public int start(int group) {
+                return matcher.start(group);
+            }
+
+            @Override
+            public int end(int group) {
+                return matcher.end(group);
+            }
+        };
+    }
+
+    /**
+     * A cheap check done before running the regex engine.
+     *
+     * @return false only if the line cannot match
+     */
+    boolean mayMatch(CharSequence line) {
+        if (requiredLiteral == null) {
+            return true;
+        }
+        return literalIsPrefix ? startsWith(line, requiredLiteral) : contains(line, requiredLiteral);
+    }
+
+    String getRequiredLiteral() {
+        return requiredLiteral;
+    }
+
+    int getGroupCount() {
+        return groups.length;
+    }
+
+    String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * @return the name of the named group at {@code index}, pre-encoded for use as a JSON field name
+     */
+    SerializableString getFieldName(int index) {
+        return fieldNames[index];
+    }
+
+    /**
+     * @return the group number to pass to {@code Matcher.group(int)} for the named group at {@code index}
+     */
+    int getGroup(int index) {
+        return groups[index];
+    }
+
+    private static boolean startsWith(CharSequence line, String prefix) {
+        if (line.length() < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (line.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean contains(CharSequence line, String literal) {
+        final char first = literal.charAt(0);
+        final int last = line.length() - literal.length();
+        for (int i = 0; i <= last; i++) {
+            if (line.charAt(i) != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < literal.length() && line.charAt(i + j) == literal.charAt(j)) {
+                j++;
+            }
+            if (j == literal.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Inline flags such as {@code (?i)} or {@code (?x)} change what a literal
+     * matches, so no literal is extracted from such expressions.
+     */
+    private static boolean hasInlineFlags(String regex) {
+        for (int i = regex.indexOf("(?"); i >= 0; i = regex.indexOf("(?", i + 1)) {
+            if (i + 2 < regex.length() && "idmsuxU-".indexOf(regex.charAt(i + 2)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String leadingLiteral(String regex, int start) {
+        final List<String> runs = literalRuns(regex, start);
+        return runs == null || runs.isEmpty() || runs.get(0) == null ? null : runs.get(0);
+    }
+
+    private static String longestLiteral(String regex) {
+        final List<String> runs = literalRuns(regex, 0);
+        String longest = null;
+        if (runs != null) {
+            for (String run : runs) {
+                if (run != null && (longest == null || run.length() > longest.length())) {
+                    longest = run;
+                }
+            }
+        }
+        return longest;
+    }
+
+    /**
+     * Splits the top level of an expression into runs of literal characters
+     * that every match must contain in that order. A run that does not start
+     * at {@code start} is preceded by a null entry.
+     *
+     * @return null if the expression has a top-level alternation
+     */
+    private static List<String> literalRuns(String regex, int start) {
+        final List<String> runs = new ArrayList<>();
+        StringBuilder run = new StringBuilder();
+        int depth = 0;
+        int i = start;
+        while (i < regex.length()) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                final char next = i + 1 < regex.length() ? regex.charAt(i + 1) : 0;
+                if (depth == 0 && next != 0 && !Character.isLetterOrDigit(next)) {
+                    run.append(next);
+                    i += 2;
+                    continue;
+                }
+                i = skipEscape(regex, i);
+                run = endRun(runs, run);
+            } else if (c == '[') {
+                i = skipClass(regex, i);
+                run = endRun(runs, run);
+            } else if (c == '(') {
+                depth++;
+                i++;
+                run = endRun(runs, run);
+            } else if (c == ')') {
+                depth--;
+                i++;
+            } else if (c == '|') {
+                if (depth == 0) {
+                    return null;
+                }
+                i++;
+            } else if (depth > 0) {
+                i++;
+            } else if (c == '?' || c == '*' || c == '{') {
+                if (run.length() > 0) {
+                    run.setLength(run.length() - 1);
+                }
+                run = endRun(runs, run);
+                i = c == '{' ? regex.indexOf('}', i) + 1 : i + 1;
+                i = skipQuantifierModifier(regex, i);
+            } else if (c == '+') {
+                run = endRun(runs, run);
+                i = skipQuantifierModifier(regex, i + 1);
+            } else if (METACHARACTERS.indexOf(c) >= 0) {
+                run = endRun(runs, run);
+                i++;
+            } else {
+                run.append(c);
+                i++;
+            }
+        }
+        endRun(runs, run);
+        return runs;
+    }
+
+    private static StringBuilder endRun(List<String> runs, StringBuilder run) {
+        if (run.length() > 0) {
+            runs.add(run.toString());
+        }
+        runs.add(null);
+        return new StringBuilder();
+    }
+
+    private static int skipQuantifierModifier(String regex, int i) {
+        return i < regex.length() && (regex.charAt(i) == '?' || regex.charAt(i) == '+') ? i + 1 : i;
+    }
+
+    private static int skipEscape(String regex, int i) {
+        if (i + 1 >= regex.length()) {
+            return regex.length();
+        }
+        final char c = regex.charAt(i + 1);
+        int next = i + 2;
+        switch (c) {
+            case 'Q':
+                final int end = regex.indexOf("\\E", next);
+                return end < 0 ? regex.length() : end + 2;
+            case 'x':
+                return next < regex.length() && regex.charAt(next) == '{' ? regex.indexOf('}', next) + 1 : next + 2;
+            case 'u':
+                return next + 4;
+            case 'c':
+                return next + 1;
+            case 'p':
+            case 'P':
+                return next < regex.length() && regex.charAt(next) == '{' ? regex.indexOf('}', next) + 1 : next + 1;
+            case 'N':
+                return regex.indexOf('}', next) + 1;
+            case 'k':
+                return regex.indexOf('>', next) + 1;
+            case '0':
+                while (next < regex.length() && next < i + 5 && regex.charAt(next) >= '0' && regex.charAt(next) <= '7') {
+                    next++;
+                }
+                return next;
+            default:
+                if (Character.isDigit(c)) {
+                    while (next < regex.length() && Character.isDigit(regex.charAt(next))) {
+                        next++;
+                    }
+                }
+                return next;
+        }
+    }
+
+    private static int skipClass(String regex, int i) {
+        int depth = 0;
+        while (i < regex.length()) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                depth++;
+            } else if (c == ']' && --depth == 0) {
+                return i + 1;
+            }
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import org.apache.nifi.annotation.behavior.DynamicProperty;
+import org.apache.nifi.annotation.documentation.CapabilityDescription;
+import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.annotation.lifecycle.OnEnabled;
+import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.components.ValidationContext;
+import org.apache.nifi.components.ValidationResult;
+import org.apache.nifi.controller.AbstractControllerService;
+import org.apache.nifi.controller.ConfigurationContext;
+import org.apache.nifi.logging.ComponentLog;
+import org.apache.nifi.serialization.RecordReader;
+import org.apache.nifi.serialization.RecordReaderFactory;
+import org.apache.nifi.serialization.record.RecordSchema;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+
+@Tags({"regex", "text", "record", "reader", "parse"})
+@DynamicProperty(name = "Pattern name", value = "Regular expression with named groups",
+        description = "Adds a further pattern that is tried on each line; the property name identifies the pattern")
+@CapabilityDescription("Reads each line of text that matches one of the regular expressions as a record of its named "
+        + "groups, with the same matching as ConvertToJSONWithRegex. Lines that match no expression are skipped. "
+        + "The schema is the named groups of all expressions, as nullable strings.")
+public class NamedGroupRegexReader extends AbstractControllerService implements RecordReaderFactory {
+
+    private static final List<PropertyDescriptor> properties;
+
+    static {
+        final List<PropertyDescriptor> descriptors = new ArrayList<>();
+        descriptors.add(ConvertToJSONWithRegex.REGEX);
+        descriptors.add(ConvertToJSONWithRegex.PATTERN_NAME_FIELD);
+        descriptors.add(ConvertToJSONWithRegex.REGEX_ENGINE);
+        descriptors.add(ConvertToJSONWithRegex.MAX_MATCH_STEPS);
+        properties = Collections.unmodifiableList(descriptors);
+    }
+
+    private volatile NamedGroupPattern[] patterns;
+    private volatile String patternNameField;
+    private volatile long maxMatchSteps;
+    private volatile RecordSchema schema;
+
+    @Override
+    protected List<PropertyDescriptor> getSupportedPropertyDescriptors() {
+        return properties;
+    }
+
+    @Override
+    protected PropertyDescriptor getSupportedDynamicPropertyDescriptor(final String propertyDescriptorName) {
+        return new PropertyDescriptor.Builder()
+                .name(propertyDescriptorName)
+                .required(false)
+                .dynamic(true)
+                .addValidator(ConvertToJSONWithRegex.NAMED_GROUP_REGEX_VALIDATOR)
+                .build();
+    }
+
+    @Override
+    protected Collection<ValidationResult> customValidate(final ValidationContext context) {
+        return ConvertToJSONWithRegex.validatePatterns(context);
+    }
+
+    @OnEnabled
+    public void onEnabled(final ConfigurationContext context) {
+        final boolean linearTime = ConvertToJSONWithRegex.LINEAR_ENGINE.getValue()
+                .equals(context.getProperty(ConvertToJSONWithRegex.REGEX_ENGINE).getValue());
+        final NamedGroupPattern[] patterns = ConvertToJSONWithRegex.compilePatterns(context.getProperties(), linearTime);
+        final String patternNameField = context.getProperty(ConvertToJSONWithRegex.PATTERN_NAME_FIELD).getValue();
+        this.maxMatchSteps = context.getProperty(ConvertToJSONWithRegex.MAX_MATCH_STEPS).asLong();
+        this.schema = RegexRecordReader.createSchema(patterns, patternNameField);
+        this.patternNameField = patternNameField;
+        this.patterns = patterns;
+    }
+
+    @Override
+    public RecordReader createRecordReader(final Map<String, String> variables, final InputStream in, final ComponentLog logger) {
+        return new RegexRecordReader(in, patterns, patternNameField, maxMatchSteps, schema);
+    }
+}
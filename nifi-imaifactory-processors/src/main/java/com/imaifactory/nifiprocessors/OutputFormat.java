@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.JsonGeneratorDelegate;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.apache.nifi.components.AllowableValue;
+import org.apache.nifi.components.PropertyDescriptor;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * The encodings the converters can write records in. All of them are
+ * written through a Jackson 2 {@link JsonGenerator}, so the converters do
+ * not depend on the format beyond the two differences below.
+ * <p>
+ * JSON is the only textual format, and the only one in which records may be
+ * separated by a line break. MessagePack needs the length of an array
+ * before its elements, which a streaming generator can only provide by
+ * holding the whole array in memory, so a sequence of records is written as
+ * a sequence of root values instead of one root array.
+ * <p>
+ * The CBOR generator of this Jackson version ignores the offset passed to
+ * {@code writeUTF8String} and always writes from the start of the array, so
+ * its generators copy such values to the start of a buffer of their own.
+ * The MessagePack generator holds each root value until it is flushed and
+ * refuses to start another before, so its generators flush at the end of
+ * every root value. That flush only hands the value to the stream; the
+ * stream itself is flushed when the generator is, so that a compressor
+ * underneath is not flushed once per record.
+ */
+enum OutputFormat {
+
+    JSON("JSON", "application/json", "Textual JSON", new JsonFactory(), true),
+    SMILE("Smile", "application/x-jackson-smile", "Binary JSON in the Smile format, with shared field names",
+            new SmileFactory(), true),
+    CBOR("CBOR", "application/cbor", "Concise Binary Object Representation (RFC 7049)", new CBORFactory(), true) {
+        @Override
+        JsonGenerator createGenerator(OutputStream out) throws IOException {
+            return new OffsetUTF8Generator(super.createGenerator(out));
+        }
+    },
+    MESSAGEPACK("MessagePack", "application/x-msgpack",
+            "MessagePack. A sequence of records is written as a sequence of maps rather than an array",
+            new MessagePackFactory(), false) {
+        @Override
+        JsonGenerator createGenerator(OutputStream out) throws IOException {
+            return new RootFlushingGenerator(super.createGenerator(new FlushIgnoringOutputStream(out)), out);
+        }
+    };
+
+    static final PropertyDescriptor PROPERTY = new PropertyDescriptor.Builder()
+            .name("Output Format")
+            .required(true)
+            .allowableValues(allowableValues())
+            .defaultValue(JSON.allowableValue.getValue())
+            .description("The encoding of the records written to success. mime.type is set to match")
+            .build();
+
+    private final AllowableValue allowableValue;
+    private final String mimeType;
+    private final JsonFactory factory;
+    private final boolean rootArray;
+
+    OutputFormat(String name, String mimeType, String description, JsonFactory factory, boolean rootArray) {
+        this.allowableValue = new AllowableValue(name, name, description);
+        this.mimeType = mimeType;
+        this.factory = factory;
+        this.rootArray = rootArray;
+    }
+
+    static OutputFormat forValue(String value) {
+        for (OutputFormat format : values()) {
+            if (format.allowableValue.getValue().equals(value)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown output format " + value);
+    }
+
+    private static AllowableValue[] allowableValues() {
+        final OutputFormat[] formats = values();
+        final AllowableValue[] allowableValues = new AllowableValue[formats.length];
+        for (int i = 0; i < formats.length; i++) {
+            allowableValues[i] = formats[i].allowableValue;
+        }
+        return allowableValues;
+    }
+
+    JsonGenerator createGenerator(OutputStream out) throws IOException {
+        return factory.createGenerator(out);
+    }
+
+    JsonFactory getFactory() {
+        return factory;
+    }
+
+    String getMimeType() {
+        return mimeType;
+    }
+
+    boolean isTextual() {
+        return this == JSON;
+    }
+
+    /**
+     * @return whether a sequence of records can be streamed as one root array
+     */
+    boolean isRootArray() {
+        return rootArray;
+    }
+
+    /**
+     * Writes UTF-8 strings that do not start at offset 0 from a copy that does.
+     */
+    private static final class OffsetUTF8Generator extends JsonGeneratorDelegate {
+        private byte[] copy = new byte[256];
+
+        OffsetUTF8Generator(JsonGenerator generator) {
+            super(generator);
+        }
+
+        @Override
+        public void writeUTF8String(byte[] text, int offset, int length) throws IOException {
+            if (offset == 0) {
+                delegate.writeUTF8String(text, 0, length);
+                return;
+            }
+            if (copy.length < length) {
+                copy = Arrays.copyOf(copy, Math.max(length, copy.length * 2));
+            }
+            System.arraycopy(text, offset, copy, 0, length);
+            delegate.writeUTF8String(copy, 0, length);
+        }
+    }
+
+    /**
+     * Flushes after each root value, so that the next one can be started.
+     * The generator writes to a {@link FlushIgnoringOutputStream} over
+     * {@code out}, which is flushed only when the generator itself is.
+     */
+    private static final class RootFlushingGenerator extends JsonGeneratorDelegate {
+        private final OutputStream out;
+        private int depth;
+
+        RootFlushingGenerator(JsonGenerator generator, OutputStream out) {
+            super(generator);
+            this.out = out;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            final boolean closesTarget = delegate.isEnabled(Feature.AUTO_CLOSE_TARGET);
+            delegate.close();
+            if (!closesTarget) {
+                out.flush();
+            }
+        }
+
+        @Override
+        public void writeStartArray() throws IOException {
+            depth++;
+            delegate.writeStartArray();
+        }
+
+        @Override
+        public void writeStartArray(int size) throws IOException {
+            depth++;
+            delegate.writeStartArray(size);
+        }
+
+        @Override
+        public void writeStartObject() throws IOException {
+            depth++;
+            delegate.writeStartObject();
+        }
+
+        @Override
+        public void writeEndArray() throws IOException {
+            delegate.writeEndArray();
+            endValue();
+        }
+
+        @Override
+        public void writeEndObject() throws IOException {
+            delegate.writeEndObject();
+            endValue();
+        }
+
+        private void endValue() throws IOException {
+            if (--depth == 0) {
+                delegate.flush();
+            }
+        }
+    }
+
+    /**
+     * Passes writes through but leaves flushing to the owner of the stream.
+     */
+    private static final class FlushIgnoringOutputStream extends FilterOutputStream {
+
+        FlushIgnoringOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import org.apache.nifi.processor.exception.ProcessException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Converts LTSV content to a JSON array by splitting it into chunks that end
+ * at a line feed and converting the chunks in parallel.
+ * <p>
+ * The content is read sequentially on the calling thread. Each chunk is
+ * converted on the pool into the bytes of its comma separated records, and
+ * the results are written out in the order the chunks were read, so the
+ * output is identical to that of {@link ConvertLTSVToJSON#writeRecords}.
+ * At most two chunks per pool thread are held in memory at a time.
+ * <p>
+ * Chunks are only split after a LF, never between the CR and LF of a line
+ * break. Content without any LF is therefore converted as one chunk.
+ */
+final class ParallelLTSVConverter {
+
+    private static final byte LF = '\n';
+
+    private final JsonFactory jsonFactory;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+    private final LTSVSchema schema;
+
+    ParallelLTSVConverter(JsonFactory jsonFactory, ForkJoinPool pool, int chunkSize) {
+        this(jsonFactory, pool, chunkSize, null);
+    }
+
+    /**
+     * @param schema the fields to write and their types, or null to write every field as a string
+     */
+    ParallelLTSVConverter(JsonFactory jsonFactory, ForkJoinPool pool, int chunkSize, LTSVSchema schema) {
+        this.jsonFactory = jsonFactory;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.schema = schema;
+    }
+
+    long convert(InputStream in, OutputStream out) throws IOException {
+        return convert(in, out, null);
+    }
+
+    /**
+     * @param invalid where to put lines that are not valid LTSV, or null to fail on the first one
+     * @return the number of records written
+     */
+    long convert(InputStream in, OutputStream out, InvalidLines invalid) throws IOException {
+        final int maxInFlight = pool.getParallelism() * 2;
+        final Deque<ChunkTask> inFlight = new ArrayDeque<>(maxInFlight);
+        final Output output = new Output(out, invalid);
+        try {
+            byte[] buffer = new byte[chunkSize];
+            int length = 0;
+            boolean eof = false;
+            while (!eof) {
+                final int read = in.read(buffer, length, buffer.length - length);
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    length += read;
+                    if (length < buffer.length) {
+                        continue;
+                    }
+                }
+
+                final int end = eof ? length : lastLineFeed(buffer, length) + 1;
+                if (end == 0 && !eof) {
+                    // A single line longer than the chunk size.
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    continue;
+                }
+                if (end > 0) {
+                    if (inFlight.size() == maxInFlight) {
+                        output.append(inFlight.removeFirst().join());
+                    }
+                    final ChunkTask task = new ChunkTask(buffer, end, invalid != null);
+                    pool.execute(task);
+                    inFlight.addLast(task);
+                }
+
+                final byte[] next = new byte[Math.max(chunkSize, length - end)];
+                System.arraycopy(buffer, end, next, 0, length - end);
+                buffer = next;
+                length = length - end;
+            }
+            while (!inFlight.isEmpty()) {
+                output.append(inFlight.removeFirst().join());
+            }
+            output.finish();
+            return output.records;
+        } finally {
+            for (ChunkTask task : inFlight) {
+                task.cancel(true);
+            }
+        }
+    }
+
+    private static int lastLineFeed(byte[] buffer, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (buffer[i] == LF) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes converted chunks into one JSON array and keeps track of line
+     * numbers across chunks for invalid lines and error messages.
+     */
+    private static final class Output {
+        private final OutputStream out;
+        private final InvalidLines invalid;
+        private long lines;
+        private long records;
+        private boolean hasRecords;
+
+        Output(OutputStream out, InvalidLines invalid) throws IOException {
+            this.out = out;
+            this.invalid = invalid;
+            out.write('[');
+        }
+
+        void append(Chunk chunk) throws IOException {
+            if (chunk.invalidLine > 0) {
+                throw new ProcessException("Line " + (lines + chunk.invalidLine) + " has a field without a label separator");
+            }
+            if (chunk.invalidLength > 0) {
+                addInvalidLines(chunk.invalid, chunk.invalidLength);
+            }
+            lines += chunk.lineCount;
+            records += chunk.recordCount;
+            if (chunk.length > 0) {
+                if (hasRecords) {
+                    out.write(',');
+                }
+                out.write(chunk.json, 0, chunk.length);
+                hasRecords = true;
+            }
+        }
+
+        /**
+         * Renumbers the lines a chunk collected, which are numbered from the
+         * start of the chunk and never contain a line break.
+         */
+        private void addInvalidLines(byte[] chunkInvalid, int length) throws IOException {
+            int position = 0;
+            while (position < length) {
+                long lineNumber = 0;
+                while (chunkInvalid[position] != '\t') {
+                    lineNumber = lineNumber * 10 + (chunkInvalid[position++] - '0');
+                }
+                final int start = ++position;
+                while (chunkInvalid[position] != '\n') {
+                    position++;
+                }
+                invalid.add(lines + lineNumber, chunkInvalid, start, position - start);
+                position++;
+            }
+        }
+
+        void finish() throws IOException {
+            out.write(']');
+            out.flush();
+        }
+    }
+
+    private static final class Chunk {
+        private final byte[] json;
+        private final int length;
+        private final long lineCount;
+        private final long recordCount;
+        private final long invalidLine;
+        private final byte[] invalid;
+        private final int invalidLength;
+
+        Chunk(byte[] json, int length, long lineCount, long recordCount, long invalidLine, byte[] invalid, int invalidLength) {
+            this.json = json;
+            this.length = length;
+            this.lineCount = lineCount;
+            this.recordCount = recordCount;
+            this.invalidLine = invalidLine;
+            this.invalid = invalid;
+            this.invalidLength = invalidLength;
+        }
+    }
+
+    private final class ChunkTask extends RecursiveTask<Chunk> {
+        private final byte[] content;
+        private final int length;
+        private final boolean tolerant;
+
+        ChunkTask(byte[] content, int length, boolean tolerant) {
+            this.content = content;
+            this.length = length;
+            this.tolerant = tolerant;
+        }
+
+        @Override
+        protected Chunk compute() {
+            final ExposedByteArrayOutputStream json = new ExposedByteArrayOutputStream(length + length / 2);
+            final ExposedByteArrayOutputStream invalidBytes = new ExposedByteArrayOutputStream(0);
+            final InvalidLines invalid = new InvalidLines(invalidBytes, Long.MAX_VALUE);
+            final LTSVTokenizer tokenizer = new LTSVTokenizer(new ByteArrayInputStream(content, 0, length),
+                    Math.min(length, LTSVTokenizer.DEFAULT_BUFFER_SIZE) + 1, schema);
+            try {
+                final JsonGenerator generator = jsonFactory.createGenerator(json);
+                generator.setRootValueSeparator(new SerializedString(","));
+                long records = 0;
+                while (tokenizer.nextLine()) {
+                    if (!tokenizer.isValid()) {
+                        if (!tolerant) {
+                            return new Chunk(null, 0, 0, 0, tokenizer.getLineNumber(), null, 0);
+                        }
+                        tokenizer.addLineTo(invalid);
+                        continue;
+                    }
+                    tokenizer.writeRecord(generator);
+                    records++;
+                }
+                generator.flush();
+                return new Chunk(json.buffer(), json.size(), tokenizer.getLineNumber(), records, 0,
+                        invalidBytes.buffer(), invalidBytes.size());
+            } catch (IOException e) {
+                throw new ProcessException(e);
+            } finally {
+                tokenizer.release();
+            }
+        }
+    }
+
+    private static final class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+        ExposedByteArrayOutputStream(int size) {
+            super(size);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+/**
+ * Approximate quantiles of a stream of non-negative values in bounded
+ * memory, in the manner of DDSketch: values are counted in buckets whose
+ * bounds grow geometrically, so any quantile is returned within
+ * {@link #RELATIVE_ACCURACY} of a value of the stream's true rank.
+ * <p>
+ * The buckets are held in one array covering the range of indexes seen,
+ * which is at most {@link #MAX_BINS} long. When a stream spans more than
+ * that, about nine orders of magnitude, the lowest buckets are merged into
+ * one and only the low quantiles lose their accuracy. Values at or below
+ * zero, including negative ones, are counted as zero.
+ */
+final class QuantileSketch {
+
+    static final double RELATIVE_ACCURACY = 0.01;
+    static final int MAX_BINS = 1024;
+
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    private static final double MIN_POSITIVE = 1e-9;
+    private static final int INITIAL_BINS = 64;
+
+    private long[] bins;
+    private int offset;
+    private int minIndex;
+    private int maxIndex;
+    private long zeroCount;
+    private long count;
+
+    void add(double value) {
+        count++;
+        if (!(value > MIN_POSITIVE)) {
+            zeroCount++;
+            return;
+        }
+        int index = (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+        if (bins == null) {
+            bins = new long[INITIAL_BINS];
+            offset = index - INITIAL_BINS / 2;
+            minIndex = index;
+            maxIndex = index;
+        } else if (index < minIndex || index > maxIndex) {
+            extend(index);
+        }
+        if (index < minIndex) {
+            // Below the merged lowest bucket.
+            index = minIndex;
+        }
+        bins[index - offset]++;
+    }
+
+    private void extend(int index) {
+        final int high = Math.max(maxIndex, index);
+        final int low = Math.max(Math.min(minIndex, index), high - MAX_BINS + 1);
+        if (low < offset || high >= offset + bins.length) {
+            final int length = Math.min(MAX_BINS, Math.max(bins.length * 2, high - low + 1));
+            // Leave the spare room on the side the range grows towards.
+            final int grownOffset = index < minIndex ? high - length + 1 : low;
+            final long[] grown = new long[length];
+            for (int i = minIndex; i <= maxIndex; i++) {
+                grown[Math.max(i, low) - grownOffset] += bins[i - offset];
+            }
+            bins = grown;
+            offset = grownOffset;
+        } else {
+            for (int i = minIndex; i < low; i++) {
+                bins[low - offset] += bins[i - offset];
+                bins[i - offset] = 0;
+            }
+        }
+        minIndex = low;
+        maxIndex = high;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return the approximate value at the quantile, or NaN if nothing was added
+     */
+    double getQuantile(double quantile) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        final double rank = quantile * (count - 1);
+        long seen = zeroCount;
+        if (seen > rank) {
+            return 0;
+        }
+        for (int i = minIndex; i <= maxIndex; i++) {
+            seen += bins[i - offset];
+            if (seen > rank) {
+                return 2 * Math.pow(GAMMA, i) / (GAMMA + 1);
+            }
+        }
+        return 2 * Math.pow(GAMMA, maxIndex) / (GAMMA + 1);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import org.apache.nifi.serialization.RecordReader;
+import org.apache.nifi.serialization.SimpleRecordSchema;
+import org.apache.nifi.serialization.record.MapRecord;
+import org.apache.nifi.serialization.record.Record;
+import org.apache.nifi.serialization.record.RecordField;
+import org.apache.nifi.serialization.record.RecordFieldType;
+import org.apache.nifi.serialization.record.RecordSchema;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads the lines that match one of several {@link NamedGroupPattern}s as
+ * records of their named groups, with the same matching as
+ * {@link ConvertToJSONWithRegex}. Lines that match no pattern, or that
+ * exhaust the step budget, are skipped and counted.
+ * <p>
+ * The record schema is the union of the named groups of all patterns, as
+ * nullable strings, preceded by the pattern name field if there is one.
+ */
+final class RegexRecordReader implements RecordReader {
+
+    private final InputStream in;
+    private final LineReader lines;
+    private final MultiPatternMatcher matcher;
+    private final String patternNameField;
+    private final RecordSchema schema;
+    private long skipped;
+
+    /**
+     * @param patternNameField the name of the field holding the name of the pattern that matched, or null
+     * @param maxMatchSteps    the number of character reads allowed per line, or 0 for no limit
+     * @param schema           the result of {@link #createSchema} for the patterns
+     */
+    RegexRecordReader(InputStream in, NamedGroupPattern[] patterns, String patternNameField, long maxMatchSteps,
+                      RecordSchema schema) {
+        this.in = in;
+        this.lines = new LineReader(in);
+        this.matcher = new MultiPatternMatcher(patterns, null, maxMatchSteps);
+        this.patternNameField = patternNameField;
+        this.schema = schema;
+    }
+
+    static RecordSchema createSchema(NamedGroupPattern[] patterns, String patternNameField) {
+        final Set<String> names = new LinkedHashSet<>();
+        if (patternNameField != null) {
+            names.add(patternNameField);
+        }
+        for (NamedGroupPattern pattern : patterns) {
+            for (int i = 0; i < pattern.getGroupCount(); i++) {
+                names.add(pattern.getFieldName(i).getValue());
+            }
+        }
+        final List<RecordField> fields = new ArrayList<>(names.size());
+        for (String name : names) {
+            fields.add(new RecordField(name, RecordFieldType.STRING.getDataType(), true));
+        }
+        return new SimpleRecordSchema(fields);
+    }
+
+    @Override
+    public Record nextRecord(boolean coerceTypes, boolean dropUnknownFields) throws IOException {
+        while (lines.nextLine()) {
+            final CharBuffer line = lines.decodeLine();
+            final int index;
+            try {
+                index = matcher.find(line);
+            } catch (BudgetedCharSequence.BudgetExceededException e) {
+                skipped++;
+                continue;
+            }
+            if (index < 0) {
+                skipped++;
+                continue;
+            }
+            final NamedGroupPattern pattern = matcher.getPattern(index);
+            final GroupMatcher groups = matcher.getMatcher(index);
+            final Map<String, Object> values = new HashMap<>();
+            if (patternNameField != null) {
+                values.put(patternNameField, pattern.getName());
+            }
+            for (int i = 0; i < pattern.getGroupCount(); i++) {
+                final int group = pattern.getGroup(i);
+                final int start = groups.start(group);
+                values.put(pattern.getFieldName(i).getValue(),
+                        start < 0 ? null : new String(line.array(), start, groups.end(group) - start));
+            }
+            return new MapRecord(schema, values);
+        }
+        return null;
+    }
+
+    @Override
+    public RecordSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * @return the number of lines read so far that matched no pattern or exhausted the step budget
+     */
+    long getSkippedCount() {
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lines.release();
+        in.close();
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers recently verified (IMSI, timestamp, signature) triples so that
+ * a retransmitted request is recognized without hashing it again.
+ * <p>
+ * The cache is split into segments, each an insertion-ordered map guarded
+ * by its own lock. A segment drops its oldest entries once it is full, and
+ * drops entries whose timestamp has left the skew window as it goes. Only
+ * the first 128 bits of the signature are kept, which is plenty to tell
+ * SHA-256 signatures apart, so an entry costs well under 200 bytes and the
+ * total is bounded by the maximum size however many devices are sending.
+ */
+final class ReplayCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long windowMillis;
+
+    /**
+     * @param maxSize      the maximum number of entries across all segments
+     * @param windowMillis how far from now a timestamp may be before its entry expires
+     */
+    ReplayCache(int maxSize, long windowMillis) {
+        this.windowMillis = windowMillis;
+        final int segmentSize = Math.max(1, (maxSize + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    /**
+     * @return whether the triple was added before and has not been evicted since
+     */
+    boolean contains(String imsi, long timestamp, String signature) {
+        final Key key = Key.of(imsi, timestamp, signature);
+        if (key == null) {
+            return false;
+        }
+        final Segment segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.containsKey(key);
+        }
+    }
+
+    /**
+     * Adds a triple whose signature has been verified.
+     *
+     * @return false if the triple was already present, so that two threads
+     *         verifying the same replay concurrently cannot both accept it
+     */
+    boolean add(String imsi, long timestamp, String signature, long now) {
+        final Key key = Key.of(imsi, timestamp, signature);
+        if (key == null) {
+            return true;
+        }
+        final Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.expire(now - windowMillis);
+            return segment.put(key, Boolean.TRUE) == null;
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentFor(Key key) {
+        final int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private static final class Segment extends LinkedHashMap<Key, Boolean> {
+        private final int maxSize;
+
+        Segment(int maxSize) {
+            super(16, 0.75f, false);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Boolean> eldest) {
+            return size() > maxSize;
+        }
+
+        /**
+         * Removes entries from the oldest end while their timestamp is before
+         * {@code oldest}. Requests mostly arrive in timestamp order, so this
+         * stops at the first entry that is still current.
+         */
+        void expire(long oldest) {
+            final Iterator<Key> keys = keySet().iterator();
+            while (keys.hasNext() && keys.next().timestamp < oldest) {
+                keys.remove();
+            }
+        }
+    }
+
+    private static final class Key {
+        private final String imsi;
+        private final long timestamp;
+        private final long signatureHigh;
+        private final long signatureLow;
+
+        private Key(String imsi, long timestamp, long signatureHigh, long signatureLow) {
+            this.imsi = imsi;
+            this.timestamp = timestamp;
+            this.signatureHigh = signatureHigh;
+            this.signatureLow = signatureLow;
+        }
+
+        /**
+         * @return the key, or null if the signature is not a hex encoded SHA-256
+         */
+        static Key of(String imsi, long timestamp, String signature) {
+            if (signature.length() != SoracomSignatureVerifier.SIGNATURE_LENGTH * 2) {
+                return null;
+            }
+            long high = 0;
+            long low = 0;
+            for (int i = 0; i < 32; i++) {
+                final int digit = Character.digit(signature.charAt(i), 16);
+                if (digit < 0) {
+                    return null;
+                }
+                if (i < 16) {
+                    high = high << 4 | digit;
+                } else {
+                    low = low << 4 | digit;
+                }
+            }
+            return new Key(imsi, timestamp, high, low);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return timestamp == other.timestamp && signatureHigh == other.signatureHigh
+                    && signatureLow == other.signatureLow && imsi.equals(other.imsi);
+        }
+
+        @Override
+        public int hashCode() {
+            // The signature bits are already uniformly distributed.
+            return (int) (signatureHigh ^ (signatureHigh >>> 32));
+        }
+    }
+}
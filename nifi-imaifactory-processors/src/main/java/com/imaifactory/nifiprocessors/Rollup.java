@@ -0,0 +1,451 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Aggregates LTSV lines into one record per group and time bucket while
+ * they are read, so that only the rollup is held in memory and written.
+ * <p>
+ * A group is keyed by the bucket and the raw bytes of its group fields,
+ * looked up in an open addressing table without decoding them. Each group
+ * keeps a count, the sum, minimum and maximum of each measure field, a
+ * {@link QuantileSketch} per measure when percentiles are asked for, and a
+ * {@link DistinctCountSketch} per distinct count field, so a group never
+ * takes more than a few kilobytes per field. Once there are
+ * {@code maxGroups} groups, lines that would start another one are counted
+ * as overflow and not aggregated.
+ * <p>
+ * A record holds the bucket start in milliseconds under the name of the
+ * time field, the group fields as strings, {@value #COUNT_FIELD}, and for
+ * each measure {@code <field>_sum}, {@code _min}, {@code _max} and
+ * {@code _p<percentile>}, and for each distinct count field
+ * {@code <field>_distinct}. Measure values that are not numbers are left
+ * out of that measure.
+ */
+final class Rollup {
+
+    static final String COUNT_FIELD = "count";
+
+    private final int[] groupFields;
+    private final SerializableString[] groupNames;
+    private final int timeField;
+    private final SerializableString timeName;
+    private final long bucketMillis;
+    private final int[] measureFields;
+    private final SerializableString[][] measureNames;
+    private final double[] percentiles;
+    private final int[] distinctFields;
+    private final SerializableString[] distinctNames;
+    private final int maxGroups;
+
+    private final int[] starts;
+    private final int[] lengths;
+    private final TimestampParser timestamps = new TimestampParser();
+    private byte[] key = new byte[256];
+    private int[] slots = new int[64];
+    private final List<Group> groups = new ArrayList<>();
+
+    private long lines;
+    private long skipped;
+    private long overflow;
+
+    /**
+     * @param schema      the result of {@link #createSchema} for the fields
+     * @param timeField   the field holding seconds since the epoch or a timestamp that {@link TimestampParser}
+     *                    reads, or null to put every line in one bucket
+     * @param percentiles the percentiles of each measure to write, between 0 and 100
+     */
+    Rollup(LTSVSchema schema, List<String> groupFields, String timeField, long bucketMillis, List<String> measureFields,
+           double[] percentiles, List<String> distinctFields, int maxGroups) {
+        this.groupFields = indexes(schema, groupFields);
+        this.groupNames = names(groupFields, "");
+        this.timeField = timeField == null ? -1 : indexes(schema, Collections.singletonList(timeField))[0];
+        this.timeName = timeField == null ? null : new SerializedString(timeField);
+        this.bucketMillis = bucketMillis;
+        this.measureFields = indexes(schema, measureFields);
+        this.percentiles = percentiles;
+        this.measureNames = new SerializableString[measureFields.size()][];
+        for (int i = 0; i < measureNames.length; i++) {
+            final String field = measureFields.get(i);
+            final SerializableString[] names = new SerializableString[3 + percentiles.length];
+            names[0] = new SerializedString(field + "_sum");
+            names[1] = new SerializedString(field + "_min");
+            names[2] = new SerializedString(field + "_max");
+            for (int p = 0; p < percentiles.length; p++) {
+                names[3 + p] = new SerializedString(field + "_p" + formatPercentile(percentiles[p]));
+            }
+            measureNames[i] = names;
+        }
+        this.distinctFields = indexes(schema, distinctFields);
+        this.distinctNames = names(distinctFields, "_distinct");
+        this.maxGroups = maxGroups;
+        this.starts = new int[schema.size()];
+        this.lengths = new int[schema.size()];
+    }
+
+    /**
+     * @return a schema that selects only the fields the rollup reads
+     */
+    static LTSVSchema createSchema(List<String> groupFields, String timeField, List<String> measureFields,
+                                   List<String> distinctFields) {
+        final Set<String> fields = new LinkedHashSet<>(groupFields);
+        if (timeField != null) {
+            fields.add(timeField);
+        }
+        fields.addAll(measureFields);
+        fields.addAll(distinctFields);
+        final StringBuilder include = new StringBuilder();
+        for (String field : fields) {
+            if (include.length() > 0) {
+                include.append(',');
+            }
+            include.append(field);
+        }
+        return LTSVSchema.parse(include.toString(), null, null);
+    }
+
+    private static int[] indexes(LTSVSchema schema, List<String> fields) {
+        final int[] indexes = new int[fields.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            final byte[] label = fields.get(i).getBytes(StandardCharsets.UTF_8);
+            indexes[i] = schema.lookup(label, 0, label.length);
+        }
+        return indexes;
+    }
+
+    private static SerializableString[] names(List<String> fields, String suffix) {
+        final SerializableString[] names = new SerializableString[fields.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = new SerializedString(fields.get(i) + suffix);
+        }
+        return names;
+    }
+
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+
+    /**
+     * Aggregates the current line of the tokenizer, unless its time field is
+     * missing or not a time or it would start a group beyond the limit.
+     */
+    void add(LTSVTokenizer tokenizer) {
+        tokenizer.locateValues(starts, lengths);
+        final byte[] buffer = tokenizer.getBuffer();
+        long bucket = 0;
+        if (timeField >= 0) {
+            final long millis = starts[timeField] < 0 ? TimestampParser.INVALID
+                    : parseTime(buffer, starts[timeField], lengths[timeField]);
+            if (millis == TimestampParser.INVALID) {
+                skipped++;
+                return;
+            }
+            bucket = millis - Math.floorMod(millis, bucketMillis);
+        }
+        final Group group = findOrAdd(bucket, buffer);
+        if (group == null) {
+            overflow++;
+            return;
+        }
+        group.add(buffer);
+        lines++;
+    }
+
+    private long parseTime(byte[] buffer, int offset, int length) {
+        final long millis = LTSVSchema.parseEpochMillis(buffer, offset, length);
+        return millis >= 0 ? millis : timestamps.parse(buffer, offset, length);
+    }
+
+    /**
+     * Counts a line that is not aggregated because it is not valid LTSV.
+     */
+    void skip() {
+        skipped++;
+    }
+
+    private Group findOrAdd(long bucket, byte[] buffer) {
+        final int keyLength = buildKey(bucket, buffer);
+        final int hash = (int) DistinctCountSketch.hash(key, 0, keyLength);
+        int slot = hash & (slots.length - 1);
+        while (slots[slot] != 0) {
+            final Group group = groups.get(slots[slot] - 1);
+            if (group.hash == hash && group.matches(key, keyLength)) {
+                return group;
+            }
+            slot = (slot + 1) & (slots.length - 1);
+        }
+        if (groups.size() == maxGroups) {
+            return null;
+        }
+        final Group group = new Group(Arrays.copyOf(key, keyLength), hash, bucket);
+        groups.add(group);
+        slots[slot] = groups.size();
+        if (groups.size() * 2 > slots.length) {
+            rehash();
+        }
+        return group;
+    }
+
+    /**
+     * Writes the bucket and, for each group field, its length or -1 when it
+     * is absent followed by its bytes.
+     */
+    private int buildKey(long bucket, byte[] buffer) {
+        int length = 8;
+        for (int field : groupFields) {
+            length += 4 + (starts[field] < 0 ? 0 : lengths[field]);
+        }
+        if (key.length < length) {
+            key = new byte[Math.max(length, key.length * 2)];
+        }
+        int position = putLong(key, 0, bucket);
+        for (int field : groupFields) {
+            if (starts[field] < 0) {
+                position = putInt(key, position, -1);
+            } else {
+                position = putInt(key, position, lengths[field]);
+                System.arraycopy(buffer, starts[field], key, position, lengths[field]);
+                position += lengths[field];
+            }
+        }
+        return position;
+    }
+
+    private static int putLong(byte[] bytes, int position, long value) {
+        putInt(bytes, position, (int) (value >>> 32));
+        return putInt(bytes, position + 4, (int) value);
+    }
+
+    private static int putInt(byte[] bytes, int position, int value) {
+        bytes[position] = (byte) (value >>> 24);
+        bytes[position + 1] = (byte) (value >>> 16);
+        bytes[position + 2] = (byte) (value >>> 8);
+        bytes[position + 3] = (byte) value;
+        return position + 4;
+    }
+
+    private static int getInt(byte[] bytes, int position) {
+        return bytes[position] << 24 | (bytes[position + 1] & 0xff) << 16
+                | (bytes[position + 2] & 0xff) << 8 | bytes[position + 3] & 0xff;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        for (int i = 0; i < groups.size(); i++) {
+            int slot = groups.get(i).hash & (slots.length - 1);
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & (slots.length - 1);
+            }
+            slots[slot] = i + 1;
+        }
+    }
+
+    /**
+     * Writes one record per group, ordered by bucket and then by first appearance.
+     *
+     * @param rootArray whether to write the records as one array rather than as a sequence of root values
+     */
+    void write(JsonGenerator generator, boolean rootArray) throws IOException {
+        final List<Group> sorted = new ArrayList<>(groups);
+        Collections.sort(sorted, new Comparator<Group>() {
+            @Override
+            public int compare(Group a, Group b) {
+                return Long.compare(a.bucket, b.bucket);
+            }
+        });
+        if (rootArray) {
+            generator.writeStartArray();
+        }
+        for (Group group : sorted) {
+            group.write(generator);
+        }
+        if (rootArray) {
+            generator.writeEndArray();
+        }
+        generator.flush();
+    }
+
+    /**
+     * @return the number of lines aggregated
+     */
+    long getLineCount() {
+        return lines;
+    }
+
+    /**
+     * @return the number of lines without a valid time field or that are not valid LTSV
+     */
+    long getSkippedCount() {
+        return skipped;
+    }
+
+    /**
+     * @return the number of lines not aggregated because there were already {@code maxGroups} groups
+     */
+    long getOverflowCount() {
+        return overflow;
+    }
+
+    int getGroupCount() {
+        return groups.size();
+    }
+
+    private final class Group {
+        private final byte[] key;
+        private final int hash;
+        private final long bucket;
+        private long count;
+        private final long[] measured = new long[measureFields.length];
+        private final double[] sums = new double[measureFields.length];
+        private final double[] mins = new double[measureFields.length];
+        private final double[] maxs = new double[measureFields.length];
+        private final QuantileSketch[] sketches = new QuantileSketch[measureFields.length];
+        private final DistinctCountSketch[] distincts = new DistinctCountSketch[distinctFields.length];
+
+        Group(byte[] key, int hash, long bucket) {
+            this.key = key;
+            this.hash = hash;
+            this.bucket = bucket;
+        }
+
+        boolean matches(byte[] other, int length) {
+            if (key.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (key[i] != other[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void add(byte[] buffer) {
+            count++;
+            for (int i = 0; i < measureFields.length; i++) {
+                final int field = measureFields[i];
+                if (starts[field] < 0) {
+                    continue;
+                }
+                final double value = LTSVSchema.parseDouble(buffer, starts[field], lengths[field]);
+                if (Double.isNaN(value)) {
+                    continue;
+                }
+                if (measured[i]++ == 0) {
+                    mins[i] = value;
+                    maxs[i] = value;
+                } else {
+                    mins[i] = Math.min(mins[i], value);
+                    maxs[i] = Math.max(maxs[i], value);
+                }
+                sums[i] += value;
+                if (percentiles.length > 0) {
+                    if (sketches[i] == null) {
+                        sketches[i] = new QuantileSketch();
+                    }
+                    sketches[i].add(value);
+                }
+            }
+            for (int i = 0; i < distinctFields.length; i++) {
+                final int field = distinctFields[i];
+                if (starts[field] < 0) {
+                    continue;
+                }
+                if (distincts[i] == null) {
+                    distincts[i] = new DistinctCountSketch();
+                }
+                distincts[i].add(buffer, starts[field], lengths[field]);
+            }
+        }
+
+        void write(JsonGenerator generator) throws IOException {
+            generator.writeStartObject();
+            if (timeName != null) {
+                generator.writeFieldName(timeName);
+                generator.writeNumber(bucket);
+            }
+            int position = 8;
+            for (SerializableString name : groupNames) {
+                final int length = getInt(key, position);
+                position += 4;
+                generator.writeFieldName(name);
+                if (length < 0) {
+                    generator.writeNull();
+                } else {
+                    generator.writeUTF8String(key, position, length);
+                    position += length;
+                }
+            }
+            generator.writeFieldName(COUNT_FIELD);
+            generator.writeNumber(count);
+            for (int i = 0; i < measureFields.length; i++) {
+                final SerializableString[] names = measureNames[i];
+                generator.writeFieldName(names[0]);
+                generator.writeNumber(sums[i]);
+                writeMeasure(generator, names[1], mins[i], i);
+                writeMeasure(generator, names[2], maxs[i], i);
+                for (int p = 0; p < percentiles.length; p++) {
+                    writeMeasure(generator, names[3 + p], percentile(i, percentiles[p]), i);
+                }
+            }
+            for (int i = 0; i < distinctFields.length; i++) {
+                generator.writeFieldName(distinctNames[i]);
+                generator.writeNumber(distincts[i] == null ? 0 : distincts[i].getEstimate());
+            }
+            generator.writeEndObject();
+        }
+
+        /**
+         * @return the percentile from the sketch, within the exact minimum and maximum, which are exact for 0 and 100
+         */
+        private double percentile(int measure, double percentile) {
+            if (measured[measure] == 0) {
+                return Double.NaN;
+            }
+            if (percentile <= 0) {
+                return mins[measure];
+            }
+            if (percentile >= 100) {
+                return maxs[measure];
+            }
+            return Math.max(mins[measure], Math.min(maxs[measure], sketches[measure].getQuantile(percentile / 100)));
+        }
+
+        private void writeMeasure(JsonGenerator generator, SerializableString name, double value, int measure) throws IOException {
+            generator.writeFieldName(name);
+            if (measured[measure] == 0) {
+                generator.writeNull();
+            } else {
+                generator.writeNumber(value);
+            }
+        }
+    }
+}
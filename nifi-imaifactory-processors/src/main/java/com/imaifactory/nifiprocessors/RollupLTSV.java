@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import org.apache.nifi.annotation.behavior.WritesAttribute;
+import org.apache.nifi.annotation.behavior.WritesAttributes;
+import org.apache.nifi.annotation.documentation.CapabilityDescription;
+import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.annotation.lifecycle.OnScheduled;
+import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.components.ValidationContext;
+import org.apache.nifi.components.ValidationResult;
+import org.apache.nifi.components.Validator;
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+import org.apache.nifi.processor.*;
+import org.apache.nifi.processor.exception.ProcessException;
+import org.apache.nifi.processor.io.StreamCallback;
+import org.apache.nifi.processor.util.StandardValidators;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+
+@Tags({"ltsv", "rollup", "aggregate", "json"})
+@WritesAttributes({
+        @WritesAttribute(attribute = "rollup.group.count", description = "Number of rollup records written"),
+        @WritesAttribute(attribute = "rollup.line.count", description = "Number of lines aggregated"),
+        @WritesAttribute(attribute = "rollup.skipped.count", description = "Number of lines that are not valid LTSV or have no valid time"),
+        @WritesAttribute(attribute = "rollup.overflow.count", description = "Number of lines not aggregated because Max Groups was reached"),
+        @WritesAttribute(attribute = "rollup.bytes.in", description = "Size of the LTSV content"),
+        @WritesAttribute(attribute = "rollup.convert.millis", description = "Time taken to aggregate the content")
+})
+@CapabilityDescription("Aggregates LTSV lines by group fields and time bucket while they are read, and replaces the "
+        + "content with one record per group: a count, the sum, minimum, maximum and approximate percentiles of each "
+        + "measure field, and an approximate count of the distinct values of each distinct count field. "
+        + "Memory is bounded by Max Groups, whatever the size of the content")
+public class RollupLTSV extends AbstractBatchingProcessor {
+
+    static final String GROUP_COUNT_ATTRIBUTE = "rollup.group.count";
+    static final String LINE_COUNT_ATTRIBUTE = "rollup.line.count";
+    static final String SKIPPED_COUNT_ATTRIBUTE = "rollup.skipped.count";
+    static final String OVERFLOW_COUNT_ATTRIBUTE = "rollup.overflow.count";
+    static final String BYTES_IN_ATTRIBUTE = "rollup.bytes.in";
+    static final String CONVERT_MILLIS_ATTRIBUTE = "rollup.convert.millis";
+
+    static final String LINES_AGGREGATED_COUNTER = "Lines aggregated";
+    static final String LINES_SKIPPED_COUNTER = "Lines skipped";
+    static final String LINES_OVERFLOWED_COUNTER = "Lines overflowed";
+    static final String GROUPS_COUNTER = "Groups written";
+    static final String BYTES_IN_COUNTER = "Bytes in";
+    static final String BYTES_OUT_COUNTER = "Bytes out";
+
+    private static final LatencyCounters rollupLatency = new LatencyCounters("Rollup");
+
+    public static final Relationship REL_SUCCESS = new Relationship.Builder().name("success")
+            .description("The rollup of the LTSV content").build();
+    public static final Relationship REL_FAILURE = new Relationship.Builder().name("failure")
+            .description("FlowFiles whose content could not be read").build();
+
+    public static final PropertyDescriptor GROUP_BY_FIELDS = new PropertyDescriptor.Builder()
+            .name("Group By Fields")
+            .required(false)
+            .description("Comma separated labels of the fields whose values identify a group, e.g. status,host,path. "
+                    + "A missing field is a group value of its own, written as null")
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor TIME_FIELD = new PropertyDescriptor.Builder()
+            .name("Time Field")
+            .required(false)
+            .description("The label of the field holding the time of a line, as seconds since the epoch with an optional "
+                    + "fraction such as nginx's $msec, or as a timestamp such as $time_local or $time_iso8601. Lines are grouped by Time Bucket of it, and the start of the bucket "
+                    + "is written under this name in milliseconds. Lines without a valid time are skipped. "
+                    + "When unset, all lines fall in one bucket")
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor TIME_BUCKET = new PropertyDescriptor.Builder()
+            .name("Time Bucket")
+            .required(true)
+            .defaultValue("1 min")
+            .description("The length of the time buckets, aligned to the epoch")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor MEASURE_FIELDS = new PropertyDescriptor.Builder()
+            .name("Measure Fields")
+            .required(false)
+            .description("Comma separated labels of numeric fields, e.g. reqtime,size, for which <field>_sum, <field>_min, "
+                    + "<field>_max and the Percentiles are written. Values that are not numbers are left out")
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .build();
+
+    static final Validator PERCENTILES_VALIDATOR = new Validator() {
+        @Override
+        public ValidationResult validate(final String subject, final String input, final ValidationContext context) {
+            String explanation = null;
+            try {
+                parsePercentiles(input);
+            } catch (IllegalArgumentException e) {
+                explanation = e.getMessage();
+            }
+            return new ValidationResult.Builder().subject(subject).input(input)
+                    .valid(explanation == null).explanation(explanation).build();
+        }
+    };
+
+    public static final PropertyDescriptor PERCENTILES = new PropertyDescriptor.Builder()
+            .name("Percentiles")
+            .required(false)
+            .description("Comma separated percentiles of each measure field to write as <field>_p<percentile>, e.g. 50,90,99. "
+                    + "They are approximated to within 1% of the value")
+            .addValidator(PERCENTILES_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor DISTINCT_FIELDS = new PropertyDescriptor.Builder()
+            .name("Distinct Count Fields")
+            .required(false)
+            .description("Comma separated labels of fields, e.g. user,ip, whose number of distinct values is written as "
+                    + "<field>_distinct. The count is approximate, with a standard error of about 2%, and takes 2 KB per "
+                    + "field and group")
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor MAX_GROUPS = new PropertyDescriptor.Builder()
+            .name("Max Groups")
+            .required(true)
+            .defaultValue("10000")
+            .description("The number of groups held for one FlowFile. Lines that would start a further group are not "
+                    + "aggregated, and are counted in " + OVERFLOW_COUNT_ATTRIBUTE)
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor OUTPUT_FORMAT = OutputFormat.PROPERTY;
+
+    public static final PropertyDescriptor INPUT_COMPRESSION = Compression.INPUT_PROPERTY;
+
+    private List<PropertyDescriptor> descriptors;
+
+    private Set<Relationship> relationships;
+
+    private volatile List<String> groupFields;
+    private volatile String timeField;
+    private volatile long bucketMillis;
+    private volatile List<String> measureFields;
+    private volatile double[] percentiles;
+    private volatile List<String> distinctFields;
+    private volatile int maxGroups;
+    private volatile LTSVSchema schema;
+    private volatile OutputFormat format;
+    private volatile boolean decompress;
+
+    @Override
+    protected void init(final ProcessorInitializationContext context) {
+        final List<PropertyDescriptor> descriptors = new ArrayList<PropertyDescriptor>();
+        descriptors.add(GROUP_BY_FIELDS);
+        descriptors.add(TIME_FIELD);
+        descriptors.add(TIME_BUCKET);
+        descriptors.add(MEASURE_FIELDS);
+        descriptors.add(PERCENTILES);
+        descriptors.add(DISTINCT_FIELDS);
+        descriptors.add(MAX_GROUPS);
+        descriptors.add(OUTPUT_FORMAT);
+        descriptors.add(INPUT_COMPRESSION);
+        descriptors.add(BATCH_SIZE);
+        descriptors.add(BATCH_DURATION);
+        this.descriptors = Collections.unmodifiableList(descriptors);
+        final Set<Relationship> relationships = new HashSet<Relationship>();
+        relationships.add(REL_SUCCESS);
+        relationships.add(REL_FAILURE);
+        this.relationships = Collections.unmodifiableSet(relationships);
+    }
+
+    @Override
+    public Set<Relationship> getRelationships() {
+        return this.relationships;
+    }
+
+    @Override
+    public final List<PropertyDescriptor> getSupportedPropertyDescriptors() {
+        return descriptors;
+    }
+
+    @OnScheduled
+    public void onScheduled(final ProcessContext context) {
+        this.groupFields = splitList(context.getProperty(GROUP_BY_FIELDS).getValue());
+        this.timeField = context.getProperty(TIME_FIELD).isSet() ? context.getProperty(TIME_FIELD).getValue().trim() : null;
+        this.bucketMillis = Math.max(1, context.getProperty(TIME_BUCKET).asTimePeriod(TimeUnit.MILLISECONDS));
+        this.measureFields = splitList(context.getProperty(MEASURE_FIELDS).getValue());
+        this.percentiles = parsePercentiles(context.getProperty(PERCENTILES).getValue());
+        this.distinctFields = splitList(context.getProperty(DISTINCT_FIELDS).getValue());
+        this.maxGroups = context.getProperty(MAX_GROUPS).asInteger();
+        this.schema = Rollup.createSchema(groupFields, timeField, measureFields, distinctFields);
+        this.format = OutputFormat.forValue(context.getProperty(OUTPUT_FORMAT).getValue());
+        this.decompress = Compression.AUTO_DETECT.getValue().equals(context.getProperty(INPUT_COMPRESSION).getValue());
+    }
+
+    static List<String> splitList(String list) {
+        final List<String> items = new ArrayList<>();
+        if (list != null) {
+            for (String item : list.split(",")) {
+                if (!item.trim().isEmpty()) {
+                    items.add(item.trim());
+                }
+            }
+        }
+        return items;
+    }
+
+    /**
+     * @throws IllegalArgumentException if an item is not a number from 0 to 100
+     */
+    static double[] parsePercentiles(String list) {
+        final List<String> items = splitList(list);
+        final double[] percentiles = new double[items.size()];
+        for (int i = 0; i < percentiles.length; i++) {
+            try {
+                percentiles[i] = Double.parseDouble(items.get(i));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("'" + items.get(i) + "' is not a number");
+            }
+            if (!(percentiles[i] >= 0 && percentiles[i] <= 100)) {
+                throw new IllegalArgumentException("'" + items.get(i) + "' is not between 0 and 100");
+            }
+        }
+        return percentiles;
+    }
+
+    @Override
+    protected void onTrigger(final ProcessContext context, final ProcessSession session, final FlowFile original) throws ProcessException {
+        final OutputFormat format = this.format;
+        final boolean decompress = this.decompress;
+        final LTSVSchema schema = this.schema;
+        final Rollup rollup = new Rollup(schema, groupFields, timeField, bucketMillis, measureFields, percentiles,
+                distinctFields, maxGroups);
+        final long bytesIn = original.getSize();
+        final long start = System.nanoTime();
+
+        try {
+            FlowFile result = session.write(original, new StreamCallback() {
+                @Override
+                public void process(final InputStream rawIn, OutputStream out) throws IOException {
+                    try (final InputStream in = decompress ? Compression.decompress(rawIn) : rawIn) {
+                        final LTSVTokenizer tokenizer = new LTSVTokenizer(in, LTSVTokenizer.DEFAULT_BUFFER_SIZE, schema);
+                        try {
+                            aggregate(tokenizer, rollup);
+                        } finally {
+                            tokenizer.release();
+                        }
+                    }
+                    try (final OutputStream outputStream = BufferPool.newOutputStream(out)) {
+                        rollup.write(format.createGenerator(outputStream), format.isRootArray());
+                    }
+                }
+            });
+            final long nanos = System.nanoTime() - start;
+            rollupLatency.record(session, nanos);
+            session.adjustCounter(LINES_AGGREGATED_COUNTER, rollup.getLineCount(), false);
+            session.adjustCounter(LINES_SKIPPED_COUNTER, rollup.getSkippedCount(), false);
+            session.adjustCounter(LINES_OVERFLOWED_COUNTER, rollup.getOverflowCount(), false);
+            session.adjustCounter(GROUPS_COUNTER, rollup.getGroupCount(), false);
+            session.adjustCounter(BYTES_IN_COUNTER, bytesIn, false);
+            session.adjustCounter(BYTES_OUT_COUNTER, result.getSize(), false);
+
+            final Map<String, String> attributes = new HashMap<>();
+            attributes.put(CoreAttributes.MIME_TYPE.key(), format.getMimeType());
+            attributes.put(GROUP_COUNT_ATTRIBUTE, String.valueOf(rollup.getGroupCount()));
+            attributes.put(LINE_COUNT_ATTRIBUTE, String.valueOf(rollup.getLineCount()));
+            attributes.put(SKIPPED_COUNT_ATTRIBUTE, String.valueOf(rollup.getSkippedCount()));
+            attributes.put(OVERFLOW_COUNT_ATTRIBUTE, String.valueOf(rollup.getOverflowCount()));
+            attributes.put(BYTES_IN_ATTRIBUTE, String.valueOf(bytesIn));
+            attributes.put(CONVERT_MILLIS_ATTRIBUTE, String.valueOf(nanos / 1000000));
+            result = session.putAllAttributes(result, attributes);
+            session.transfer(result, REL_SUCCESS);
+        } catch (Exception e) {
+            getLogger().error(e.getMessage());
+            session.transfer(original, REL_FAILURE);
+        }
+    }
+
+    /**
+     * Adds every line of the tokenizer to the rollup. Lines that are not valid LTSV are skipped, and empty
+     * lines are ignored.
+     */
+    static void aggregate(LTSVTokenizer tokenizer, Rollup rollup) throws IOException {
+        while (tokenizer.nextLine()) {
+            if (!tokenizer.isValid()) {
+                rollup.skip();
+            } else if (!tokenizer.isEmpty()) {
+                rollup.add(tokenizer);
+            }
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Maps IMSIs to the verifier for their SORACOM Beam secret.
+ * <p>
+ * Each line of a secrets file maps an IMSI, an IMSI prefix or an inclusive
+ * range of IMSIs to a secret, separated by the first {@code =}:
+ * <pre>
+ * # comment
+ * 440103114938318 = secret for one device
+ * 44010 = secret for every IMSI starting with 44010
+ * 440100000000000-440100000009999 = secret for a range
+ * </pre>
+ * Ranges may nest, in which case the narrowest one wins, but must not
+ * partially overlap. At load time they are flattened into disjoint
+ * intervals of 15-digit IMSIs held in parallel primitive arrays, so a lookup
+ * is a digit parse and a binary search with no allocation.
+ */
+final class SoracomSecrets {
+
+    static final int IMSI_LENGTH = 15;
+
+    private final long[] starts;
+    private final long[] ends;
+    private final SoracomSignatureVerifier[] verifiers;
+
+    private SoracomSecrets(long[] starts, long[] ends, SoracomSignatureVerifier[] verifiers) {
+        this.starts = starts;
+        this.ends = ends;
+        this.verifiers = verifiers;
+    }
+
+    /**
+     * @return the verifier for the IMSI, or null if the IMSI is not 15 digits
+     *         or not covered by any line
+     */
+    SoracomSignatureVerifier lookup(String imsi) {
+        final long value = parseImsi(imsi);
+        if (value < 0) {
+            return null;
+        }
+        int low = 0;
+        int high = starts.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (starts[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high >= 0 && value <= ends[high] ? verifiers[high] : null;
+    }
+
+    int size() {
+        return starts.length;
+    }
+
+    static long parseImsi(String imsi) {
+        if (imsi.length() != IMSI_LENGTH) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < IMSI_LENGTH; i++) {
+            final char c = imsi.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    static SoracomSecrets load(Reader reader) throws IOException {
+        final List<Range> ranges = new ArrayList<>();
+        final BufferedReader lines = new BufferedReader(reader);
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            final String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            final int separator = trimmed.indexOf('=');
+            if (separator < 0) {
+                throw new IOException("Line " + lineNumber + " has no '=' between IMSIs and secret");
+            }
+            final String imsis = trimmed.substring(0, separator).trim();
+            final String secret = trimmed.substring(separator + 1).trim();
+            if (secret.isEmpty()) {
+                throw new IOException("Line " + lineNumber + " has an empty secret");
+            }
+            ranges.add(parseRange(imsis, secret, lineNumber));
+        }
+        return flatten(ranges);
+    }
+
+    private static Range parseRange(String imsis, String secret, int lineNumber) throws IOException {
+        final int dash = imsis.indexOf('-');
+        final long start;
+        final long end;
+        if (dash >= 0) {
+            start = parseImsi(imsis.substring(0, dash).trim());
+            end = parseImsi(imsis.substring(dash + 1).trim());
+            if (start < 0 || end < 0 || end < start) {
+                throw new IOException("Line " + lineNumber + " is not a range of two " + IMSI_LENGTH + "-digit IMSIs");
+            }
+        } else {
+            if (imsis.isEmpty() || imsis.length() > IMSI_LENGTH || !isDigits(imsis)) {
+                throw new IOException("Line " + lineNumber + " is not an IMSI or an IMSI prefix");
+            }
+            final StringBuilder padded = new StringBuilder(imsis);
+            while (padded.length() < IMSI_LENGTH) {
+                padded.append('0');
+            }
+            start = parseImsi(padded.toString());
+            long width = 1;
+            for (int i = imsis.length(); i < IMSI_LENGTH; i++) {
+                width *= 10;
+            }
+            end = start + width - 1;
+        }
+        return new Range(start, end, secret, lineNumber);
+    }
+
+    private static boolean isDigits(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) < '0' || s.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static SoracomSecrets flatten(List<Range> ranges) throws IOException {
+        // Enclosing ranges sort before the ranges they contain.
+        Collections.sort(ranges, new Comparator<Range>() {
+            @Override
+            public int compare(Range a, Range b) {
+                if (a.start != b.start) {
+                    return a.start < b.start ? -1 : 1;
+                }
+                return a.end == b.end ? 0 : a.end > b.end ? -1 : 1;
+            }
+        });
+
+        final Intervals intervals = new Intervals(ranges.size() * 2 + 1);
+        final Deque<Range> open = new ArrayDeque<>();
+        long cursor = 0;
+        for (Range range : ranges) {
+            while (!open.isEmpty() && open.peek().end < range.start) {
+                final Range closed = open.pop();
+                cursor = intervals.add(cursor, closed.end, closed);
+            }
+            if (!open.isEmpty()) {
+                final Range enclosing = open.peek();
+                if (range.end > enclosing.end || (range.start == enclosing.start && range.end == enclosing.end)) {
+                    throw new IOException("Line " + range.lineNumber + " overlaps line " + enclosing.lineNumber);
+                }
+                cursor = intervals.add(cursor, range.start - 1, enclosing);
+            }
+            cursor = range.start;
+            open.push(range);
+        }
+        while (!open.isEmpty()) {
+            final Range closed = open.pop();
+            cursor = intervals.add(cursor, closed.end, closed);
+        }
+        return intervals.toSecrets();
+    }
+
+    private static final class Range {
+        private final long start;
+        private final long end;
+        private final String secret;
+        private final int lineNumber;
+        private SoracomSignatureVerifier verifier;
+
+        Range(long start, long end, String secret, int lineNumber) {
+            this.start = start;
+            this.end = end;
+            this.secret = secret;
+            this.lineNumber = lineNumber;
+        }
+
+        SoracomSignatureVerifier verifier() {
+            if (verifier == null) {
+                verifier = new SoracomSignatureVerifier(secret);
+            }
+            return verifier;
+        }
+    }
+
+    private static final class Intervals {
+        private final long[] starts;
+        private final long[] ends;
+        private final SoracomSignatureVerifier[] verifiers;
+        private int size;
+
+        Intervals(int capacity) {
+            starts = new long[capacity];
+            ends = new long[capacity];
+            verifiers = new SoracomSignatureVerifier[capacity];
+        }
+
+        /**
+         * Adds {@code [start, end]} unless it is empty.
+         *
+         * @return the position after the interval
+         */
+        long add(long start, long end, Range range) {
+            if (start > end) {
+                return start;
+            }
+            starts[size] = start;
+            ends[size] = end;
+            verifiers[size] = range.verifier();
+            size++;
+            return end + 1;
+        }
+
+        SoracomSecrets toSecrets() {
+            final long[] starts = new long[size];
+            final long[] ends = new long[size];
+            final SoracomSignatureVerifier[] verifiers = new SoracomSignatureVerifier[size];
+            System.arraycopy(this.starts, 0, starts, 0, size);
+            System.arraycopy(this.ends, 0, ends, 0, size);
+            System.arraycopy(this.verifiers, 0, verifiers, 0, size);
+            return new SoracomSecrets(starts, ends, verifiers);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Verifies SORACOM Beam signatures of version 20151001, which are the hex
+ * encoded SHA-256 of the secret followed by
+ * {@code x-soracom-imei=<imei>} (when present), {@code x-soracom-imsi=<imsi>}
+ * and {@code x-soracom-timestamp=<timestamp>}.
+ * <p>
+ * Each thread keeps a digest that has already consumed the secret, and each
+ * check works on a clone of it, so the secret is hashed once per thread. The
+ * string to sign is never built: its parts are fed to the digest from a
+ * buffer of the thread's {@link BufferPool}, the result is written into another reusable buffer, and
+ * it is compared with the decoded signature in constant time.
+ */
+final class SoracomSignatureVerifier {
+
+    static final int SIGNATURE_LENGTH = 32;
+
+    /**
+     * Longer than the IMEI, IMSI and timestamp; longer values are encoded with {@link String#getBytes}.
+     */
+    private static final int SCRATCH_LENGTH = 64;
+
+    private static final byte[] IMEI_PREFIX = "x-soracom-imei=".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IMSI_PREFIX = "x-soracom-imsi=".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TIMESTAMP_PREFIX = "x-soracom-timestamp=".getBytes(StandardCharsets.US_ASCII);
+
+    private final byte[] secret;
+
+    private final ThreadLocal<State> state = new ThreadLocal<State>() {
+        @Override
+        protected State initialValue() {
+            return new State(secret);
+        }
+    };
+
+    SoracomSignatureVerifier(String secret) {
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param imei      the IMEI, or null when the request carried none
+     * @param signature the hex encoded signature to check
+     */
+    boolean verify(String imei, String imsi, String timestamp, String signature) {
+        final State state = this.state.get();
+        if (!decodeHex(signature, state.expected)) {
+            return false;
+        }
+
+        final MessageDigest digest = state.clonePrefix();
+        final byte[] buffer = BufferPool.takeBytes(SCRATCH_LENGTH);
+        try {
+            if (imei != null) {
+                update(digest, buffer, IMEI_PREFIX, imei);
+            }
+            update(digest, buffer, IMSI_PREFIX, imsi);
+            update(digest, buffer, TIMESTAMP_PREFIX, timestamp);
+            digest.digest(state.actual, 0, SIGNATURE_LENGTH);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            BufferPool.release(buffer);
+        }
+        return MessageDigest.isEqual(state.expected, state.actual);
+    }
+
+    /**
+     * Decodes hex digits of either case into {@code out}.
+     *
+     * @return false if {@code hex} is not exactly {@code out.length} bytes of hex
+     */
+    static boolean decodeHex(String hex, byte[] out) {
+        if (hex == null || hex.length() != out.length * 2) {
+            return false;
+        }
+        for (int i = 0; i < out.length; i++) {
+            final int high = Character.digit(hex.charAt(i * 2), 16);
+            final int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                return false;
+            }
+            out[i] = (byte) (high << 4 | low);
+        }
+        return true;
+    }
+
+    private static void update(MessageDigest digest, byte[] buffer, byte[] name, String value) {
+        digest.update(name);
+        final int length = value.length();
+        if (length > buffer.length) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            if (c >= 0x80) {
+                digest.update(buffer, 0, i);
+                digest.update(value.substring(i).getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            buffer[i] = (byte) c;
+        }
+        digest.update(buffer, 0, length);
+    }
+
+    private static final class State {
+        private final MessageDigest prefix;
+        private final byte[] expected = new byte[SIGNATURE_LENGTH];
+        private final byte[] actual = new byte[SIGNATURE_LENGTH];
+
+        State(byte[] secret) {
+            try {
+                prefix = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            prefix.update(secret);
+        }
+
+        MessageDigest clonePrefix() {
+            try {
+                return (MessageDigest) prefix.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,350 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses the timestamps of access logs into milliseconds since the epoch,
+ * without a {@code SimpleDateFormat} or any allocation per value.
+ * <p>
+ * Two layouts are recognized:
+ * <ul>
+ * <li>the common log format of nginx's {@code $time_local} and Apache's
+ * {@code %t}, {@code 18/Oct/2026:14:04:05 +0900}, with or without the
+ * surrounding brackets</li>
+ * <li>ISO-8601 as in nginx's {@code $time_iso8601},
+ * {@code 2026-10-18T14:04:05+09:00}, with a {@code T} or a space between
+ * date and time, an optional fraction of a second, and an offset of
+ * {@code Z}, {@code +hh:mm}, {@code +hhmm} or {@code +hh}. A time without an
+ * offset is taken as UTC.</li>
+ * </ul>
+ * Consecutive lines of a log almost always share a second, so the parser
+ * remembers the last second it parsed, keyed by its bytes without the
+ * fraction. A value in the same second costs a comparison of those bytes;
+ * only a new second is parsed field by field.
+ * <p>
+ * A parser is not thread-safe; each tokenizer has its own.
+ */
+final class TimestampParser {
+
+    /**
+     * The result of {@link #parse} for a value that is not a timestamp.
+     */
+    static final long INVALID = Long.MIN_VALUE;
+
+    /**
+     * The length of {@link #formatIso8601}, {@code yyyy-MM-ddTHH:mm:ss.SSS+hh:mm}.
+     */
+    static final int ISO_8601_LENGTH = 29;
+
+    private static final byte[][] MONTHS = new byte[12][];
+    private static final int MAX_OFFSET_SECONDS = 18 * 3600;
+    private static final int MAX_KEY_LENGTH = 32;
+
+    static {
+        final String[] names = {"Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+        for (int i = 0; i < names.length; i++) {
+            MONTHS[i] = names[i].getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    // The bytes of the last second parsed, the date and time followed by the offset.
+    private final byte[] key = new byte[MAX_KEY_LENGTH];
+    private int keySecondsLength = -1;
+    private int keyLength;
+    private long keyEpochSecond;
+    private int keyOffsetSeconds;
+
+    private long millis = INVALID;
+    private int offsetSeconds;
+
+    private final byte[] iso = new byte[ISO_8601_LENGTH];
+    private long isoSecond = INVALID;
+    private int isoOffsetSeconds;
+
+    /**
+     * @return the milliseconds since the epoch, with the fraction truncated, or {@link #INVALID}
+     */
+    long parse(byte[] buffer, int offset, int length) {
+        if (length >= 2 && buffer[offset] == '[' && buffer[offset + length - 1] == ']') {
+            offset++;
+            length -= 2;
+        }
+        millis = INVALID;
+        if (length == 26 && buffer[offset + 2] == '/') {
+            // dd/MMM/yyyy:HH:mm:ss +hhmm
+            if (isCached(buffer, offset, 20, offset + 20, 6) || parseCommonLog(buffer, offset)) {
+                millis = keyEpochSecond * 1000;
+            }
+        } else if (length >= 19 && buffer[offset + 4] == '-') {
+            // yyyy-MM-ddTHH:mm:ss[.fraction][offset]
+            final int end = offset + length;
+            int zone = offset + 19;
+            int fraction = 0;
+            if (zone < end && buffer[zone] == '.') {
+                int scale = 100;
+                for (zone++; zone < end && isDigit(buffer[zone]); zone++) {
+                    fraction += (buffer[zone] - '0') * scale;
+                    scale /= 10;
+                }
+                if (zone == offset + 20) {
+                    return INVALID;
+                }
+            }
+            if (isCached(buffer, offset, 19, zone, end - zone) || parseIso8601(buffer, offset, zone, end)) {
+                millis = keyEpochSecond * 1000 + fraction;
+            }
+        }
+        offsetSeconds = keyOffsetSeconds;
+        return millis;
+    }
+
+    /**
+     * @return the offset from UTC of the last value parsed, in seconds
+     */
+    int getOffsetSeconds() {
+        return offsetSeconds;
+    }
+
+    /**
+     * Formats the last value parsed as ISO-8601 with milliseconds and its
+     * own offset, e.g. {@code 2026-10-18T14:04:05.000+09:00}.
+     *
+     * @return {@link #ISO_8601_LENGTH} bytes, overwritten by the next call
+     * @throws IllegalStateException if the last value parsed was not a timestamp
+     */
+    byte[] formatIso8601() {
+        if (millis == INVALID) {
+            throw new IllegalStateException("The last value parsed is not a timestamp");
+        }
+        final long second = Math.floorDiv(millis, 1000);
+        if (second != isoSecond || offsetSeconds != isoOffsetSeconds) {
+            formatSecond(second, offsetSeconds);
+            isoSecond = second;
+            isoOffsetSeconds = offsetSeconds;
+        }
+        final int fraction = (int) Math.floorMod(millis, 1000);
+        iso[20] = (byte) ('0' + fraction / 100);
+        iso[21] = (byte) ('0' + fraction / 10 % 10);
+        iso[22] = (byte) ('0' + fraction % 10);
+        return iso;
+    }
+
+    private boolean isCached(byte[] buffer, int secondsOffset, int secondsLength, int zoneOffset, int zoneLength) {
+        if (secondsLength != keySecondsLength || secondsLength + zoneLength != keyLength) {
+            return false;
+        }
+        for (int i = 0; i < secondsLength; i++) {
+            if (key[i] != buffer[secondsOffset + i]) {
+                return false;
+            }
+        }
+        for (int i = 0; i < zoneLength; i++) {
+            if (key[secondsLength + i] != buffer[zoneOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void remember(byte[] buffer, int secondsOffset, int secondsLength, int zoneOffset, int zoneLength,
+                          long epochSecond, int zoneSeconds) {
+        System.arraycopy(buffer, secondsOffset, key, 0, secondsLength);
+        System.arraycopy(buffer, zoneOffset, key, secondsLength, zoneLength);
+        keySecondsLength = secondsLength;
+        keyLength = secondsLength + zoneLength;
+        keyEpochSecond = epochSecond;
+        keyOffsetSeconds = zoneSeconds;
+    }
+
+    private boolean parseCommonLog(byte[] buffer, int offset) {
+        if (buffer[offset + 6] != '/' || buffer[offset + 11] != ':' || buffer[offset + 14] != ':'
+                || buffer[offset + 17] != ':' || buffer[offset + 20] != ' ') {
+            return false;
+        }
+        final int zoneSeconds = parseOffset(buffer, offset + 21, offset + 26);
+        final long epochSecond = toEpochSecond(parseDigits(buffer, offset + 7, 4), parseMonth(buffer, offset + 3),
+                parseDigits(buffer, offset, 2), parseDigits(buffer, offset + 12, 2), parseDigits(buffer, offset + 15, 2),
+                parseDigits(buffer, offset + 18, 2), zoneSeconds);
+        if (epochSecond == INVALID) {
+            return false;
+        }
+        remember(buffer, offset, 20, offset + 20, 6, epochSecond, zoneSeconds);
+        return true;
+    }
+
+    private boolean parseIso8601(byte[] buffer, int offset, int zone, int end) {
+        final byte separator = buffer[offset + 10];
+        if (buffer[offset + 7] != '-' || (separator != 'T' && separator != ' ')
+                || buffer[offset + 13] != ':' || buffer[offset + 16] != ':' || end - zone > MAX_KEY_LENGTH - 19) {
+            return false;
+        }
+        final int zoneSeconds = zone == end ? 0 : parseOffset(buffer, zone, end);
+        final long epochSecond = toEpochSecond(parseDigits(buffer, offset, 4), parseDigits(buffer, offset + 5, 2),
+                parseDigits(buffer, offset + 8, 2), parseDigits(buffer, offset + 11, 2), parseDigits(buffer, offset + 14, 2),
+                parseDigits(buffer, offset + 17, 2), zoneSeconds);
+        if (epochSecond == INVALID) {
+            return false;
+        }
+        remember(buffer, offset, 19, zone, end - zone, epochSecond, zoneSeconds);
+        return true;
+    }
+
+    /**
+     * @return the seconds since the epoch of a local time at an offset, or {@link #INVALID} if a field is out of range
+     */
+    private static long toEpochSecond(int year, int month, int day, int hour, int minute, int second, int zoneSeconds) {
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59
+                || zoneSeconds == Integer.MIN_VALUE) {
+            return INVALID;
+        }
+        return epochDay(year, month, day) * 86400 + hour * 3600 + minute * 60 + second - zoneSeconds;
+    }
+
+    /**
+     * @return the offset of {@code Z}, {@code +hh:mm}, {@code +hhmm} or {@code +hh} in seconds, or
+     * {@link Integer#MIN_VALUE} if it is none of them
+     */
+    private static int parseOffset(byte[] buffer, int start, int end) {
+        final int length = end - start;
+        if (length == 1 && buffer[start] == 'Z') {
+            return 0;
+        }
+        if ((length != 3 && length != 5 && length != 6) || (buffer[start] != '+' && buffer[start] != '-')) {
+            return Integer.MIN_VALUE;
+        }
+        final int hours = parseDigits(buffer, start + 1, 2);
+        int minutes = 0;
+        if (length == 5) {
+            minutes = parseDigits(buffer, start + 3, 2);
+        } else if (length == 6) {
+            minutes = buffer[start + 3] == ':' ? parseDigits(buffer, start + 4, 2) : -1;
+        }
+        final int seconds = hours * 3600 + minutes * 60;
+        if (hours < 0 || minutes < 0 || minutes > 59 || seconds > MAX_OFFSET_SECONDS) {
+            return Integer.MIN_VALUE;
+        }
+        return buffer[start] == '-' ? -seconds : seconds;
+    }
+
+    /**
+     * @return the month of an English three letter abbreviation, or -1
+     */
+    private static int parseMonth(byte[] buffer, int offset) {
+        for (int i = 0; i < MONTHS.length; i++) {
+            final byte[] month = MONTHS[i];
+            if (month[0] == buffer[offset] && month[1] == buffer[offset + 1] && month[2] == buffer[offset + 2]) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the value of exactly {@code count} decimal digits, or -1
+     */
+    private static int parseDigits(byte[] buffer, int offset, int count) {
+        int value = 0;
+        for (int i = 0; i < count; i++) {
+            final byte b = buffer[offset + i];
+            if (!isDigit(b)) {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isLeapYear(long year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * @return the days since 1970-01-01 of a date in the proleptic Gregorian calendar
+     */
+    private static long epochDay(long year, int month, int day) {
+        // Count from March so that the leap day falls at the end of the year.
+        final long y = month <= 2 ? year - 1 : year;
+        final long era = Math.floorDiv(y, 400);
+        final long yearOfEra = y - era * 400;
+        final long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        final long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private void formatSecond(long epochSecond, int zoneSeconds) {
+        final long local = epochSecond + zoneSeconds;
+        final long epochDay = Math.floorDiv(local, 86400);
+        final int secondOfDay = (int) Math.floorMod(local, 86400);
+
+        // The inverse of epochDay.
+        final long days = epochDay + 719468;
+        final long era = Math.floorDiv(days, 146097);
+        final long dayOfEra = days - era * 146097;
+        final long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        final long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        final int shiftedMonth = (int) ((5 * dayOfYear + 2) / 153);
+        final int day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        final int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        final long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        writeDigits(year, 0, 4);
+        iso[4] = '-';
+        writeDigits(month, 5, 2);
+        iso[7] = '-';
+        writeDigits(day, 8, 2);
+        iso[10] = 'T';
+        writeDigits(secondOfDay / 3600, 11, 2);
+        iso[13] = ':';
+        writeDigits(secondOfDay / 60 % 60, 14, 2);
+        iso[16] = ':';
+        writeDigits(secondOfDay % 60, 17, 2);
+        iso[19] = '.';
+        final int zone = Math.abs(zoneSeconds);
+        iso[23] = (byte) (zoneSeconds < 0 ? '-' : '+');
+        writeDigits(zone / 3600, 24, 2);
+        iso[26] = ':';
+        writeDigits(zone / 60 % 60, 27, 2);
+    }
+
+    private void writeDigits(long value, int offset, int count) {
+        for (int i = offset + count - 1; i >= offset; i--) {
+            iso[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
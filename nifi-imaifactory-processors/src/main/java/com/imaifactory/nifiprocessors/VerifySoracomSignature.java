@@ -19,12 +19,23 @@ package com.imaifactory.nifiprocessors;
 import org.apache.nifi.annotation.behavior.*;
 import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.annotation.lifecycle.OnScheduled;
 import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.components.ValidationContext;
+import org.apache.nifi.components.ValidationResult;
 import org.apache.nifi.flowfile.FlowFile;
 import org.apache.nifi.processor.*;
 import org.apache.nifi.processor.exception.ProcessException;
 import org.apache.nifi.processor.util.StandardValidators;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 @EventDriven
 @SideEffectFree
@@ -32,7 +43,7 @@ import java.util.*;
 @Tags({"soracom", "signature", "flowfile"})
 @InputRequirement(InputRequirement.Requirement.INPUT_REQUIRED)
 @CapabilityDescription("Verify SORACOM Beam's signature")
-public class VerifySoracomSignature extends AbstractProcessor {
+public class VerifySoracomSignature extends AbstractBatchingProcessor {
 
     protected static final String SORACOM_SIGNATURE_VERSION_1 = "20151001";
 
@@ -45,12 +56,40 @@ public class VerifySoracomSignature extends AbstractProcessor {
 
     static final PropertyDescriptor SECRET = new PropertyDescriptor.Builder()
             .name("secret")
-            .required(true)
-            .description("SORACOM Beam's shared secret.")
+            .required(false)
+            .description("SORACOM Beam's shared secret. Used for IMSIs not covered by Secrets File; "
+                    + "either this or Secrets File is required.")
             .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
             .sensitive(true)
             .build();
 
+    static final PropertyDescriptor SECRETS_FILE = new PropertyDescriptor.Builder()
+            .name("Secrets File")
+            .required(false)
+            .description("A local file mapping IMSIs to secrets, one 'IMSI, IMSI prefix or IMSI range = secret' per line, "
+                    + "e.g. '44010 = secret' or '440100000000000-440100000009999 = secret'. The narrowest match wins. "
+                    + "The file is reloaded when it changes; if it cannot be parsed the previous mapping is kept.")
+            .addValidator(StandardValidators.FILE_EXISTS_VALIDATOR)
+            .build();
+
+    static final PropertyDescriptor TIMESTAMP_SKEW_WINDOW = new PropertyDescriptor.Builder()
+            .name("Timestamp Skew Window")
+            .required(false)
+            .description("If set, requests whose x-soracom-timestamp is further than this from the current time "
+                    + "are routed to failure without computing the signature, and verified requests are "
+                    + "remembered for this long so that replays are routed to replay.")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .build();
+
+    static final PropertyDescriptor REPLAY_CACHE_SIZE = new PropertyDescriptor.Builder()
+            .name("Replay Cache Size")
+            .required(true)
+            .defaultValue("100000")
+            .description("The maximum number of verified requests remembered for replay detection. "
+                    + "Only used when Timestamp Skew Window is set; 0 disables replay detection.")
+            .addValidator(StandardValidators.NON_NEGATIVE_INTEGER_VALIDATOR)
+            .build();
+
     private List<PropertyDescriptor> descriptors;
 
     static final Relationship REL_SUCCESS = new Relationship.Builder().name("success")
@@ -59,19 +98,44 @@ public class VerifySoracomSignature extends AbstractProcessor {
     static final Relationship REL_FAILURE = new Relationship.Builder().name("failure")
             .description("Failed to verify soracom signature").build();
 
+    static final Relationship REL_REPLAY = new Relationship.Builder().name("replay")
+            .description("Correctly signed requests that were already verified within Timestamp Skew Window").build();
+
     private Set<Relationship> relationships;
 
+    private static final long SECRETS_FILE_CHECK_INTERVAL_MILLIS = 1000;
+
+    static final String VERIFIED_COUNTER = "Requests verified";
+    static final String FAILED_COUNTER = "Requests failed";
+    static final String REPLAY_COUNTER = "Requests replayed";
+
+    private static final LatencyCounters verifyLatency = new LatencyCounters("Verify");
+
+    private volatile SoracomSignatureVerifier verifier;
+    private volatile File secretsFile;
+    private volatile SoracomSecrets secrets;
+    private volatile long secretsLastModified;
+    private volatile long nextSecretsFileCheck;
+    private volatile long skewWindowMillis;
+    private volatile ReplayCache replayCache;
+
     @Override
     protected void init(final ProcessorInitializationContext context) {
 
         final List<PropertyDescriptor> descriptors = new ArrayList<PropertyDescriptor>();
         descriptors.add(SECRET);
+        descriptors.add(SECRETS_FILE);
         descriptors.add(SORACOM_SIGNATURE_VERSION);
+        descriptors.add(TIMESTAMP_SKEW_WINDOW);
+        descriptors.add(REPLAY_CACHE_SIZE);
+        descriptors.add(BATCH_SIZE);
+        descriptors.add(BATCH_DURATION);
         this.descriptors = Collections.unmodifiableList(descriptors);
 
         final Set<Relationship> relationships = new HashSet<Relationship>();
         relationships.add(REL_SUCCESS);
         relationships.add(REL_FAILURE);
+        relationships.add(REL_REPLAY);
         this.relationships = Collections.unmodifiableSet(relationships);
     }
 
@@ -86,70 +150,132 @@ public class VerifySoracomSignature extends AbstractProcessor {
     }
 
     @Override
-    public void onTrigger(final ProcessContext context, final ProcessSession session) throws ProcessException {
-        final FlowFile original = session.get();
-        if ( original == null ) {
-            return;
+    protected Collection<ValidationResult> customValidate(final ValidationContext context) {
+        if (!context.getProperty(SECRET).isSet() && !context.getProperty(SECRETS_FILE).isSet()) {
+            return Collections.singletonList(new ValidationResult.Builder().subject(SECRET.getName()).valid(false)
+                    .explanation("either " + SECRET.getName() + " or " + SECRETS_FILE.getName() + " is required").build());
         }
+        return Collections.emptyList();
+    }
 
-        Map<String, String> options = new HashMap<>();
-        options.put("secret",context.getProperty(SECRET).toString());
-        options.put("signature_version",context.getProperty(SORACOM_SIGNATURE_VERSION).toString());
-
-        if(verifySignature(original,options)) {
-            session.transfer(original, REL_SUCCESS);
+    @OnScheduled
+    public void onScheduled(final ProcessContext context) throws IOException {
+        this.verifier = context.getProperty(SECRET).isSet()
+                ? new SoracomSignatureVerifier(context.getProperty(SECRET).getValue()) : null;
+        if (context.getProperty(SECRETS_FILE).isSet()) {
+            final File file = new File(context.getProperty(SECRETS_FILE).getValue());
+            this.secretsLastModified = file.lastModified();
+            this.secrets = loadSecrets(file);
+            this.nextSecretsFileCheck = System.currentTimeMillis() + SECRETS_FILE_CHECK_INTERVAL_MILLIS;
+            this.secretsFile = file;
+        } else {
+            this.secretsFile = null;
+            this.secrets = null;
+        }
+        if (context.getProperty(TIMESTAMP_SKEW_WINDOW).isSet()) {
+            final long window = context.getProperty(TIMESTAMP_SKEW_WINDOW).asTimePeriod(TimeUnit.MILLISECONDS);
+            final int cacheSize = context.getProperty(REPLAY_CACHE_SIZE).asInteger();
+            this.skewWindowMillis = window;
+            this.replayCache = cacheSize > 0 ? new ReplayCache(cacheSize, window) : null;
         } else {
-            session.transfer(original, REL_FAILURE);
+            this.skewWindowMillis = -1;
+            this.replayCache = null;
         }
     }
 
-    private boolean verifySignature(FlowFile flowFile,Map<String,String> options) {
-        Map<String, String> attributes = flowFile.getAttributes();
-        if ( !attributes.containsKey("http.headers.x-soracom-signature") ||
-                !attributes.containsKey("http.headers.x-soracom-timestamp") ||
-                !attributes.containsKey("http.headers.x-soracom-signature-version") ||
-                !attributes.containsKey("http.headers.x-soracom-imsi")
-                ) {
-            return false;
+    @Override
+    protected void onTrigger(final ProcessContext context, final ProcessSession session, final FlowFile original) throws ProcessException {
+        final long start = System.nanoTime();
+        final Relationship relationship = verifySignature(original);
+        verifyLatency.record(session, System.nanoTime() - start);
+        session.adjustCounter(relationship == REL_SUCCESS ? VERIFIED_COUNTER
+                : relationship == REL_REPLAY ? REPLAY_COUNTER : FAILED_COUNTER, 1, false);
+        session.transfer(original, relationship);
+    }
+
+    private Relationship verifySignature(FlowFile flowFile) {
+        final String signature = flowFile.getAttribute("http.headers.x-soracom-signature");
+        final String timestamp = flowFile.getAttribute("http.headers.x-soracom-timestamp");
+        final String signatureVersion = flowFile.getAttribute("http.headers.x-soracom-signature-version");
+        final String imsi = flowFile.getAttribute("http.headers.x-soracom-imsi");
+        if ( signature == null || timestamp == null || signatureVersion == null || imsi == null ) {
+            return REL_FAILURE;
         }
 
+        final long skewWindowMillis = this.skewWindowMillis;
+        if (skewWindowMillis < 0) {
+            final SoracomSignatureVerifier verifier = verifierFor(imsi);
+            return verifier != null && verifier.verify(flowFile.getAttribute("http.headers.x-soracom-imei"), imsi, timestamp, signature)
+                    ? REL_SUCCESS : REL_FAILURE;
+        }
 
-        String stringToSign;
+        final long now = System.currentTimeMillis();
+        final long time;
         try {
-            stringToSign = buildStringToSign(flowFile,options);
-        } catch(ProcessException e){
-            return false;
+            time = Long.parseLong(timestamp);
+        } catch (NumberFormatException e) {
+            return REL_FAILURE;
+        }
+        if (Math.abs(now - time) > skewWindowMillis) {
+            return REL_FAILURE;
         }
 
-        if(compareSignature(stringToSign,
-                attributes.get("http.headers.x-soracom-signature"),
-                attributes.get("http.headers.x-soracom-signature-version"))) {
-            return true;
-        } else {
-            return false;
+        final ReplayCache replayCache = this.replayCache;
+        if (replayCache != null && replayCache.contains(imsi, time, signature)) {
+            return REL_REPLAY;
+        }
+        final SoracomSignatureVerifier verifier = verifierFor(imsi);
+        if (verifier == null || !verifier.verify(flowFile.getAttribute("http.headers.x-soracom-imei"), imsi, timestamp, signature)) {
+            return REL_FAILURE;
+        }
+        if (replayCache != null && !replayCache.add(imsi, time, signature, now)) {
+            return REL_REPLAY;
         }
+        return REL_SUCCESS;
     }
 
-    private String buildStringToSign(FlowFile flowFile,Map<String,String> options) throws ProcessException {
-
-        Map<String, String> attributes = flowFile.getAttributes();
-
-        String stringToSign = options.get("secret");
-
-        if(attributes.containsKey("http.headers.x-soracom-imei")) {
-            stringToSign = stringToSign + "x-soracom-imei=" + attributes.get("http.headers.x-soracom-imei");
+    /**
+     * @return the verifier for the secret of the IMSI, or null if there is none
+     */
+    private SoracomSignatureVerifier verifierFor(String imsi) {
+        if (secretsFile != null) {
+            reloadSecretsIfChanged();
+            final SoracomSignatureVerifier verifier = secrets.lookup(imsi);
+            if (verifier != null) {
+                return verifier;
+            }
         }
+        return verifier;
+    }
 
-        stringToSign = stringToSign + "x-soracom-imsi=" + attributes.get("http.headers.x-soracom-imsi");
-
-        stringToSign = stringToSign + "x-soracom-timestamp=" + attributes.get("http.headers.x-soracom-timestamp");
-
-        return stringToSign;
-
+    private void reloadSecretsIfChanged() {
+        final long now = System.currentTimeMillis();
+        if (now < nextSecretsFileCheck) {
+            return;
+        }
+        synchronized (this) {
+            if (now < nextSecretsFileCheck) {
+                return;
+            }
+            nextSecretsFileCheck = now + SECRETS_FILE_CHECK_INTERVAL_MILLIS;
+            final File file = secretsFile;
+            final long lastModified = file.lastModified();
+            if (lastModified == secretsLastModified) {
+                return;
+            }
+            secretsLastModified = lastModified;
+            try {
+                secrets = loadSecrets(file);
+                getLogger().info("Reloaded {} IMSI ranges from {}", new Object[]{secrets.size(), file});
+            } catch (IOException e) {
+                getLogger().error("Failed to reload {}, keeping the previous secrets: {}", new Object[]{file, e.getMessage()});
+            }
+        }
     }
 
-    private boolean compareSignature (String stringToSign, String signature, String signatureVersion) {
-        String hash = org.apache.commons.codec.digest.DigestUtils.sha256Hex(stringToSign);
-        return hash.equals(signature);
+    private static SoracomSecrets loadSecrets(File file) throws IOException {
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            return SoracomSecrets.load(reader);
+        }
     }
 }
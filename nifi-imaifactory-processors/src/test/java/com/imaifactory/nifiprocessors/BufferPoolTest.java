@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+public class BufferPoolTest {
+
+    @Test
+    public void testReleased_arrays_are_reused_by_length() {
+        final byte[] bytes = BufferPool.takeBytes(1000);
+        BufferPool.release(bytes);
+        assertNotSame(bytes, BufferPool.takeBytes(999));
+        assertSame(bytes, BufferPool.takeBytes(1000));
+        assertNotSame(bytes, BufferPool.takeBytes(1000));
+
+        final char[] chars = BufferPool.takeChars(256);
+        BufferPool.release(chars);
+        assertSame(chars, BufferPool.takeChars(256));
+    }
+
+    @Test
+    public void testPool_is_capped() {
+        final List<byte[]> taken = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            taken.add(BufferPool.takeBytes(64 * 1024));
+        }
+        for (byte[] bytes : taken) {
+            BufferPool.release(bytes);
+        }
+        assertTrue(BufferPool.getPooledBytes() <= BufferPool.MAX_POOLED_BYTES);
+        BufferPool.release(new byte[BufferPool.MAX_POOLED_BYTES + 1]);
+        assertTrue(BufferPool.getPooledBytes() <= BufferPool.MAX_POOLED_BYTES);
+        for (int i = 0; i < 100; i++) {
+            BufferPool.takeBytes(64 * 1024);
+        }
+    }
+
+    @Test
+    public void testDecoders_are_reset_and_reused() {
+        final CharsetDecoder decoder = BufferPool.takeDecoder();
+        assertEquals(StandardCharsets.UTF_8, decoder.charset());
+        BufferPool.release(decoder);
+        assertSame(decoder, BufferPool.takeDecoder());
+    }
+
+    @Test
+    public void testOutput_stream_returns_its_buffer_on_close() throws IOException {
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        try (OutputStream out = BufferPool.newOutputStream(actual)) {
+            for (int i = 0; i < 100000; i++) {
+                out.write(i);
+                expected.write(i);
+            }
+            final byte[] large = new byte[BufferPool.WRITE_BUFFER_SIZE * 2 + 1];
+            large[large.length - 1] = 42;
+            out.write(large, 0, large.length);
+            expected.write(large, 0, large.length);
+            out.write(large, 1, 10);
+            expected.write(large, 1, 10);
+        }
+        assertTrue(Arrays.equals(expected.toByteArray(), actual.toByteArray()));
+
+        final byte[] buffer = BufferPool.takeBytes(BufferPool.WRITE_BUFFER_SIZE);
+        BufferPool.release(buffer);
+        final OutputStream out = BufferPool.newOutputStream(new ByteArrayOutputStream());
+        assertNotSame(buffer, BufferPool.takeBytes(BufferPool.WRITE_BUFFER_SIZE));
+        out.close();
+        out.close();
+        assertSame(buffer, BufferPool.takeBytes(BufferPool.WRITE_BUFFER_SIZE));
+    }
+
+    @Test
+    public void testLine_reader_returns_its_buffers() throws IOException {
+        final LineReader first = new LineReader(new ByteArrayInputStream("été\n".getBytes(StandardCharsets.UTF_8)), 1024);
+        assertTrue(first.nextLine());
+        assertEquals("été", first.decodeLine().toString());
+        final byte[] buffer = first.getBuffer();
+        first.release();
+
+        final LineReader second = new LineReader(new ByteArrayInputStream("a\n".getBytes(StandardCharsets.UTF_8)), 1024);
+        assertSame(buffer, second.getBuffer());
+        assertTrue(second.nextLine());
+        assertEquals("a", second.decodeLine().toString());
+        second.release();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class CompressionTest {
+
+    private static final byte[] CONTENT = "host:127.0.0.1\treq:GET / HTTP/1.1\nhost:127.0.0.2\treq:POST /a HTTP/1.1\n"
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testRound_trip() throws IOException {
+        for (Compression compression : Compression.values()) {
+            final byte[] compressed = compress(compression, CONTENT);
+            assertEquals(compression, Compression.detect(compressed, compressed.length));
+            assertArrayEquals(compression.toString(), CONTENT, decompress(compressed));
+        }
+    }
+
+    @Test
+    public void testZstd_round_trip() throws IOException {
+        // Larger than a zstd block, so the frame holds several of them.
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (int i = 0; i < 20000; i++) {
+            content.write(("host:127.0.0." + (i % 256) + "\treq:GET /" + i + " HTTP/1.1\n").getBytes(StandardCharsets.UTF_8));
+        }
+        final byte[] compressed = compress(Compression.ZSTD, content.toByteArray());
+        assertEquals(Compression.ZSTD, Compression.detect(compressed, compressed.length));
+        assertTrue(compressed.length < content.size() / 4);
+        assertArrayEquals(content.toByteArray(), decompress(compressed));
+    }
+
+    @Test
+    public void testClose_reaches_the_content() throws IOException {
+        for (Compression compression : Compression.values()) {
+            final boolean[] closed = new boolean[1];
+            final InputStream content = new ByteArrayInputStream(compress(compression, CONTENT)) {
+                @Override
+                public void close() {
+                    closed[0] = true;
+                }
+            };
+            Compression.decompress(content).close();
+            assertTrue(compression.toString(), closed[0]);
+        }
+    }
+
+    @Test
+    public void testConcatenated_streams() throws IOException {
+        for (Compression compression : new Compression[]{Compression.GZIP, Compression.LZ4}) {
+            final ByteArrayOutputStream concatenated = new ByteArrayOutputStream();
+            concatenated.write(compress(compression, CONTENT));
+            concatenated.write(compress(compression, CONTENT));
+            final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            expected.write(CONTENT);
+            expected.write(CONTENT);
+            assertArrayEquals(compression.toString(), expected.toByteArray(), decompress(concatenated.toByteArray()));
+        }
+    }
+
+    @Test
+    public void testText_is_not_detected() throws IOException {
+        assertEquals(Compression.NONE, Compression.detect(CONTENT, CONTENT.length));
+        final byte[] gzipMagicOnly = {0x1f};
+        assertEquals(Compression.NONE, Compression.detect(gzipMagicOnly, gzipMagicOnly.length));
+        assertArrayEquals(gzipMagicOnly, decompress(gzipMagicOnly));
+        assertArrayEquals(new byte[0], decompress(new byte[0]));
+        assertArrayEquals("a".getBytes(StandardCharsets.UTF_8), decompress("a".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testFor_value() {
+        assertEquals(Compression.ZSTD, Compression.forValue("zstd"));
+        assertEquals("application/gzip", Compression.forValue("gzip").getMimeType());
+    }
+
+    static byte[] compress(Compression compression, byte[] content) throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = compression.compress(compressed)) {
+            out.write(content);
+        }
+        return compressed.toByteArray();
+    }
+
+    static byte[] decompress(byte[] content) throws IOException {
+        final ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        try (InputStream in = Compression.decompress(new ByteArrayInputStream(content))) {
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                decompressed.write(buffer, 0, read);
+            }
+        }
+        return decompressed.toByteArray();
+    }
+}
@@ -20,19 +20,25 @@ import am.ik.ltsv4j.LTSV;
 import am.ik.ltsv4j.LTSVFormatter;
 import am.ik.ltsv4j.LTSVParser;
 import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
 import org.apache.nifi.processor.ProcessSession;
 import org.apache.nifi.processor.io.StreamCallback;
-import org.apache.nifi.stream.io.BufferedOutputStream;
+import org.apache.nifi.util.MockFlowFile;
 import org.apache.nifi.util.TestRunner;
 import org.apache.nifi.util.TestRunners;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
 
 
 public class ConvertLTSVToJSONTest {
@@ -91,4 +97,185 @@ public class ConvertLTSVToJSONTest {
 
     }
 
+    @Test
+    public void testProcessor_multiple_lines() {
+        testRunner.enqueue("host:127.0.0.1\treq:GET / HTTP/1.1\nhost:127.0.0.2\treq:POST /a HTTP/1.1\n".getBytes());
+        testRunner.run();
+        testRunner.assertTransferCount(ConvertLTSVToJSON.REL_SUCCESS, 1);
+        testRunner.assertTransferCount(ConvertLTSVToJSON.REL_FAILURE, 0);
+        testRunner.getFlowFilesForRelationship(ConvertLTSVToJSON.REL_SUCCESS).get(0).assertContentEquals(
+                "[{\"host\":\"127.0.0.1\",\"req\":\"GET / HTTP/1.1\"},{\"host\":\"127.0.0.2\",\"req\":\"POST /a HTTP/1.1\"}]");
+        testRunner.getFlowFilesForRelationship(ConvertLTSVToJSON.REL_SUCCESS).get(0)
+                .assertAttributeEquals(ConvertLTSVToJSON.RECORD_COUNT_ATTRIBUTE, "2");
+        testRunner.getFlowFilesForRelationship(ConvertLTSVToJSON.REL_SUCCESS).get(0)
+                .assertAttributeEquals(ConvertLTSVToJSON.BYTES_IN_ATTRIBUTE, "70");
+    }
+
+    @Test
+    public void testProcessor_parallel_conversion() {
+        testRunner.setProperty(ConvertLTSVToJSON.PARALLELISM, "2");
+        testRunner.setProperty(ConvertLTSVToJSON.PARALLEL_THRESHOLD, "1 B");
+        testRunner.setProperty(ConvertLTSVToJSON.CHUNK_SIZE, "16 B");
+        testRunner.enqueue("host:127.0.0.1\treq:GET / HTTP/1.1\nhost:127.0.0.2\treq:POST /a HTTP/1.1\n".getBytes());
+        testRunner.run();
+        testRunner.assertTransferCount(ConvertLTSVToJSON.REL_SUCCESS, 1);
+        testRunner.assertTransferCount(ConvertLTSVToJSON.REL_FAILURE, 0);
+        testRunner.getFlowFilesForRelationship(ConvertLTSVToJSON.REL_SUCCESS).get(0).assertContentEquals(
+                "[{\"host\":\"127.0.0.1\",\"req\":\"GET / HTTP/1.1\"},{\"host\":\"127.0.0.2\",\"req\":\"POST /a HTTP/1.1\"}]");
+    }
+
+    @Test
+    public void testProcessor_invalid_lines_are_routed_to_invalid() {
+        testRunner.setProperty(ConvertLTSVToJSON.MAX_INVALID_LINES, "1");
+        testRunner.enqueue("host:127.0.0.1\nbroken\nhost:127.0.0.2\n".getBytes());
+        testRunner.run();
+        testRunner.assertTransferCount(ConvertLTSVToJSON.REL_SUCCESS, 1);
+        testRunner.assertTransferCount(ConvertLTSVToJSON.REL_INVALID, 1);
+        testRunner.assertTransferCount(ConvertLTSVToJSON.REL_FAILURE, 0);
+        final MockFlowFile success = testRunner.getFlowFilesForRelationship(ConvertLTSVToJSON.REL_SUCCESS).get(0);
+        success.assertContentEquals("[{\"host\":\"127.0.0.1\"},{\"host\":\"127.0.0.2\"}]");
+        success.assertAttributeEquals(ConvertLTSVToJSON.RECORD_COUNT_ATTRIBUTE, "2");
+        success.assertAttributeEquals(ConvertLTSVToJSON.INVALID_COUNT_ATTRIBUTE, "1");
+        final MockFlowFile invalid = testRunner.getFlowFilesForRelationship(ConvertLTSVToJSON.REL_INVALID).get(0);
+        invalid.assertContentEquals("2\tbroken\n");
+        invalid.assertAttributeEquals(ConvertLTSVToJSON.INVALID_COUNT_ATTRIBUTE, "1");
+    }
+
+    @Test
+    public void testProcessor_no_invalid_flowfile_without_invalid_lines() {
+        testRunner.setProperty(ConvertLTSVToJSON.MAX_INVALID_LINES, "0");
+        testRunner.enqueue("host:127.0.0.1\n".getBytes());
+        testRunner.run();
+        testRunner.assertTransferCount(ConvertLTSVToJSON.REL_SUCCESS, 1);
+        testRunner.assertTransferCount(ConvertLTSVToJSON.REL_INVALID, 0);
+        testRunner.getFlowFilesForRelationship(ConvertLTSVToJSON.REL_SUCCESS).get(0)
+                .assertAttributeEquals(ConvertLTSVToJSON.INVALID_COUNT_ATTRIBUTE, "0");
+    }
+
+    @Test
+    public void testProcessor_too_many_invalid_lines_fail_the_flowfile() {
+        testRunner.setProperty(ConvertLTSVToJSON.MAX_INVALID_LINES, "1");
+        testRunner.enqueue("host:127.0.0.1\nbroken\nbroken again\n".getBytes());
+        testRunner.run();
+        testRunner.assertTransferCount(ConvertLTSVToJSON.REL_SUCCESS, 0);
+        testRunner.assertTransferCount(ConvertLTSVToJSON.REL_INVALID, 0);
+        testRunner.assertTransferCount(ConvertLTSVToJSON.REL_FAILURE, 1);
+    }
+
+    @Test
+    public void testProcessor_binary_output_format() throws IOException {
+        testRunner.setProperty(ConvertLTSVToJSON.OUTPUT_FORMAT, "Smile");
+        testRunner.enqueue("host:127.0.0.1\treq:GET / HTTP/1.1\nhost:127.0.0.2\treq:POST /a HTTP/1.1\n".getBytes());
+        testRunner.run();
+        testRunner.assertTransferCount(ConvertLTSVToJSON.REL_SUCCESS, 1);
+        final MockFlowFile success = testRunner.getFlowFilesForRelationship(ConvertLTSVToJSON.REL_SUCCESS).get(0);
+        success.assertAttributeEquals(CoreAttributes.MIME_TYPE.key(), "application/x-jackson-smile");
+        assertEquals("[{\"host\":\"127.0.0.1\",\"req\":\"GET / HTTP/1.1\"},{\"host\":\"127.0.0.2\",\"req\":\"POST /a HTTP/1.1\"}]",
+                OutputFormatTest.toJson(OutputFormat.SMILE, success.toByteArray()));
+    }
+
+    @Test
+    public void testProcessor_compressed_input_and_output() throws IOException {
+        testRunner.setProperty(ConvertLTSVToJSON.OUTPUT_COMPRESSION, "gzip");
+        testRunner.enqueue(CompressionTest.compress(Compression.GZIP,
+                "host:127.0.0.1\treq:GET / HTTP/1.1\nhost:127.0.0.2\treq:POST /a HTTP/1.1\n".getBytes()));
+        testRunner.run();
+        testRunner.assertTransferCount(ConvertLTSVToJSON.REL_SUCCESS, 1);
+        final MockFlowFile success = testRunner.getFlowFilesForRelationship(ConvertLTSVToJSON.REL_SUCCESS).get(0);
+        success.assertAttributeEquals(CoreAttributes.MIME_TYPE.key(), "application/gzip");
+        success.assertAttributeEquals(ConvertLTSVToJSON.RECORD_COUNT_ATTRIBUTE, "2");
+        assertEquals("[{\"host\":\"127.0.0.1\",\"req\":\"GET / HTTP/1.1\"},{\"host\":\"127.0.0.2\",\"req\":\"POST /a HTTP/1.1\"}]",
+                new String(CompressionTest.decompress(success.toByteArray()), "UTF-8"));
+    }
+
+    @Test
+    public void testProcessor_compressed_input_is_read_as_is_without_detection() {
+        testRunner.setProperty(ConvertLTSVToJSON.INPUT_COMPRESSION, "none");
+        testRunner.enqueue(new byte[]{0x1f, (byte) 0x8b, 0x08, 0x00});
+        testRunner.run();
+        testRunner.assertTransferCount(ConvertLTSVToJSON.REL_SUCCESS, 0);
+        testRunner.assertTransferCount(ConvertLTSVToJSON.REL_FAILURE, 1);
+    }
+
+    @Test
+    public void testProcessor_include_fields_with_types() {
+        testRunner.setProperty(ConvertLTSVToJSON.INCLUDE_FIELDS, "host,status");
+        testRunner.setProperty(ConvertLTSVToJSON.FIELD_TYPES, "status:long");
+        testRunner.enqueue("host:127.0.0.1\treq:GET / HTTP/1.1\tstatus:200\n".getBytes());
+        testRunner.run();
+        testRunner.assertTransferCount(ConvertLTSVToJSON.REL_SUCCESS, 1);
+        testRunner.getFlowFilesForRelationship(ConvertLTSVToJSON.REL_SUCCESS).get(0)
+                .assertContentEquals("[{\"host\":\"127.0.0.1\",\"status\":200}]");
+    }
+
+    @Test
+    public void testProcessor_split_by_records() {
+        testRunner.setProperty(ConvertLTSVToJSON.MAX_RECORDS_PER_FLOWFILE, "2");
+        final Map<String, String> attributes = new HashMap<>();
+        attributes.put(CoreAttributes.FILENAME.key(), "access.log");
+        testRunner.enqueue("host:127.0.0.1\nhost:127.0.0.2\nhost:127.0.0.3\n".getBytes(), attributes);
+        testRunner.run();
+        testRunner.assertTransferCount(ConvertLTSVToJSON.REL_SUCCESS, 2);
+        testRunner.assertTransferCount(ConvertLTSVToJSON.REL_FAILURE, 0);
+        final List<MockFlowFile> splits = testRunner.getFlowFilesForRelationship(ConvertLTSVToJSON.REL_SUCCESS);
+        splits.get(0).assertContentEquals("[{\"host\":\"127.0.0.1\"},{\"host\":\"127.0.0.2\"}]");
+        splits.get(0).assertAttributeEquals(ConvertLTSVToJSON.RECORD_COUNT_ATTRIBUTE, "2");
+        splits.get(0).assertAttributeEquals(ConvertLTSVToJSON.FRAGMENT_INDEX_ATTRIBUTE, "0");
+        splits.get(0).assertAttributeEquals(ConvertLTSVToJSON.FRAGMENT_COUNT_ATTRIBUTE, "2");
+        splits.get(0).assertAttributeEquals(ConvertLTSVToJSON.ORIGINAL_FILENAME_ATTRIBUTE, "access.log");
+        splits.get(1).assertContentEquals("[{\"host\":\"127.0.0.3\"}]");
+        splits.get(1).assertAttributeEquals(ConvertLTSVToJSON.RECORD_COUNT_ATTRIBUTE, "1");
+        splits.get(1).assertAttributeEquals(ConvertLTSVToJSON.FRAGMENT_INDEX_ATTRIBUTE, "1");
+        splits.get(1).assertAttributeEquals(ConvertLTSVToJSON.FRAGMENT_COUNT_ATTRIBUTE, "2");
+        assertEquals(splits.get(0).getAttribute(ConvertLTSVToJSON.FRAGMENT_ID_ATTRIBUTE),
+                splits.get(1).getAttribute(ConvertLTSVToJSON.FRAGMENT_ID_ATTRIBUTE));
+    }
+
+    @Test
+    public void testProcessor_split_by_bytes_with_invalid_lines() {
+        testRunner.setProperty(ConvertLTSVToJSON.MAX_BYTES_PER_FLOWFILE, "1 B");
+        testRunner.setProperty(ConvertLTSVToJSON.MAX_INVALID_LINES, "1");
+        testRunner.enqueue("host:127.0.0.1\nbroken\nhost:127.0.0.2\n".getBytes());
+        testRunner.run();
+        testRunner.assertTransferCount(ConvertLTSVToJSON.REL_SUCCESS, 2);
+        testRunner.assertTransferCount(ConvertLTSVToJSON.REL_INVALID, 1);
+        final List<MockFlowFile> splits = testRunner.getFlowFilesForRelationship(ConvertLTSVToJSON.REL_SUCCESS);
+        splits.get(0).assertContentEquals("[{\"host\":\"127.0.0.1\"}]");
+        splits.get(1).assertContentEquals("[{\"host\":\"127.0.0.2\"}]");
+        splits.get(1).assertAttributeEquals(ConvertLTSVToJSON.INVALID_COUNT_ATTRIBUTE, "1");
+        testRunner.getFlowFilesForRelationship(ConvertLTSVToJSON.REL_INVALID).get(0).assertContentEquals("2\tbroken\n");
+    }
+
+    @Test
+    public void testProcessor_split_of_empty_content() {
+        testRunner.setProperty(ConvertLTSVToJSON.MAX_RECORDS_PER_FLOWFILE, "2");
+        testRunner.enqueue(new byte[0]);
+        testRunner.run();
+        testRunner.assertTransferCount(ConvertLTSVToJSON.REL_SUCCESS, 1);
+        final MockFlowFile split = testRunner.getFlowFilesForRelationship(ConvertLTSVToJSON.REL_SUCCESS).get(0);
+        split.assertContentEquals("[]");
+        split.assertAttributeEquals(ConvertLTSVToJSON.FRAGMENT_COUNT_ATTRIBUTE, "1");
+    }
+
+    @Test
+    public void testProcessor_split_fails_as_a_whole() {
+        testRunner.setProperty(ConvertLTSVToJSON.MAX_RECORDS_PER_FLOWFILE, "1");
+        testRunner.enqueue("host:127.0.0.1\nhost:127.0.0.2\nbroken\n".getBytes());
+        testRunner.run();
+        testRunner.assertTransferCount(ConvertLTSVToJSON.REL_SUCCESS, 0);
+        testRunner.assertTransferCount(ConvertLTSVToJSON.REL_FAILURE, 1);
+        testRunner.getFlowFilesForRelationship(ConvertLTSVToJSON.REL_FAILURE).get(0)
+                .assertContentEquals("host:127.0.0.1\nhost:127.0.0.2\nbroken\n");
+    }
+
+    @Test
+    public void testInclude_and_exclude_fields_are_exclusive() {
+        testRunner.setProperty(ConvertLTSVToJSON.INCLUDE_FIELDS, "host");
+        testRunner.setProperty(ConvertLTSVToJSON.EXCLUDE_FIELDS, "ua");
+        testRunner.assertNotValid();
+        testRunner.removeProperty(ConvertLTSVToJSON.INCLUDE_FIELDS);
+        testRunner.setProperty(ConvertLTSVToJSON.FIELD_TYPES, "size:int");
+        testRunner.assertNotValid();
+    }
+
 }
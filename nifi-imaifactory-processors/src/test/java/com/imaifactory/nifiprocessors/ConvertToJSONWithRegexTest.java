@@ -17,18 +17,22 @@
 package com.imaifactory.nifiprocessors;
 
 import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
 import org.apache.nifi.processor.ProcessSession;
 import org.apache.nifi.processor.io.StreamCallback;
-import org.apache.nifi.stream.io.BufferedOutputStream;
+import org.apache.nifi.util.MockFlowFile;
 import org.apache.nifi.util.TestRunner;
 import org.apache.nifi.util.TestRunners;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
+import static org.junit.Assert.assertEquals;
+
 
 public class ConvertToJSONWithRegexTest {
 
@@ -41,7 +45,7 @@ public class ConvertToJSONWithRegexTest {
 
     @Test
     public void testProcessor1() {
-        testRunner.setProperty(ConvertToJSONWithRegex.REGEX, "\\?<word>test ?<number>[0-9]+");
+        testRunner.setProperty(ConvertToJSONWithRegex.REGEX, "(?<word>test)(?<number>[0-9]+)");
         ProcessSession session = testRunner.getProcessSessionFactory().createSession();
 
         FlowFile ff = session.create();
@@ -58,8 +62,150 @@ public class ConvertToJSONWithRegexTest {
         testRunner.run();
         testRunner.assertTransferCount(ConvertToJSONWithRegex.REL_SUCCESS, 1);
         testRunner.assertTransferCount(ConvertToJSONWithRegex.REL_FAILURE, 0);
+        testRunner.assertTransferCount(ConvertToJSONWithRegex.REL_UNMATCHED, 0);
+        testRunner.getFlowFilesForRelationship(ConvertToJSONWithRegex.REL_SUCCESS).get(0)
+                .assertContentEquals("{\"word\":\"test\",\"number\":\"123\"}\n");
         testRunner.getProcessor();
 
     }
 
+    @Test
+    public void testProcessor_one_json_object_per_matching_line() {
+        testRunner.setProperty(ConvertToJSONWithRegex.REGEX, "^(?<host>\\S+) (?<status>[0-9]{3})(?: (?<size>[0-9]+))?$");
+        testRunner.enqueue("10.0.0.1 200 512\nnot a log line\r\n10.0.0.2 404\n".getBytes());
+        testRunner.run();
+        testRunner.assertTransferCount(ConvertToJSONWithRegex.REL_SUCCESS, 1);
+        testRunner.assertTransferCount(ConvertToJSONWithRegex.REL_FAILURE, 0);
+        final MockFlowFile success = testRunner.getFlowFilesForRelationship(ConvertToJSONWithRegex.REL_SUCCESS).get(0);
+        success.assertContentEquals(
+                "{\"host\":\"10.0.0.1\",\"status\":\"200\",\"size\":\"512\"}\n"
+                        + "{\"host\":\"10.0.0.2\",\"status\":\"404\",\"size\":null}\n");
+        success.assertAttributeEquals(ConvertToJSONWithRegex.MATCHED_COUNT_ATTRIBUTE, "2");
+        success.assertAttributeEquals(ConvertToJSONWithRegex.UNMATCHED_COUNT_ATTRIBUTE, "1");
+        success.assertAttributeEquals(ConvertToJSONWithRegex.BYTES_IN_ATTRIBUTE, "46");
+        success.assertAttributeExists(ConvertToJSONWithRegex.CONVERT_MILLIS_ATTRIBUTE);
+
+        testRunner.assertTransferCount(ConvertToJSONWithRegex.REL_UNMATCHED, 1);
+        final MockFlowFile unmatched = testRunner.getFlowFilesForRelationship(ConvertToJSONWithRegex.REL_UNMATCHED).get(0);
+        unmatched.assertContentEquals("not a log line\n");
+        unmatched.assertAttributeEquals(ConvertToJSONWithRegex.MATCHED_COUNT_ATTRIBUTE, "2");
+        unmatched.assertAttributeEquals(ConvertToJSONWithRegex.UNMATCHED_COUNT_ATTRIBUTE, "1");
+    }
+
+    @Test
+    public void testProcessor_time_group() {
+        testRunner.setProperty("access", "^(?<host>\\S+) \\[(?<time>[^\\]]*)\\]$");
+        testRunner.setProperty("error", "^(?<time>\\S+) ERROR$");
+        testRunner.setProperty(ConvertToJSONWithRegex.TIME_GROUP, "time");
+        testRunner.enqueue(("10.0.0.1 [10/Oct/2000:13:55:36 -0700]\n10.0.0.2 [yesterday]\n10.0.0.3 []\n"
+                + "2000-10-10T20:55:36.5Z ERROR\n").getBytes());
+        testRunner.run();
+        testRunner.getFlowFilesForRelationship(ConvertToJSONWithRegex.REL_SUCCESS).get(0).assertContentEquals(
+                "{\"host\":\"10.0.0.1\",\"time\":971211336000}\n"
+                        + "{\"host\":\"10.0.0.2\",\"time\":\"yesterday\"}\n"
+                        + "{\"host\":\"10.0.0.3\",\"time\":null}\n"
+                        + "{\"time\":971211336500}\n");
+
+        testRunner.clearTransferState();
+        testRunner.setProperty(ConvertToJSONWithRegex.TIME_GROUP_TYPE, "iso8601");
+        testRunner.enqueue("10.0.0.1 [10/Oct/2000:13:55:36 -0700]\n".getBytes());
+        testRunner.run();
+        testRunner.getFlowFilesForRelationship(ConvertToJSONWithRegex.REL_SUCCESS).get(0).assertContentEquals(
+                "{\"host\":\"10.0.0.1\",\"time\":\"2000-10-10T13:55:36.000-07:00\"}\n");
+    }
+
+    @Test
+    public void testRegex_without_named_groups_is_invalid() {
+        testRunner.setProperty(ConvertToJSONWithRegex.REGEX, "(test)([0-9]+)");
+        testRunner.assertNotValid();
+        testRunner.setProperty(ConvertToJSONWithRegex.REGEX, "(?<word>test");
+        testRunner.assertNotValid();
+        testRunner.setProperty(ConvertToJSONWithRegex.REGEX, "(?<word>test)([0-9]+)");
+        testRunner.assertValid();
+    }
+
+    @Test
+    public void testProcessor_multiple_patterns() {
+        testRunner.setProperty(ConvertToJSONWithRegex.PATTERN_NAME_FIELD, "format");
+        testRunner.setProperty("access", "^(?<host>\\S+) (?<method>GET|POST) (?<path>\\S+)$");
+        testRunner.setProperty("error", "^ERROR (?<message>.*)$");
+        testRunner.enqueue("10.0.0.1 GET /a\nERROR disk full\nsomething else\n10.0.0.2 POST /b\n".getBytes());
+        testRunner.run();
+        testRunner.assertTransferCount(ConvertToJSONWithRegex.REL_SUCCESS, 1);
+        testRunner.assertTransferCount(ConvertToJSONWithRegex.REL_UNMATCHED, 1);
+        testRunner.getFlowFilesForRelationship(ConvertToJSONWithRegex.REL_SUCCESS).get(0).assertContentEquals(
+                "{\"format\":\"access\",\"host\":\"10.0.0.1\",\"method\":\"GET\",\"path\":\"/a\"}\n"
+                        + "{\"format\":\"error\",\"message\":\"disk full\"}\n"
+                        + "{\"format\":\"access\",\"host\":\"10.0.0.2\",\"method\":\"POST\",\"path\":\"/b\"}\n");
+        testRunner.getFlowFilesForRelationship(ConvertToJSONWithRegex.REL_UNMATCHED).get(0).assertContentEquals("something else\n");
+    }
+
+    @Test
+    public void testProcessor_requires_a_pattern() {
+        testRunner.assertNotValid();
+        testRunner.setProperty("dynamic", "(?<word>test)");
+        testRunner.assertValid();
+        testRunner.setProperty("invalid", "(test)");
+        testRunner.assertNotValid();
+    }
+
+    @Test
+    public void testProcessor_lines_over_step_budget_go_to_failure() {
+        final StringBuilder content = new StringBuilder("aaab\n");
+        for (int i = 0; i < 1000; i++) {
+            content.append('a');
+        }
+        content.append("c\nxyz\n");
+        testRunner.setProperty(ConvertToJSONWithRegex.REGEX, "(?<x>a+)+b");
+        testRunner.setProperty(ConvertToJSONWithRegex.MAX_MATCH_STEPS, "10000");
+        testRunner.enqueue(content.toString().getBytes());
+        testRunner.run();
+        testRunner.assertTransferCount(ConvertToJSONWithRegex.REL_SUCCESS, 1);
+        testRunner.assertTransferCount(ConvertToJSONWithRegex.REL_UNMATCHED, 1);
+        testRunner.assertTransferCount(ConvertToJSONWithRegex.REL_FAILURE, 1);
+        final MockFlowFile success = testRunner.getFlowFilesForRelationship(ConvertToJSONWithRegex.REL_SUCCESS).get(0);
+        success.assertContentEquals("{\"x\":\"aaa\"}\n");
+        success.assertAttributeEquals(ConvertToJSONWithRegex.FAILED_COUNT_ATTRIBUTE, "1");
+        testRunner.getFlowFilesForRelationship(ConvertToJSONWithRegex.REL_UNMATCHED).get(0).assertContentEquals("xyz\n");
+        testRunner.getFlowFilesForRelationship(ConvertToJSONWithRegex.REL_FAILURE).get(0)
+                .assertContentEquals(content.substring(5, content.length() - 4));
+    }
+
+    @Test
+    public void testLinear_time_engine_rejects_unsupported_syntax() {
+        testRunner.setProperty(ConvertToJSONWithRegex.REGEX_ENGINE, "RE2/J");
+        testRunner.setProperty(ConvertToJSONWithRegex.REGEX, "(?<word>test)(?=[0-9])");
+        testRunner.assertNotValid();
+        testRunner.setProperty(ConvertToJSONWithRegex.REGEX, "(?<word>test)(?<number>[0-9]+)");
+        testRunner.assertValid();
+    }
+
+    @Test
+    public void testProcessor_binary_output_format() throws IOException {
+        testRunner.setProperty(ConvertToJSONWithRegex.REGEX, "^(?<host>\\S+) (?<status>[0-9]{3})$");
+        testRunner.setProperty(ConvertToJSONWithRegex.OUTPUT_FORMAT, "CBOR");
+        testRunner.enqueue("10.0.0.1 200\n10.0.0.2 404\n".getBytes());
+        testRunner.run();
+        testRunner.assertTransferCount(ConvertToJSONWithRegex.REL_SUCCESS, 1);
+        final MockFlowFile success = testRunner.getFlowFilesForRelationship(ConvertToJSONWithRegex.REL_SUCCESS).get(0);
+        success.assertAttributeEquals(CoreAttributes.MIME_TYPE.key(), "application/cbor");
+        assertEquals("{\"host\":\"10.0.0.1\",\"status\":\"200\"} {\"host\":\"10.0.0.2\",\"status\":\"404\"}",
+                OutputFormatTest.toJson(OutputFormat.CBOR, success.toByteArray()));
+    }
+
+    @Test
+    public void testProcessor_compressed_input_and_output() throws IOException {
+        testRunner.setProperty(ConvertToJSONWithRegex.REGEX, "^(?<host>\\S+) (?<status>[0-9]{3})$");
+        testRunner.setProperty(ConvertToJSONWithRegex.OUTPUT_COMPRESSION, "lz4");
+        testRunner.enqueue(CompressionTest.compress(Compression.GZIP, "10.0.0.1 200\nnoise\n".getBytes()));
+        testRunner.run();
+        testRunner.assertTransferCount(ConvertToJSONWithRegex.REL_SUCCESS, 1);
+        testRunner.assertTransferCount(ConvertToJSONWithRegex.REL_UNMATCHED, 1);
+        final MockFlowFile success = testRunner.getFlowFilesForRelationship(ConvertToJSONWithRegex.REL_SUCCESS).get(0);
+        success.assertAttributeEquals(CoreAttributes.MIME_TYPE.key(), "application/x-lz4-framed");
+        assertEquals("{\"host\":\"10.0.0.1\",\"status\":\"200\"}\n",
+                new String(CompressionTest.decompress(success.toByteArray()), "UTF-8"));
+        testRunner.getFlowFilesForRelationship(ConvertToJSONWithRegex.REL_UNMATCHED).get(0).assertContentEquals("noise\n");
+    }
+
 }
@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class DistinctCountSketchTest {
+
+    @Test
+    public void testSmall_counts_are_close_to_exact() {
+        final DistinctCountSketch sketch = new DistinctCountSketch();
+        assertEquals(0, sketch.getEstimate());
+        for (int repeat = 0; repeat < 3; repeat++) {
+            for (int i = 0; i < 100; i++) {
+                add(sketch, "user" + i);
+            }
+        }
+        assertEquals(100, sketch.getEstimate(), 2);
+    }
+
+    @Test
+    public void testLarge_counts_are_within_a_few_standard_errors() {
+        for (int distinct : new int[]{10000, 1000000}) {
+            final DistinctCountSketch sketch = new DistinctCountSketch();
+            for (int i = 0; i < distinct; i++) {
+                add(sketch, "10.0." + (i >>> 8) + "." + (i & 0xff));
+            }
+            assertEquals(distinct, sketch.getEstimate(), distinct * 0.07);
+        }
+    }
+
+    private static void add(DistinctCountSketch sketch, String value) {
+        final byte[] bytes = ("x" + value).getBytes(StandardCharsets.UTF_8);
+        sketch.add(bytes, 1, bytes.length - 1);
+    }
+}
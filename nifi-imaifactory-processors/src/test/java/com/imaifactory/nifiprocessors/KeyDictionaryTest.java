@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import com.fasterxml.jackson.core.SerializableString;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+public class KeyDictionaryTest {
+
+    @Test
+    public void testRepeated_key_is_reused() {
+        final KeyDictionary keys = new KeyDictionary();
+        final byte[] line = "host:a\thost:b\tq\"uote:c".getBytes(StandardCharsets.UTF_8);
+        final SerializableString host = keys.get(line, 0, 4);
+        assertEquals("host", host.getValue());
+        assertSame(host, keys.get(line, 7, 4));
+        assertEquals("\"q\\\"uote\"", "\"" + new String(keys.get(line, 14, 6).asQuotedChars()) + "\"");
+        assertEquals(2, keys.size());
+    }
+
+    @Test
+    public void testSize_is_bounded() {
+        final KeyDictionary keys = new KeyDictionary(16, 64);
+        for (int i = 0; i < 10000; i++) {
+            final byte[] key = ("key" + i).getBytes(StandardCharsets.UTF_8);
+            assertEquals("key" + i, keys.get(key, 0, key.length).getValue());
+        }
+        assertTrue(keys.size() <= 16);
+    }
+
+    @Test
+    public void testLong_keys_are_not_kept() {
+        final KeyDictionary keys = new KeyDictionary(16, 4);
+        final byte[] key = "label".getBytes(StandardCharsets.UTF_8);
+        final SerializableString first = keys.get(key, 0, key.length);
+        assertEquals("label", first.getValue());
+        assertNotSame(first, keys.get(key, 0, key.length));
+        assertEquals(0, keys.size());
+    }
+}
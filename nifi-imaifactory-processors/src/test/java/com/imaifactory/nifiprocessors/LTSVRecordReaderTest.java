@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import org.apache.nifi.serialization.MalformedRecordException;
+import org.apache.nifi.serialization.record.Record;
+import org.apache.nifi.serialization.record.RecordFieldType;
+import org.apache.nifi.serialization.record.RecordSchema;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class LTSVRecordReaderTest {
+
+    @Test
+    public void testSchemaFromFirstRecord() throws IOException, MalformedRecordException {
+        final LTSVRecordReader reader = reader("\na:1\tb:x\n\nc:3\ta:4\n", null);
+        final RecordSchema schema = reader.getSchema();
+        assertEquals(Arrays.asList("a", "b"), schema.getFieldNames());
+        assertEquals(RecordFieldType.STRING, schema.getField("a").get().getDataType().getFieldType());
+
+        final Record first = reader.nextRecord(true, true);
+        assertEquals("1", first.getValue("a"));
+        assertEquals("x", first.getValue("b"));
+
+        final Record second = reader.nextRecord(true, true);
+        assertEquals("4", second.getValue("a"));
+        assertNull(second.getValue("c"));
+        assertNull(reader.nextRecord(true, true));
+    }
+
+    @Test
+    public void testUnknownFieldsKept() throws IOException, MalformedRecordException {
+        final LTSVRecordReader reader = reader("a:1\nc:3\n", null);
+        reader.nextRecord(true, false);
+        assertEquals("3", reader.nextRecord(true, false).getValue("c"));
+    }
+
+    @Test
+    public void testIncludeSchemaWithTypes() throws IOException, MalformedRecordException {
+        final LTSVRecordReader reader = reader("host:h\tstatus:200\treqtime:0.5\tmsec:1500000000.123\nstatus:-\treqtime:\n",
+                LTSVSchema.parse("status,reqtime,msec", null, "status:long,reqtime:double,msec:epoch"));
+        final RecordSchema schema = reader.getSchema();
+        assertEquals(Arrays.asList("status", "reqtime", "msec"), schema.getFieldNames());
+        assertEquals(RecordFieldType.LONG, schema.getField("status").get().getDataType().getFieldType());
+        assertEquals(RecordFieldType.DOUBLE, schema.getField("reqtime").get().getDataType().getFieldType());
+        assertEquals(RecordFieldType.TIMESTAMP, schema.getField("msec").get().getDataType().getFieldType());
+
+        final Record first = reader.nextRecord(true, false);
+        assertEquals(200L, first.getValue("status"));
+        assertEquals(0.5, first.getValue("reqtime"));
+        assertEquals(new Timestamp(1500000000123L), first.getValue("msec"));
+        assertNull(first.getValue("host"));
+
+        // A value that is not of its type is null, like an empty one.
+        final Record second = reader.nextRecord(true, false);
+        assertNull(second.getValue("status"));
+        assertNull(second.getValue("reqtime"));
+        assertNull(reader.nextRecord(true, false));
+    }
+
+    @Test
+    public void testUncoercedValuesAreStrings() throws IOException, MalformedRecordException {
+        final LTSVRecordReader reader = reader("status:200\treqtime:0.5\nstatus:-\treqtime:\n",
+                LTSVSchema.parse("status,reqtime", null, "status:long,reqtime:double"));
+        assertEquals(RecordFieldType.LONG, reader.getSchema().getField("status").get().getDataType().getFieldType());
+
+        final Record first = reader.nextRecord(false, false);
+        assertEquals("200", first.getValue("status"));
+        assertEquals("0.5", first.getValue("reqtime"));
+
+        final Record second = reader.nextRecord(false, false);
+        assertEquals("-", second.getValue("status"));
+        assertEquals("", second.getValue("reqtime"));
+        assertNull(reader.nextRecord(false, false));
+    }
+
+    @Test
+    public void testExcludeWithInferredTypes() throws IOException, MalformedRecordException {
+        final LTSVRecordReader reader = reader("host:h\tstatus:200\tsize:10\n",
+                LTSVSchema.parse(null, "host", "status:long"));
+        final RecordSchema schema = reader.getSchema();
+        assertEquals(Arrays.asList("status", "size"), schema.getFieldNames());
+        assertEquals(RecordFieldType.LONG, schema.getField("status").get().getDataType().getFieldType());
+        assertEquals(RecordFieldType.STRING, schema.getField("size").get().getDataType().getFieldType());
+        assertEquals(200L, reader.nextRecord(true, false).getValue("status"));
+    }
+
+    @Test
+    public void testEmptyContent() throws IOException, MalformedRecordException {
+        final LTSVRecordReader reader = reader("\n\n", null);
+        assertEquals(Collections.<String>emptyList(), reader.getSchema().getFieldNames());
+        assertNull(reader.nextRecord(true, false));
+    }
+
+    @Test
+    public void testInvalidLine() throws IOException, MalformedRecordException {
+        final LTSVRecordReader reader = reader("a:1\nbroken\n", null);
+        assertEquals("1", reader.nextRecord(true, false).getValue("a"));
+        try {
+            reader.nextRecord(true, false);
+            fail();
+        } catch (MalformedRecordException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Line 2 "));
+        }
+    }
+
+    private static LTSVRecordReader reader(String content, LTSVSchema schema) {
+        return new LTSVRecordReader(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), schema);
+    }
+}
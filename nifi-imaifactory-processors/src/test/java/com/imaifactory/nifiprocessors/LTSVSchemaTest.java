@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class LTSVSchemaTest {
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    @Test
+    public void testLookup_and_selection() {
+        final LTSVSchema include = LTSVSchema.parse(" host , status", null, "size:long");
+        assertTrue(include.isSelected(lookup(include, "host")));
+        assertTrue(include.isSelected(lookup(include, "status")));
+        assertFalse(include.isSelected(lookup(include, "size")));
+        assertEquals(-1, lookup(include, "ua"));
+        assertFalse(include.isSelected(-1));
+
+        final LTSVSchema exclude = LTSVSchema.parse(null, "ua", "size:long");
+        assertFalse(exclude.isSelected(lookup(exclude, "ua")));
+        assertTrue(exclude.isSelected(lookup(exclude, "size")));
+        assertEquals(LTSVSchema.Type.LONG, exclude.getType(lookup(exclude, "size")));
+        assertTrue(exclude.isSelected(-1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknown_type() {
+        LTSVSchema.parse(null, null, "size:int");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInclude_and_exclude() {
+        LTSVSchema.parse("a", "b", null);
+    }
+
+    @Test
+    public void testLong_values() throws IOException {
+        assertEquals("0", write("long", "0"));
+        assertEquals("-42", write("long", "-42"));
+        assertEquals("9223372036854775807", write("long", "9223372036854775807"));
+        assertEquals("-9223372036854775808", write("long", "-9223372036854775808"));
+        assertEquals("\"9223372036854775808\"", write("long", "9223372036854775808"));
+        assertEquals("\"-\"", write("long", "-"));
+        assertEquals("\"1.5\"", write("long", "1.5"));
+        assertEquals("null", write("long", ""));
+    }
+
+    @Test
+    public void testOther_types() throws IOException {
+        assertEquals("0.25", write("double", "0.25"));
+        assertEquals("-1.0E10", write("double", "-1e10"));
+        assertEquals("\"1e999\"", write("double", "1e999"));
+        assertEquals("\"NaN\"", write("double", "NaN"));
+        assertEquals("true", write("boolean", "true"));
+        assertEquals("\"TRUE\"", write("boolean", "TRUE"));
+        assertEquals("1476799445000", write("epoch", "1476799445"));
+        assertEquals("1476799445120", write("epoch", "1476799445.12"));
+        assertEquals("1476799445123", write("epoch", "1476799445.1239"));
+        assertEquals("\"1476799445.x\"", write("epoch", "1476799445.x"));
+        assertEquals("1792299845000", write("timestamp", "[18/Oct/2026:14:04:05 +0900]"));
+        assertEquals("\"2026-10-18T14:04:05.000+09:00\"", write("iso8601", "[18/Oct/2026:14:04:05 +0900]"));
+        assertEquals("\"18/Oct/2026\"", write("timestamp", "18/Oct/2026"));
+        assertEquals("null", write("iso8601", ""));
+        assertEquals("\"a\\\"b\"", write("string", "a\"b"));
+    }
+
+    private static int lookup(LTSVSchema schema, String label) {
+        final byte[] bytes = ("x" + label).getBytes(StandardCharsets.UTF_8);
+        return schema.lookup(bytes, 1, bytes.length - 1);
+    }
+
+    private static String write(String type, String value) throws IOException {
+        final LTSVSchema schema = LTSVSchema.parse(null, null, "v:" + type);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            schema.writeValue(generator, lookup(schema, "v"), bytes, 0, bytes.length, new TimestampParser());
+        }
+        return out.toString("UTF-8");
+    }
+}
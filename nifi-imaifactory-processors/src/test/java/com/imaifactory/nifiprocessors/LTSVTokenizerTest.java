@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import am.ik.ltsv4j.LTSV;
+import am.ik.ltsv4j.LTSVParser;
+import com.fasterxml.jackson.core.JsonFactory;
+import org.apache.nifi.processor.exception.ProcessException;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class LTSVTokenizerTest {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final LTSVParser ltsvParser = LTSV.parser();
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    @Test
+    public void testGolden_single_line() throws IOException {
+        assertSameAsLtsv4j("host:127.0.0.1\tident:-\tuser:frank\ttime:[10/Oct/2000:13:55:36 -0700]\treq:GET /apache_pb.gif HTTP/1.0\tstatus:200\tsize:2326");
+    }
+
+    @Test
+    public void testGolden_line_endings() throws IOException {
+        assertSameAsLtsv4j("a:1\nb:2\n");
+        assertSameAsLtsv4j("a:1\r\nb:2\r\n");
+        assertSameAsLtsv4j("a:1\rb:2\r");
+        assertSameAsLtsv4j("a:1\r\n\r\nb:2");
+    }
+
+    @Test
+    public void testGolden_empty_lines_and_fields() throws IOException {
+        assertSameAsLtsv4j("");
+        assertSameAsLtsv4j("\n");
+        assertSameAsLtsv4j("\n\na:1\n\n");
+        assertSameAsLtsv4j("\ta:1\t\t\tb:2\t");
+        assertSameAsLtsv4j("a:\t:b\t:");
+    }
+
+    @Test
+    public void testGolden_separators_in_values() throws IOException {
+        assertSameAsLtsv4j("url:http://example.com:8080/path\ttime:10:20:30");
+    }
+
+    @Test
+    public void testGolden_repeated_labels() throws IOException {
+        assertSameAsLtsv4j("a:1\tb:2\ta:3\tc:4\tb:5");
+    }
+
+    @Test
+    public void testGolden_many_repeated_labels() throws IOException {
+        final StringBuilder ltsv = new StringBuilder();
+        for (int line = 0; line < 3; line++) {
+            for (int field = 0; field < 200; field++) {
+                ltsv.append("key").append(field % 70).append(':').append(line).append('-').append(field).append('\t');
+            }
+            ltsv.append('\n');
+        }
+        assertSameAsLtsv4j(ltsv.toString());
+    }
+
+    @Test
+    public void testGolden_escaping() throws IOException {
+        assertSameAsLtsv4j("q:say \"hi\"\tbs:C:\\temp\\\tctl:\u0001\u0008\u000c\u001f\tslash:/a/b");
+    }
+
+    @Test
+    public void testGolden_non_ascii() throws IOException {
+        assertSameAsLtsv4j("name:\u4eca\u4e95\tcity:M\u00fcnchen");
+    }
+
+    @Test
+    public void testSupplementary_characters() throws IOException {
+        // ltsv4j's Jackson 1 output escapes surrogate pairs while the tokenizer
+        // passes the 4-byte UTF-8 sequence through; both decode to the same value.
+        final String ltsv = "emoji:\ud83d\ude00\tname:\u4eca\u4e95";
+        assertEquals(ltsvParser.parseLines(new InputStreamReader(
+                        new ByteArrayInputStream(ltsv.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8)),
+                objectMapper.readValue(convert(ltsv, LTSVTokenizer.DEFAULT_BUFFER_SIZE), List.class));
+    }
+
+    @Test
+    public void testGolden_lines_longer_than_buffer() throws IOException {
+        final StringBuilder ltsv = new StringBuilder();
+        for (int line = 0; line < 50; line++) {
+            for (int field = 0; field < 40; field++) {
+                ltsv.append("key").append(field).append(':').append("value-").append(line).append('-').append(field).append('\t');
+            }
+            ltsv.append(line % 2 == 0 ? "\n" : "\r\n");
+        }
+        assertSameAsLtsv4j(ltsv.toString());
+    }
+
+    @Test
+    public void testInvalid_line() throws IOException {
+        final LTSVTokenizer tokenizer = new LTSVTokenizer(new ByteArrayInputStream("a:1\nb:2\tnolabel\nc:3".getBytes(StandardCharsets.UTF_8)));
+        assertTrue(tokenizer.nextLine());
+        assertTrue(tokenizer.isValid());
+        assertTrue(tokenizer.nextLine());
+        assertFalse(tokenizer.isValid());
+        assertEquals(2, tokenizer.getLineNumber());
+        assertTrue(tokenizer.nextLine());
+        assertTrue(tokenizer.isValid());
+        assertFalse(tokenizer.nextLine());
+
+        try {
+            convert("a:1\nb:2\tnolabel\nc:3", LTSVTokenizer.DEFAULT_BUFFER_SIZE);
+            fail("Invalid line should not be converted");
+        } catch (ProcessException e) {
+            assertTrue(e.getMessage().contains("Line 2"));
+        }
+    }
+
+    @Test
+    public void testInclude_fields_with_types() throws IOException {
+        final LTSVSchema schema = LTSVSchema.parse("status,host,size,msec", null, "status:long,size:long,msec:epoch");
+        assertEquals("[{\"host\":\"127.0.0.1\",\"status\":200,\"size\":\"-\",\"msec\":1476799445123}]",
+                convert("host:127.0.0.1\treq:GET /\tstatus:200\tua:x\tsize:-\tmsec:1476799445.123", schema));
+        // Skipped fields are still checked for a label separator.
+        try {
+            convert("host:127.0.0.1\tnolabel", schema);
+            fail("Invalid line should not be converted");
+        } catch (ProcessException e) {
+            assertTrue(e.getMessage().contains("Line 1"));
+        }
+    }
+
+    @Test
+    public void testExclude_fields_and_repeated_labels() throws IOException {
+        final LTSVSchema schema = LTSVSchema.parse(null, "ua,req", "ok:boolean");
+        assertEquals("[{\"host\":\"b\",\"ok\":false},{\"ok\":null,\"x\":\"1\"}]",
+                convert("host:a\tua:x\tok:true\thost:b\tok:false\treq:y\nok:\tx:1", schema));
+    }
+
+    @Test
+    public void testRepeated_labels_in_and_out_of_the_schema() throws IOException {
+        final LTSVSchema schema = LTSVSchema.parse(null, "ua", "size:long");
+        assertEquals("[{\"size\":3,\"host\":\"c\",\"req\":\"z\"},{\"host\":\"d\",\"size\":4}]",
+                convert("size:1\thost:a\tsize:2\treq:y\thost:b\tua:x\tsize:3\thost:c\treq:z\nhost:d\tsize:4", schema));
+    }
+
+    private static void assertSameAsLtsv4j(String ltsv) throws IOException {
+        final byte[] content = ltsv.getBytes(StandardCharsets.UTF_8);
+        final String expected = new String(objectMapper.writeValueAsBytes(
+                ltsvParser.parseLines(new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8))),
+                StandardCharsets.UTF_8);
+        assertEquals(expected, convert(ltsv, LTSVTokenizer.DEFAULT_BUFFER_SIZE));
+        assertEquals(expected, convert(ltsv, 16));
+    }
+
+    private static String convert(String ltsv, LTSVSchema schema) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final LTSVTokenizer tokenizer = new LTSVTokenizer(new ByteArrayInputStream(ltsv.getBytes(StandardCharsets.UTF_8)),
+                LTSVTokenizer.DEFAULT_BUFFER_SIZE, schema);
+        ConvertLTSVToJSON.writeRecords(tokenizer, jsonFactory.createGenerator(out));
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String convert(String ltsv, int bufferSize) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final LTSVTokenizer tokenizer = new LTSVTokenizer(new ByteArrayInputStream(ltsv.getBytes(StandardCharsets.UTF_8)), bufferSize);
+        ConvertLTSVToJSON.writeRecords(tokenizer, jsonFactory.createGenerator(out));
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class LatencyCountersTest {
+
+    @Test
+    public void testBuckets_are_decades() {
+        final LatencyCounters counters = new LatencyCounters("Convert");
+        assertEquals("Convert time < 1 us", counters.getBucketName(LatencyCounters.bucket(0)));
+        assertEquals("Convert time < 1 us", counters.getBucketName(LatencyCounters.bucket(999)));
+        assertEquals("Convert time < 10 us", counters.getBucketName(LatencyCounters.bucket(1000)));
+        assertEquals("Convert time < 1 ms", counters.getBucketName(LatencyCounters.bucket(999999)));
+        assertEquals("Convert time < 10 ms", counters.getBucketName(LatencyCounters.bucket(1000000)));
+        assertEquals("Convert time < 10 s", counters.getBucketName(LatencyCounters.bucket(9999999999L)));
+        assertEquals("Convert time >= 10 s", counters.getBucketName(LatencyCounters.bucket(10000000000L)));
+        assertEquals("Convert time >= 10 s", counters.getBucketName(LatencyCounters.bucket(Long.MAX_VALUE)));
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class MultiPatternMatcherTest {
+
+    private static final String[] REGEXES = {
+            "^(?<host>\\S+) - - \\[(?<time>[^\\]]+)\\] \"(?<req>[^\"]*)\" (?<status>\\d{3})",
+            "GET (?<path>/\\S*)",
+            "^ERROR: (?<message>.*)$",
+            "(?<level>WARN|INFO)\\s+(?<message>.+)",
+            "user=(?<user>\\w+)s?x",
+            "a\\.b+c{2}(?<rest>.*)",
+            "(?i)error (?<code>\\d+)",
+            "\\Qliteral(\\E(?<v>\\d)",
+            "\\x41\\u0042(?<v>C)",
+            "(?<v>x)y*?z",
+    };
+
+    private static final String[] LINES = {
+            "127.0.0.1 - - [10/Oct/2000:13:55:36 -0700] \"GET /a HTTP/1.0\" 200 2326",
+            "GET /index.html",
+            "POST /index.html",
+            "ERROR: disk full",
+            "an ERROR: disk full",
+            "WARN  low memory",
+            "INFO started",
+            "user=alice x",
+            "user=alicex",
+            "user=alicesx",
+            "a.bbbcc rest",
+            "a.bcc",
+            "a.b",
+            "Error 42",
+            "literal(7",
+            "ABC",
+            "xz",
+            "xyyyz",
+            "",
+    };
+
+    @Test
+    public void testPrefilter_never_rejects_a_match() {
+        for (String regex : REGEXES) {
+            final NamedGroupPattern pattern = NamedGroupPattern.compile(regex);
+            for (String line : LINES) {
+                if (pattern.getPattern().matcher(line).find()) {
+                    assertTrue(regex + " rejected " + line, pattern.mayMatch(line));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRequired_literals() {
+        assertEquals(" - - [", NamedGroupPattern.compile(REGEXES[0]).getRequiredLiteral());
+        assertEquals("GET ", NamedGroupPattern.compile(REGEXES[1]).getRequiredLiteral());
+        assertEquals("ERROR: ", NamedGroupPattern.compile(REGEXES[2]).getRequiredLiteral());
+        assertEquals("user=", NamedGroupPattern.compile(REGEXES[4]).getRequiredLiteral());
+        assertNull(NamedGroupPattern.compile(REGEXES[6]).getRequiredLiteral());
+        assertNull(NamedGroupPattern.compile("(?<a>x)|(?<b>y)").getRequiredLiteral());
+
+        assertTrue(NamedGroupPattern.compile(REGEXES[2]).mayMatch("ERROR: x"));
+        assertFalse(NamedGroupPattern.compile(REGEXES[2]).mayMatch("an ERROR: x"));
+    }
+
+    @Test
+    public void testFirst_matching_pattern_is_reported() {
+        final MultiPatternMatcher matcher = new MultiPatternMatcher(new NamedGroupPattern[]{
+                NamedGroupPattern.compile("a", "^(?<x>a+)$", false),
+                NamedGroupPattern.compile("b", "^(?<y>b+)$", false),
+        });
+        assertEquals(0, matcher.find("aaa"));
+        assertEquals(3, matcher.getMatcher(0).end(1));
+        assertEquals(1, matcher.find("bb"));
+        assertEquals(2, matcher.getMatcher(1).end(1));
+        assertEquals(-1, matcher.find("ab"));
+    }
+
+    @Test
+    public void testOrder_follows_hit_rate() {
+        final MultiPatternMatcher matcher = new MultiPatternMatcher(new NamedGroupPattern[]{
+                NamedGroupPattern.compile("a", "^(?<x>a+)$", false),
+                NamedGroupPattern.compile("b", "^(?<y>b+)$", false),
+                NamedGroupPattern.compile("c", "^(?<z>c+)$", false),
+        });
+        assertEquals(0, matcher.getOrder()[0]);
+        for (int i = 0; i < MultiPatternMatcher.REORDER_INTERVAL; i++) {
+            matcher.find(i % 10 == 0 ? "b" : "c");
+        }
+        assertEquals(2, matcher.getOrder()[0]);
+        assertEquals(1, matcher.getOrder()[1]);
+        assertEquals(0, matcher.getOrder()[2]);
+
+        final MultiPatternMatcher next = new MultiPatternMatcher(new NamedGroupPattern[]{
+                NamedGroupPattern.compile("a", "^(?<x>a+)$", false),
+                NamedGroupPattern.compile("b", "^(?<y>b+)$", false),
+                NamedGroupPattern.compile("c", "^(?<z>c+)$", false),
+        }, matcher.getOrder(), 0);
+        assertEquals(2, next.getOrder()[0]);
+    }
+
+    @Test
+    public void testLinear_time_engine_reports_the_same_groups() {
+        for (String regex : REGEXES) {
+            final GroupMatcher java = NamedGroupPattern.compile(null, regex, false).newMatcher();
+            final NamedGroupPattern linear;
+            try {
+                linear = NamedGroupPattern.compile(null, regex, true);
+            } catch (RuntimeException e) {
+                // Java-only syntax such as Unicode escapes
+                continue;
+            }
+            final GroupMatcher re2 = linear.newMatcher();
+            for (String line : LINES) {
+                assertEquals(regex + " on " + line, java.find(line), re2.find(line));
+                if (re2.find(line) && java.find(line)) {
+                    for (int i = 0; i < linear.getGroupCount(); i++) {
+                        final int group = linear.getGroup(i);
+                        assertEquals(regex + " on " + line, java.start(group), re2.start(group));
+                        assertEquals(regex + " on " + line, java.end(group), re2.end(group));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testStep_budget_stops_catastrophic_backtracking() {
+        final StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            line.append('a');
+        }
+        line.append('c');
+        final MultiPatternMatcher matcher = new MultiPatternMatcher(new NamedGroupPattern[]{
+                NamedGroupPattern.compile("a", "(?<x>a+)+b", false),
+        }, null, 10000);
+        try {
+            matcher.find(line);
+            fail("budget was not enforced");
+        } catch (BudgetedCharSequence.BudgetExceededException expected) {
+            // the line is abandoned
+        }
+        assertEquals(0, matcher.find("aaab"));
+        assertEquals(3, matcher.getMatcher(0).end(1));
+    }
+
+    @Test
+    public void testLinear_time_engine_fits_in_a_small_budget() {
+        final StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            line.append('a');
+        }
+        line.append('c');
+        final MultiPatternMatcher matcher = new MultiPatternMatcher(new NamedGroupPattern[]{
+                NamedGroupPattern.compile("a", "(?<x>a+)+b", true),
+        }, null, 10000);
+        assertEquals(-1, matcher.find(line));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testLinear_time_engine_rejects_back_references() {
+        NamedGroupPattern.compile("a", "(?<x>a)\\1", true);
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import org.junit.Test;
+
+import java.util.regex.Matcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class NamedGroupPatternTest {
+
+    @Test
+    public void testGroup_numbers_match_group_names() {
+        final String regex = "^(\\S+) \\((?:x|y)\\) [(](?<host>[^ ]+)\\\\(?<=\\\\)(?<ident>\\S+) \\Q(?<fake>)\\E(?<time>\\[[^]]*\\]) (\"(?<req>[^\"]*)\")$";
+        final NamedGroupPattern pattern = NamedGroupPattern.compile(regex);
+        final Matcher matcher = pattern.getPattern().matcher("a (x) (h1\\frank (?<fake>)[10/Oct/2000:13:55:36 -0700] \"GET / HTTP/1.0\"");
+        assertTrue(matcher.matches());
+
+        assertEquals(4, pattern.getGroupCount());
+        final String[] names = {"host", "ident", "time", "req"};
+        for (int i = 0; i < names.length; i++) {
+            assertEquals(names[i], pattern.getName(i));
+            assertEquals(matcher.group(names[i]), matcher.group(pattern.getGroup(i)));
+        }
+    }
+
+    @Test
+    public void testNo_named_groups() {
+        assertEquals(0, NamedGroupPattern.compile("(a)(?:b)(?=c)").getGroupCount());
+    }
+}
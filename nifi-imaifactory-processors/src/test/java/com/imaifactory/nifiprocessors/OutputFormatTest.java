@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class OutputFormatTest {
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private static final String LTSV = "host:127.0.0.1\treq:GET / HTTP/1.1\nhost:あ\tsize:\n";
+
+    @Test
+    public void testEvery_format_holds_the_same_records() throws IOException {
+        final String json = "[{\"host\":\"127.0.0.1\",\"req\":\"GET / HTTP/1.1\"},{\"host\":\"あ\",\"size\":\"\"}]";
+        for (OutputFormat format : OutputFormat.values()) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(2, ConvertLTSVToJSON.writeRecords(new LTSVTokenizer(new ByteArrayInputStream(LTSV.getBytes(StandardCharsets.UTF_8))),
+                    format.createGenerator(out), null, format.isRootArray()));
+            final String expected = format.isRootArray() ? json
+                    : json.substring(1, json.length() - 1).replace("},{", "} {");
+            assertEquals(format.name(), expected, toJson(format, out.toByteArray()));
+        }
+    }
+
+    @Test
+    public void testMessagepack_flushes_the_stream_once() throws IOException {
+        final int[] flushes = new int[1];
+        final ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void flush() {
+                flushes[0]++;
+            }
+        };
+        assertEquals(2, ConvertLTSVToJSON.writeRecords(new LTSVTokenizer(new ByteArrayInputStream(LTSV.getBytes(StandardCharsets.UTF_8))),
+                OutputFormat.MESSAGEPACK.createGenerator(out), null, false));
+        assertEquals(1, flushes[0]);
+        assertEquals("{\"host\":\"127.0.0.1\",\"req\":\"GET / HTTP/1.1\"} {\"host\":\"あ\",\"size\":\"\"}",
+                toJson(OutputFormat.MESSAGEPACK, out.toByteArray()));
+    }
+
+    @Test
+    public void testFor_value() {
+        assertEquals(OutputFormat.JSON, OutputFormat.forValue(OutputFormat.PROPERTY.getDefaultValue()));
+        assertEquals(OutputFormat.SMILE, OutputFormat.forValue("Smile"));
+        assertEquals(OutputFormat.MESSAGEPACK, OutputFormat.forValue("MessagePack"));
+        assertEquals("application/x-msgpack", OutputFormat.MESSAGEPACK.getMimeType());
+    }
+
+    /**
+     * @return the root values of {@code content} as JSON, separated by a space
+     */
+    static String toJson(OutputFormat format, byte[] content) throws IOException {
+        final ByteArrayOutputStream json = new ByteArrayOutputStream();
+        try (JsonParser parser = format.getFactory().createParser(content);
+             JsonGenerator generator = jsonFactory.createGenerator(json)) {
+            while (parser.nextToken() != null) {
+                generator.copyCurrentStructure(parser);
+            }
+        }
+        return json.toString("UTF-8");
+    }
+}
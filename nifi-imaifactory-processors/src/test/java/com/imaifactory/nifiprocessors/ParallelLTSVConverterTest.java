@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.apache.nifi.processor.exception.ProcessException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+
+public class ParallelLTSVConverterTest {
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private ForkJoinPool pool;
+
+    @Before
+    public void init() {
+        pool = new ForkJoinPool(3);
+    }
+
+    @After
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void testSame_output_as_single_threaded() throws IOException {
+        assertSameAsSingleThreaded("", 8);
+        assertSameAsSingleThreaded("a:1", 8);
+        assertSameAsSingleThreaded("a:1\nb:2\n", 4);
+        assertSameAsSingleThreaded("a:1\r\n\r\nb:2\r\nc:3", 5);
+        assertSameAsSingleThreaded("a:1\rb:2\rc:3\r", 4);
+        assertSameAsSingleThreaded("\n\n\n", 1);
+        assertSameAsSingleThreaded("long:" + repeat('x', 100) + "\nshort:1\n", 8);
+    }
+
+    @Test
+    public void testSame_output_for_random_content() throws IOException {
+        final Random random = new Random(42);
+        final String[] labels = {"host", "time", "req", "status", "ua", "hé"};
+        final String[] values = {"", "127.0.0.1", "GET / HTTP/1.1", "a\"b\\c", "あい", "x:y", "200"};
+        final String[] breaks = {"\n", "\r\n", "\r", "\n\n"};
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            final int fields = random.nextInt(5);
+            for (int j = 0; j < fields; j++) {
+                if (j > 0) {
+                    content.append('\t');
+                }
+                content.append(labels[random.nextInt(labels.length)]).append(':').append(values[random.nextInt(values.length)]);
+            }
+            content.append(breaks[random.nextInt(breaks.length)]);
+        }
+        for (int chunkSize : new int[]{1, 7, 64, 1024, 1 << 20}) {
+            assertSameAsSingleThreaded(content.toString(), chunkSize);
+        }
+    }
+
+    @Test
+    public void testInvalid_line_is_numbered_across_chunks() throws IOException {
+        try {
+            convert("a:1\nb:2\nc:3\r\nbroken\nd:4\n", 4);
+            fail("invalid line was accepted");
+        } catch (ProcessException e) {
+            assertEquals("Line 4 has a field without a label separator", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testInvalid_lines_are_collected_in_order_across_chunks() throws IOException {
+        final String content = "a:1\nbroken\nb:2\r\nc:3\r\nalso broken\r\nd:4\n\tx";
+        for (int chunkSize : new int[]{1, 4, 16, 1024}) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final ByteArrayOutputStream invalidOut = new ByteArrayOutputStream();
+            final InvalidLines invalid = new InvalidLines(invalidOut, 10);
+            assertEquals(4, new ParallelLTSVConverter(jsonFactory, pool, chunkSize)
+                    .convert(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), out, invalid));
+            assertEquals("[{\"a\":\"1\"},{\"b\":\"2\"},{\"c\":\"3\"},{\"d\":\"4\"}]", out.toString("UTF-8"));
+            assertEquals("2\tbroken\n5\talso broken\n7\t\tx\n", invalidOut.toString("UTF-8"));
+            assertEquals(3, invalid.getCount());
+        }
+    }
+
+    @Test
+    public void testToo_many_invalid_lines() throws IOException {
+        try {
+            new ParallelLTSVConverter(jsonFactory, pool, 4).convert(
+                    new ByteArrayInputStream("a:1\nx\nb:2\ny\n".getBytes(StandardCharsets.UTF_8)),
+                    new ByteArrayOutputStream(), new InvalidLines(new ByteArrayOutputStream(), 1));
+            fail("too many invalid lines were accepted");
+        } catch (ProcessException e) {
+            assertEquals("More than 1 invalid lines, the last at line 4", e.getMessage());
+        }
+    }
+
+    private void assertSameAsSingleThreaded(String content, int chunkSize) throws IOException {
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        ConvertLTSVToJSON.writeRecords(new LTSVTokenizer(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8))),
+                jsonFactory.createGenerator(expected));
+        assertEquals(expected.toString("UTF-8"), convert(content, chunkSize));
+    }
+
+    @Test
+    public void testRecord_count() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(4, new ParallelLTSVConverter(jsonFactory, pool, 4)
+                .convert(new ByteArrayInputStream("a:1\nb:2\r\n\nc:3".getBytes(StandardCharsets.UTF_8)), out));
+    }
+
+    private String convert(String content, int chunkSize) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ParallelLTSVConverter(jsonFactory, pool, chunkSize)
+                .convert(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), out);
+        return out.toString("UTF-8");
+    }
+
+    private static String repeat(char c, int count) {
+        final StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.nifi.util.TestRunner;
+import org.apache.nifi.util.TestRunners;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+
+/**
+ * End-to-end load tests, run only by the {@code soak} profile:
+ * {@code mvn test -Psoak -Dsoak.totalBytes=4294967296}. See {@link SoakHarness}
+ * for the budgets.
+ */
+public class ProcessorSoakTest {
+
+    private static final String[] METHODS = {"GET", "POST", "PUT", "DELETE"};
+    private static final String[] STATUSES = {"200", "200", "200", "304", "404", "500"};
+
+    @Test
+    public void testConvertLTSVToJSON() {
+        final TestRunner testRunner = TestRunners.newTestRunner(ConvertLTSVToJSON.class);
+        final int size = SoakHarness.flowFileBytes();
+        new SoakHarness("ConvertLTSVToJSON", testRunner, ConvertLTSVToJSON.REL_SUCCESS)
+                .run(new SoakHarness.Source() {
+                    @Override
+                    public byte[] content(int index) {
+                        return ltsv(index, size);
+                    }
+
+                    @Override
+                    public Map<String, String> attributes(int index) {
+                        return Collections.emptyMap();
+                    }
+                }, SoakHarness.totalBytes() / size, 1)
+                .report();
+    }
+
+    @Test
+    public void testConvertToJSONWithRegex() {
+        final TestRunner testRunner = TestRunners.newTestRunner(ConvertToJSONWithRegex.class);
+        testRunner.setProperty("access", "^(?<host>\\S+) - - \\[(?<time>[^\\]]+)\\] \"(?<req>[^\"]*)\" (?<status>\\d{3}) (?<size>\\d+)$");
+        testRunner.setProperty("error", "^(?<date>\\S+ \\S+) ERROR (?<message>.*)$");
+        final int size = SoakHarness.flowFileBytes();
+        new SoakHarness("ConvertToJSONWithRegex", testRunner, ConvertToJSONWithRegex.REL_SUCCESS)
+                .run(new SoakHarness.Source() {
+                    @Override
+                    public byte[] content(int index) {
+                        return accessLog(index, size);
+                    }
+
+                    @Override
+                    public Map<String, String> attributes(int index) {
+                        return Collections.emptyMap();
+                    }
+                }, SoakHarness.totalBytes() / size, 1)
+                .report();
+    }
+
+    @Test
+    public void testVerifySoracomSignature() {
+        final TestRunner testRunner = TestRunners.newTestRunner(VerifySoracomSignature.class);
+        testRunner.setProperty(VerifySoracomSignature.SECRET, "topsecret");
+        testRunner.setProperty(VerifySoracomSignature.BATCH_SIZE, "1000");
+        testRunner.setProperty(VerifySoracomSignature.BATCH_DURATION, "10 s");
+        final byte[] payload = "{\"temperature\":21.5}".getBytes(StandardCharsets.UTF_8);
+        new SoakHarness("VerifySoracomSignature", testRunner, VerifySoracomSignature.REL_SUCCESS)
+                .run(new SoakHarness.Source() {
+                    @Override
+                    public byte[] content(int index) {
+                        return payload;
+                    }
+
+                    @Override
+                    public Map<String, String> attributes(int index) {
+                        final String imsi = String.valueOf(440100000000000L + index % 100000);
+                        final String timestamp = String.valueOf(1494631852102L + index);
+                        final Map<String, String> attributes = new HashMap<>();
+                        attributes.put("http.headers.x-soracom-signature", DigestUtils.sha256Hex(
+                                "topsecret" + "x-soracom-imsi=" + imsi + "x-soracom-timestamp=" + timestamp));
+                        attributes.put("http.headers.x-soracom-signature-version", "20151001");
+                        attributes.put("http.headers.x-soracom-timestamp", timestamp);
+                        attributes.put("http.headers.x-soracom-imsi", imsi);
+                        return attributes;
+                    }
+                }, Long.getLong("soak.soracomRequests", 200000), 1000)
+                .report();
+    }
+
+    private static byte[] ltsv(int seed, int size) {
+        final Random random = new Random(seed);
+        final StringBuilder content = new StringBuilder(size + 256);
+        while (content.length() < size) {
+            content.append("host:10.0.").append(random.nextInt(256)).append('.').append(random.nextInt(256))
+                    .append("\ttime:[10/Oct/2000:13:55:36 -0700]\treq:")
+                    .append(METHODS[random.nextInt(METHODS.length)]).append(" /item/").append(random.nextInt(100000))
+                    .append(" HTTP/1.1\tstatus:").append(STATUSES[random.nextInt(STATUSES.length)])
+                    .append("\tsize:").append(random.nextInt(10000)).append('\n');
+        }
+        return content.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] accessLog(int seed, int size) {
+        final Random random = new Random(seed);
+        final StringBuilder content = new StringBuilder(size + 256);
+        while (content.length() < size) {
+            if (random.nextInt(10) == 0) {
+                content.append("2000-10-10 13:55:36 ERROR request ").append(random.nextInt(100000)).append(" failed");
+            } else {
+                content.append("10.0.").append(random.nextInt(256)).append('.').append(random.nextInt(256))
+                        .append(" - - [10/Oct/2000:13:55:36 -0700] \"")
+                        .append(METHODS[random.nextInt(METHODS.length)]).append(" /item/").append(random.nextInt(100000))
+                        .append(" HTTP/1.1\" ").append(STATUSES[random.nextInt(STATUSES.length)])
+                        .append(' ').append(random.nextInt(10000));
+            }
+            content.append('\n');
+        }
+        return content.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
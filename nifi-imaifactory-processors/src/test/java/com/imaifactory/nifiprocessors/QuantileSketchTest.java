@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class QuantileSketchTest {
+
+    @Test
+    public void testQuantiles_are_within_relative_accuracy() {
+        final Random random = new Random(42);
+        final double[] values = new double[100000];
+        final QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < values.length; i++) {
+            // Log-normal, like request times.
+            values[i] = Math.exp(random.nextGaussian() * 2);
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+        assertEquals(values.length, sketch.getCount());
+        for (double quantile : new double[]{0, 0.01, 0.5, 0.9, 0.99, 0.999, 1}) {
+            final double expected = values[(int) (quantile * (values.length - 1))];
+            final double actual = sketch.getQuantile(quantile);
+            assertTrue(quantile + ": " + actual + " vs " + expected,
+                    Math.abs(actual - expected) <= expected * QuantileSketch.RELATIVE_ACCURACY * 1.0001);
+        }
+    }
+
+    @Test
+    public void testZero_and_negative_values() {
+        final QuantileSketch sketch = new QuantileSketch();
+        assertTrue(Double.isNaN(sketch.getQuantile(0.5)));
+        sketch.add(0);
+        sketch.add(-5);
+        sketch.add(100);
+        assertEquals(0, sketch.getQuantile(0.5), 0);
+        assertEquals(100, sketch.getQuantile(1), 100 * QuantileSketch.RELATIVE_ACCURACY);
+    }
+
+    @Test
+    public void testWide_range_collapses_low_buckets() {
+        final QuantileSketch sketch = new QuantileSketch();
+        for (int exponent = -9; exponent <= 12; exponent++) {
+            for (int i = 0; i < 10; i++) {
+                sketch.add(Math.pow(10, exponent));
+            }
+        }
+        // The top of the range keeps its accuracy.
+        assertEquals(1e12, sketch.getQuantile(1), 1e12 * QuantileSketch.RELATIVE_ACCURACY);
+        assertEquals(1e11, sketch.getQuantile(0.93), 1e11 * QuantileSketch.RELATIVE_ACCURACY);
+        assertTrue(sketch.getQuantile(0) <= sketch.getQuantile(0.5));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import org.apache.nifi.serialization.record.Record;
+import org.apache.nifi.serialization.record.RecordFieldType;
+import org.apache.nifi.serialization.record.RecordSchema;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+
+public class RegexRecordReaderTest {
+
+    private static final NamedGroupPattern[] PATTERNS = {
+            NamedGroupPattern.compile("access", "^(?<host>\\S+) \"(?<req>[^\"]*)\" (?<status>\\d{3})", false),
+            NamedGroupPattern.compile("error", "^ERROR: (?<message>.*)$", false),
+    };
+
+    @Test
+    public void testSchemaIsUnionOfGroups() {
+        final RecordSchema schema = RegexRecordReader.createSchema(PATTERNS, "pattern");
+        assertEquals(Arrays.asList("pattern", "host", "req", "status", "message"), schema.getFieldNames());
+        assertEquals(RecordFieldType.STRING, schema.getField("status").get().getDataType().getFieldType());
+        assertEquals(Arrays.asList("host", "req", "status", "message"),
+                RegexRecordReader.createSchema(PATTERNS, null).getFieldNames());
+    }
+
+    @Test
+    public void testMatchingLinesAreRecords() throws IOException {
+        final RegexRecordReader reader = reader("10.0.0.1 \"GET /\" 200\nnoise\nERROR: disk full\n\n", 0);
+
+        final Record access = reader.nextRecord(true, false);
+        assertEquals("access", access.getValue("pattern"));
+        assertEquals("10.0.0.1", access.getValue("host"));
+        assertEquals("GET /", access.getValue("req"));
+        assertEquals("200", access.getValue("status"));
+        assertNull(access.getValue("message"));
+
+        final Record error = reader.nextRecord(true, false);
+        assertEquals("error", error.getValue("pattern"));
+        assertEquals("disk full", error.getValue("message"));
+
+        assertNull(reader.nextRecord(true, false));
+        assertEquals(2, reader.getSkippedCount());
+    }
+
+    @Test
+    public void testStepBudgetSkipsLine() throws IOException {
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            content.append('x');
+        }
+        content.append("\nERROR: x\n");
+        final RegexRecordReader reader = reader(content.toString(), 100);
+        assertEquals("x", reader.nextRecord(true, false).getValue("message"));
+        assertEquals(1, reader.getSkippedCount());
+    }
+
+    private static RegexRecordReader reader(String content, long maxMatchSteps) {
+        return new RegexRecordReader(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), PATTERNS,
+                "pattern", maxMatchSteps, RegexRecordReader.createSchema(PATTERNS, "pattern"));
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class ReplayCacheTest {
+
+    private static final String IMSI = "440103114938318";
+
+    @Test
+    public void testAdded_triple_is_a_replay() {
+        final ReplayCache cache = new ReplayCache(100, 60000);
+        final String signature = DigestUtils.sha256Hex("a");
+        assertFalse(cache.contains(IMSI, 1000, signature));
+        assertTrue(cache.add(IMSI, 1000, signature, 1000));
+        assertTrue(cache.contains(IMSI, 1000, signature));
+        assertTrue(cache.contains(IMSI, 1000, signature.toUpperCase()));
+        assertFalse(cache.add(IMSI, 1000, signature, 1000));
+
+        assertFalse(cache.contains("440103114938319", 1000, signature));
+        assertFalse(cache.contains(IMSI, 1001, signature));
+        assertFalse(cache.contains(IMSI, 1000, DigestUtils.sha256Hex("b")));
+        assertFalse(cache.contains(IMSI, 1000, "INVALID_SIGNATURE"));
+    }
+
+    @Test
+    public void testSize_is_bounded() {
+        final ReplayCache cache = new ReplayCache(160, Long.MAX_VALUE / 2);
+        for (int i = 0; i < 100000; i++) {
+            cache.add(IMSI, i, DigestUtils.sha256Hex(String.valueOf(i)), i);
+        }
+        assertTrue(String.valueOf(cache.size()), cache.size() <= 160);
+        assertTrue(cache.contains(IMSI, 99999, DigestUtils.sha256Hex("99999")));
+        assertFalse(cache.contains(IMSI, 0, DigestUtils.sha256Hex("0")));
+    }
+
+    @Test
+    public void testEntries_expire_with_the_window() {
+        final ReplayCache cache = new ReplayCache(100000, 1000);
+        for (int i = 0; i < 1000; i++) {
+            cache.add(IMSI, i, DigestUtils.sha256Hex(String.valueOf(i)), i);
+        }
+        for (int i = 10000; i < 10100; i++) {
+            cache.add(IMSI, i, DigestUtils.sha256Hex(String.valueOf(i)), i);
+        }
+        assertTrue(String.valueOf(cache.size()), cache.size() < 200);
+    }
+}
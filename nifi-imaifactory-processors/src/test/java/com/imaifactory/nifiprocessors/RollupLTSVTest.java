@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+import org.apache.nifi.util.MockFlowFile;
+import org.apache.nifi.util.TestRunner;
+import org.apache.nifi.util.TestRunners;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class RollupLTSVTest {
+
+    private static final String LOG = ""
+            + "time:1500000000\tstatus:200\treqtime:0.1\tua:curl\n"
+            + "time:1500000001\tstatus:200\treqtime:0.3\tua:curl\n"
+            + "time:1500000002\tstatus:404\treqtime:0.2\tua:wget\n"
+            + "time:1500000060\tstatus:200\treqtime:0.2\tua:curl\n"
+            + "status:200\n"
+            + "broken\n";
+
+    private TestRunner testRunner;
+
+    @Before
+    public void init() {
+        testRunner = TestRunners.newTestRunner(RollupLTSV.class);
+    }
+
+    @Test
+    public void testProcessor_rollup() {
+        testRunner.setProperty(RollupLTSV.GROUP_BY_FIELDS, "status");
+        testRunner.setProperty(RollupLTSV.TIME_FIELD, "time");
+        testRunner.setProperty(RollupLTSV.MEASURE_FIELDS, "reqtime");
+        testRunner.setProperty(RollupLTSV.DISTINCT_FIELDS, "ua");
+        testRunner.enqueue(LOG.getBytes());
+        testRunner.run();
+        testRunner.assertTransferCount(RollupLTSV.REL_SUCCESS, 1);
+        final MockFlowFile success = testRunner.getFlowFilesForRelationship(RollupLTSV.REL_SUCCESS).get(0);
+        success.assertContentEquals("["
+                + "{\"time\":1500000000000,\"status\":\"200\",\"count\":2,\"reqtime_sum\":0.4,\"reqtime_min\":0.1,\"reqtime_max\":0.3,\"ua_distinct\":1},"
+                + "{\"time\":1500000000000,\"status\":\"404\",\"count\":1,\"reqtime_sum\":0.2,\"reqtime_min\":0.2,\"reqtime_max\":0.2,\"ua_distinct\":1},"
+                + "{\"time\":1500000060000,\"status\":\"200\",\"count\":1,\"reqtime_sum\":0.2,\"reqtime_min\":0.2,\"reqtime_max\":0.2,\"ua_distinct\":1}]");
+        success.assertAttributeEquals(CoreAttributes.MIME_TYPE.key(), "application/json");
+        success.assertAttributeEquals(RollupLTSV.GROUP_COUNT_ATTRIBUTE, "3");
+        success.assertAttributeEquals(RollupLTSV.LINE_COUNT_ATTRIBUTE, "4");
+        success.assertAttributeEquals(RollupLTSV.SKIPPED_COUNT_ATTRIBUTE, "2");
+        success.assertAttributeEquals(RollupLTSV.OVERFLOW_COUNT_ATTRIBUTE, "0");
+    }
+
+    @Test
+    public void testProcessor_rollup_of_compressed_content_with_percentiles() throws IOException {
+        testRunner.setProperty(RollupLTSV.GROUP_BY_FIELDS, "status");
+        testRunner.setProperty(RollupLTSV.MEASURE_FIELDS, "reqtime");
+        testRunner.setProperty(RollupLTSV.PERCENTILES, "0,100");
+        testRunner.setProperty(RollupLTSV.MAX_GROUPS, "1");
+        testRunner.enqueue(CompressionTest.compress(Compression.GZIP, LOG.getBytes()));
+        testRunner.run();
+        testRunner.assertTransferCount(RollupLTSV.REL_SUCCESS, 1);
+        final MockFlowFile success = testRunner.getFlowFilesForRelationship(RollupLTSV.REL_SUCCESS).get(0);
+        success.assertContentEquals("[{\"status\":\"200\",\"count\":4,\"reqtime_sum\":0.6000000000000001,"
+                + "\"reqtime_min\":0.1,\"reqtime_max\":0.3,\"reqtime_p0\":0.1,\"reqtime_p100\":0.3}]");
+        success.assertAttributeEquals(RollupLTSV.OVERFLOW_COUNT_ATTRIBUTE, "1");
+    }
+
+    @Test
+    public void testProcessor_rollup_in_cbor() throws IOException {
+        testRunner.setProperty(RollupLTSV.GROUP_BY_FIELDS, "status,ua");
+        testRunner.setProperty(RollupLTSV.OUTPUT_FORMAT, "CBOR");
+        testRunner.enqueue(LOG.getBytes());
+        testRunner.run();
+        testRunner.assertTransferCount(RollupLTSV.REL_SUCCESS, 1);
+        final MockFlowFile success = testRunner.getFlowFilesForRelationship(RollupLTSV.REL_SUCCESS).get(0);
+        success.assertAttributeEquals(CoreAttributes.MIME_TYPE.key(), "application/cbor");
+        assertEquals("[{\"status\":\"200\",\"ua\":\"curl\",\"count\":3},{\"status\":\"404\",\"ua\":\"wget\",\"count\":1},"
+                        + "{\"status\":\"200\",\"ua\":null,\"count\":1}]",
+                OutputFormatTest.toJson(OutputFormat.CBOR, success.toByteArray()));
+    }
+
+    @Test
+    public void testPercentiles_are_validated() {
+        testRunner.setProperty(RollupLTSV.PERCENTILES, "50,101");
+        testRunner.assertNotValid();
+        testRunner.setProperty(RollupLTSV.PERCENTILES, "50,99.9");
+        testRunner.assertValid();
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class RollupTest {
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private static final String LOG = ""
+            + "time:1500000000.5\tstatus:200\thost:a\treqtime:0.1\tuser:u1\n"
+            + "time:1500000010\tstatus:200\thost:a\treqtime:0.3\tuser:u2\n"
+            + "time:1500000020\tstatus:404\thost:a\treqtime:-\tuser:u1\n"
+            + "time:1500000065\tstatus:200\thost:a\treqtime:0.2\tuser:u1\n"
+            + "time:1500000001\tstatus:200\thost:a\treqtime:0.2\tuser:u1\n"
+            + "status:200\thost:a\n"
+            + "time:1500000002\tstatus:500\n"
+            + "broken\n"
+            + "\n";
+
+    @Test
+    public void testGroups_by_fields_and_bucket() throws IOException {
+        final Rollup rollup = rollup(Arrays.asList("status", "host"), "time", new double[]{50, 100},
+                Collections.singletonList("user"), 100);
+        assertEquals("["
+                        + "{\"time\":1500000000000,\"status\":\"200\",\"host\":\"a\",\"count\":3,\"reqtime_sum\":0.6000000000000001,"
+                        + "\"reqtime_min\":0.1,\"reqtime_max\":0.3,\"reqtime_p50\":0.1998668923232057,\"reqtime_p100\":0.3,\"user_distinct\":2},"
+                        + "{\"time\":1500000000000,\"status\":\"404\",\"host\":\"a\",\"count\":1,\"reqtime_sum\":0.0,"
+                        + "\"reqtime_min\":null,\"reqtime_max\":null,\"reqtime_p50\":null,\"reqtime_p100\":null,\"user_distinct\":1},"
+                        + "{\"time\":1500000000000,\"status\":\"500\",\"host\":null,\"count\":1,\"reqtime_sum\":0.0,"
+                        + "\"reqtime_min\":null,\"reqtime_max\":null,\"reqtime_p50\":null,\"reqtime_p100\":null,\"user_distinct\":0},"
+                        + "{\"time\":1500000060000,\"status\":\"200\",\"host\":\"a\",\"count\":1,\"reqtime_sum\":0.2,"
+                        + "\"reqtime_min\":0.2,\"reqtime_max\":0.2,\"reqtime_p50\":0.2,\"reqtime_p100\":0.2,\"user_distinct\":1}]",
+                write(rollup));
+        assertEquals(6, rollup.getLineCount());
+        assertEquals(2, rollup.getSkippedCount());
+        assertEquals(0, rollup.getOverflowCount());
+        assertEquals(4, rollup.getGroupCount());
+    }
+
+    @Test
+    public void testWithout_time_field() throws IOException {
+        final Rollup rollup = rollup(Collections.singletonList("status"), null, new double[0],
+                Collections.<String>emptyList(), 100);
+        assertEquals("[{\"status\":\"200\",\"count\":5,\"reqtime_sum\":0.8,\"reqtime_min\":0.1,\"reqtime_max\":0.3},"
+                        + "{\"status\":\"404\",\"count\":1,\"reqtime_sum\":0.0,\"reqtime_min\":null,\"reqtime_max\":null},"
+                        + "{\"status\":\"500\",\"count\":1,\"reqtime_sum\":0.0,\"reqtime_min\":null,\"reqtime_max\":null}]",
+                write(rollup));
+        assertEquals(1, rollup.getSkippedCount());
+    }
+
+    @Test
+    public void testGroups_beyond_the_limit_overflow() throws IOException {
+        final Rollup rollup = rollup(Collections.singletonList("status"), null, new double[0],
+                Collections.<String>emptyList(), 2);
+        write(rollup);
+        assertEquals(2, rollup.getGroupCount());
+        assertEquals(6, rollup.getLineCount());
+        assertEquals(1, rollup.getOverflowCount());
+    }
+
+    @Test
+    public void testMany_groups() throws IOException {
+        final StringBuilder log = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            log.append("path:/").append(i % 1000).append("\tsize:").append(i).append('\n');
+        }
+        final List<String> group = Collections.singletonList("path");
+        final List<String> measure = Collections.singletonList("size");
+        final LTSVSchema schema = Rollup.createSchema(group, null, measure, Collections.<String>emptyList());
+        final Rollup rollup = new Rollup(schema, group, null, 60000, measure, new double[0],
+                Collections.<String>emptyList(), 10000);
+        RollupLTSV.aggregate(new LTSVTokenizer(new ByteArrayInputStream(log.toString().getBytes(StandardCharsets.UTF_8)),
+                LTSVTokenizer.DEFAULT_BUFFER_SIZE, schema), rollup);
+        assertEquals(1000, rollup.getGroupCount());
+        assertEquals(5000, rollup.getLineCount());
+    }
+
+    @Test
+    public void testBuckets_by_timestamp() throws IOException {
+        final String log = ""
+                + "time:[14/Jul/2017:11:40:00 +0900]\tstatus:200\n"
+                + "time:[14/Jul/2017:11:40:59 +0900]\tstatus:200\n"
+                + "time:2017-07-14T02:41:00Z\tstatus:200\n"
+                + "time:[14/Jul/2017:11:41:00 JST]\tstatus:200\n";
+        final List<String> group = Collections.singletonList("status");
+        final LTSVSchema schema = Rollup.createSchema(group, "time", Collections.<String>emptyList(),
+                Collections.<String>emptyList());
+        final Rollup rollup = new Rollup(schema, group, "time", 60000, Collections.<String>emptyList(), new double[0],
+                Collections.<String>emptyList(), 100);
+        RollupLTSV.aggregate(new LTSVTokenizer(new ByteArrayInputStream(log.getBytes(StandardCharsets.UTF_8)),
+                LTSVTokenizer.DEFAULT_BUFFER_SIZE, schema), rollup);
+        assertEquals("[{\"time\":1500000000000,\"status\":\"200\",\"count\":2},"
+                + "{\"time\":1500000060000,\"status\":\"200\",\"count\":1}]", write(rollup));
+        assertEquals(1, rollup.getSkippedCount());
+    }
+
+    private static Rollup rollup(List<String> groupFields, String timeField, double[] percentiles,
+                                 List<String> distinctFields, int maxGroups) throws IOException {
+        final List<String> measureFields = Collections.singletonList("reqtime");
+        final LTSVSchema schema = Rollup.createSchema(groupFields, timeField, measureFields, distinctFields);
+        final Rollup rollup = new Rollup(schema, groupFields, timeField, 60000, measureFields, percentiles,
+                distinctFields, maxGroups);
+        RollupLTSV.aggregate(new LTSVTokenizer(new ByteArrayInputStream(LOG.getBytes(StandardCharsets.UTF_8)),
+                LTSVTokenizer.DEFAULT_BUFFER_SIZE, schema), rollup);
+        return rollup;
+    }
+
+    private static String write(Rollup rollup) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rollup.write(jsonFactory.createGenerator(out), true);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.apache.nifi.processor.Relationship;
+import org.apache.nifi.util.MockFlowFile;
+import org.apache.nifi.util.TestRunner;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pushes generated FlowFiles through a {@link TestRunner} one batch at a time
+ * and records throughput and peak heap use.
+ * <p>
+ * Peak heap is the largest heap in use right after a garbage collection
+ * while a batch runs, so it counts what the processor keeps alive rather
+ * than garbage waiting to be collected. It is measured above the heap in
+ * use once the batch is enqueued, so the input the mock framework holds is
+ * not counted. What remains of the content is the output, which the mock
+ * session collects in a {@code ByteArrayOutputStream} that doubles as it
+ * grows and then copies. The buffers it outgrew are large enough to live in
+ * the old generation, so a young collection still counts them: together
+ * they take up to twice the final capacity, plus the copy. The budget is
+ * those copies plus a fixed overhead, so a processor that holds its records
+ * in memory exceeds it however large the FlowFile. Budgets are read from
+ * system properties so the soak profile can be tightened or scaled without
+ * code changes:
+ * <ul>
+ * <li>{@code soak.totalBytes}: content pushed through each processor, default 256 MB</li>
+ * <li>{@code soak.flowFileBytes}: size of each FlowFile, default 16 MB</li>
+ * <li>{@code soak.heapOverheadBytes}: peak heap allowed per batch on top of those, default 32 MB</li>
+ * <li>{@code soak.minBytesPerSecond}: minimum content throughput, default 0 (not checked)</li>
+ * <li>{@code soak.minFlowFilesPerSecond}: minimum FlowFile throughput, default 0 (not checked)</li>
+ * </ul>
+ */
+final class SoakHarness {
+
+    private static final long MB = 1024 * 1024;
+
+    /**
+     * Generates the content and attributes of the next FlowFile.
+     */
+    interface Source {
+        byte[] content(int index);
+
+        Map<String, String> attributes(int index);
+    }
+
+    static long totalBytes() {
+        return Long.getLong("soak.totalBytes", 256 * MB);
+    }
+
+    static int flowFileBytes() {
+        return Integer.getInteger("soak.flowFileBytes", (int) (16 * MB));
+    }
+
+    private final String name;
+    private final TestRunner testRunner;
+    private final Relationship success;
+
+    private long flowFiles;
+    private long bytes;
+    private long nanos;
+    private long peakHeapAboveBaseline;
+    private long worstBudget;
+
+    SoakHarness(String name, TestRunner testRunner, Relationship success) {
+        this.name = name;
+        this.testRunner = testRunner;
+        this.success = success;
+    }
+
+    /**
+     * Runs {@code count} FlowFiles from {@code source} through the processor,
+     * {@code batchSize} at a time, and checks every batch against the heap budget.
+     */
+    SoakHarness run(Source source, long count, int batchSize) {
+        final long heapOverhead = Long.getLong("soak.heapOverheadBytes", 32 * MB);
+
+        for (long done = 0; done < count; done += batchSize) {
+            final int batch = (int) Math.min(batchSize, count - done);
+            long batchBytes = 0;
+            for (int i = 0; i < batch; i++) {
+                final byte[] content = source.content((int) (done + i));
+                testRunner.enqueue(content, source.attributes((int) (done + i)));
+                batchBytes += content.length;
+            }
+
+            final long baseline = usedHeapAfterGc();
+            final GcListener listener = GcListener.register();
+            final long start = System.nanoTime();
+            try {
+                testRunner.run(1, false, done == 0);
+            } finally {
+                nanos += System.nanoTime() - start;
+                listener.unregister();
+            }
+            final long peak = Math.max(listener.peak, usedHeapAfterGc()) - baseline;
+
+            final List<MockFlowFile> results = testRunner.getFlowFilesForRelationship(success);
+            assertTrue(name + ": " + results.size() + " of " + batch + " FlowFiles went to success",
+                    results.size() == batch);
+            long outputBytes = 0;
+            long outputHeap = 0;
+            for (MockFlowFile result : results) {
+                outputBytes += result.getSize();
+                outputHeap += mockOutputHeap(result.getSize());
+            }
+            testRunner.clearTransferState();
+
+            final long budget = heapOverhead + outputHeap;
+            assertTrue(String.format(Locale.ROOT, "%s: peak heap %d MB over the %d MB budget for a batch of %d bytes in, %d bytes out",
+                    name, peak / MB, budget / MB, batchBytes, outputBytes), peak <= budget);
+            flowFiles += batch;
+            bytes += batchBytes;
+            peakHeapAboveBaseline = Math.max(peakHeapAboveBaseline, peak);
+            worstBudget = Math.max(worstBudget, budget);
+        }
+        testRunner.run(1, true, false);
+        return this;
+    }
+
+    /**
+     * Prints the results and checks the throughput budgets.
+     */
+    void report() {
+        final double seconds = nanos / 1e9;
+        final double flowFilesPerSecond = flowFiles / seconds;
+        final double bytesPerSecond = bytes / seconds;
+        System.out.println(String.format(Locale.ROOT,
+                "[soak] %s: %d FlowFiles, %d MB in %.2f s: %.0f FlowFiles/s, %.1f MB/s, peak heap %d MB above baseline (budget %d MB)",
+                name, flowFiles, bytes / MB, seconds, flowFilesPerSecond, bytesPerSecond / MB,
+                peakHeapAboveBaseline / MB, worstBudget / MB));
+
+        final double minBytesPerSecond = Double.parseDouble(System.getProperty("soak.minBytesPerSecond", "0"));
+        final double minFlowFilesPerSecond = Double.parseDouble(System.getProperty("soak.minFlowFilesPerSecond", "0"));
+        assertTrue(name + ": " + bytesPerSecond + " bytes/s is below " + minBytesPerSecond,
+                bytesPerSecond >= minBytesPerSecond);
+        assertTrue(name + ": " + flowFilesPerSecond + " FlowFiles/s is below " + minFlowFilesPerSecond,
+                flowFilesPerSecond >= minFlowFilesPerSecond);
+    }
+
+    /**
+     * @return the heap the mock session may hold while it collects output of {@code size} bytes
+     */
+    private static long mockOutputHeap(long size) {
+        long capacity = 32;
+        while (capacity < size) {
+            capacity <<= 1;
+        }
+        return 2 * capacity + size;
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Tracks the largest heap in use after any garbage collection.
+     */
+    private static final class GcListener implements NotificationListener {
+        private final List<NotificationEmitter> emitters = new ArrayList<>();
+        private final Set<String> heapPools = new HashSet<>();
+        private volatile long peak;
+
+        static GcListener register() {
+            final GcListener listener = new GcListener();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    listener.heapPools.add(pool.getName());
+                }
+            }
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (collector instanceof NotificationEmitter) {
+                    ((NotificationEmitter) collector).addNotificationListener(listener, null, null);
+                    listener.emitters.add((NotificationEmitter) collector);
+                }
+            }
+            return listener;
+        }
+
+        @Override
+        public void handleNotification(Notification notification, Object handback) {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+            final GarbageCollectionNotificationInfo info =
+                    GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            long used = 0;
+            for (Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
+                if (heapPools.contains(pool.getKey())) {
+                    used += pool.getValue().getUsed();
+                }
+            }
+            peak = Math.max(peak, used);
+        }
+
+        void unregister() {
+            for (NotificationEmitter emitter : emitters) {
+                try {
+                    emitter.removeNotificationListener(this);
+                } catch (ListenerNotFoundException e) {
+                    // already gone
+                }
+            }
+        }
+    }
+}
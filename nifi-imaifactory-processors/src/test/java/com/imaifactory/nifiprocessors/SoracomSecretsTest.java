@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class SoracomSecretsTest {
+
+    private static final String TIMESTAMP = "1494631852102";
+
+    private static final String FILE = "# Beam groups\n"
+            + "440 = country\n"
+            + "44010 = operator\n"
+            + "440103114938318 = device\n"
+            + "\n"
+            + "440100000000000-440100000009999 = range=with=equals\n"
+            + "440200000000000-440200000000009 = adjacent-a\n"
+            + "440200000000010-440200000000019 = adjacent-b\n";
+
+    @Test
+    public void testNarrowest_match_wins() throws IOException {
+        final SoracomSecrets secrets = SoracomSecrets.load(new StringReader(FILE));
+        assertSecret("device", secrets, "440103114938318");
+        assertSecret("operator", secrets, "440103114938317");
+        assertSecret("operator", secrets, "440103114938319");
+        assertSecret("operator", secrets, "440109999999999");
+        assertSecret("range=with=equals", secrets, "440100000000000");
+        assertSecret("range=with=equals", secrets, "440100000009999");
+        assertSecret("operator", secrets, "440100000010000");
+        assertSecret("country", secrets, "440000000000000");
+        assertSecret("country", secrets, "440110000000000");
+        assertSecret("country", secrets, "440999999999999");
+        assertSecret("adjacent-a", secrets, "440200000000009");
+        assertSecret("adjacent-b", secrets, "440200000000010");
+        assertSecret("country", secrets, "440200000000020");
+    }
+
+    @Test
+    public void testUncovered_or_malformed_imsis() throws IOException {
+        final SoracomSecrets secrets = SoracomSecrets.load(new StringReader(FILE));
+        assertNull(secrets.lookup("439999999999999"));
+        assertNull(secrets.lookup("441000000000000"));
+        assertNull(secrets.lookup("44010311493831"));
+        assertNull(secrets.lookup("4401031149383180"));
+        assertNull(secrets.lookup("44010311493831x"));
+        assertNull(SoracomSecrets.load(new StringReader("")).lookup("440103114938318"));
+    }
+
+    @Test
+    public void testInvalid_files_are_rejected() {
+        assertInvalid("440 secret", "Line 1 has no '='");
+        assertInvalid("440 =", "Line 1 has an empty secret");
+        assertInvalid("44a = secret", "Line 1 is not an IMSI");
+        assertInvalid("4401031149383180 = secret", "Line 1 is not an IMSI");
+        assertInvalid("440100000000009-440100000000000 = secret", "Line 1 is not a range");
+        assertInvalid("440 = a\n440 = b", "Line 2 overlaps line 1");
+        assertInvalid("440100000000000-440100000000010 = a\n440100000000005-440100000000020 = b", "Line 2 overlaps line 1");
+    }
+
+    private static void assertSecret(String secret, SoracomSecrets secrets, String imsi) {
+        assertTrue(secret + " for " + imsi, secrets.lookup(imsi).verify(null, imsi, TIMESTAMP,
+                DigestUtils.sha256Hex(secret + "x-soracom-imsi=" + imsi + "x-soracom-timestamp=" + TIMESTAMP)));
+    }
+
+    private static void assertInvalid(String file, String message) {
+        try {
+            SoracomSecrets.load(new StringReader(file));
+            fail("accepted " + file);
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class SoracomSignatureVerifierTest {
+
+    private static final String SECRET = "topsecret";
+    private static final String IMEI = "359675070019530";
+    private static final String IMSI = "440103114938318";
+    private static final String TIMESTAMP = "1494631852102";
+
+    private final SoracomSignatureVerifier verifier = new SoracomSignatureVerifier(SECRET);
+
+    @Test
+    public void testVerify_with_and_without_imei() {
+        assertTrue(verifier.verify(IMEI, IMSI, TIMESTAMP, DigestUtils.sha256Hex(
+                SECRET + "x-soracom-imei=" + IMEI + "x-soracom-imsi=" + IMSI + "x-soracom-timestamp=" + TIMESTAMP)));
+        assertTrue(verifier.verify(null, IMSI, TIMESTAMP, DigestUtils.sha256Hex(
+                SECRET + "x-soracom-imsi=" + IMSI + "x-soracom-timestamp=" + TIMESTAMP)));
+        assertFalse(verifier.verify(IMEI, IMSI, TIMESTAMP, DigestUtils.sha256Hex(
+                SECRET + "x-soracom-imsi=" + IMSI + "x-soracom-timestamp=" + TIMESTAMP)));
+    }
+
+    @Test
+    public void testVerify_is_repeatable_on_one_thread() {
+        final String signature = DigestUtils.sha256Hex(SECRET + "x-soracom-imsi=" + IMSI + "x-soracom-timestamp=" + TIMESTAMP);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(verifier.verify(null, IMSI, TIMESTAMP, signature));
+            assertFalse(verifier.verify(null, IMSI, "1494631852103", signature));
+        }
+    }
+
+    @Test
+    public void testVerify_non_ascii_values_and_secret() {
+        final SoracomSignatureVerifier verifier = new SoracomSignatureVerifier("秘密");
+        final String imsi = "44010311493831é";
+        assertTrue(verifier.verify(null, imsi, TIMESTAMP, DigestUtils.sha256Hex(
+                "秘密" + "x-soracom-imsi=" + imsi + "x-soracom-timestamp=" + TIMESTAMP)));
+    }
+
+    @Test
+    public void testVerify_rejects_malformed_signatures() {
+        final String signature = DigestUtils.sha256Hex(SECRET + "x-soracom-imsi=" + IMSI + "x-soracom-timestamp=" + TIMESTAMP);
+        assertTrue(verifier.verify(null, IMSI, TIMESTAMP, signature.toUpperCase()));
+        assertFalse(verifier.verify(null, IMSI, TIMESTAMP, "INVALID_SIGNATURE"));
+        assertFalse(verifier.verify(null, IMSI, TIMESTAMP, signature.substring(2)));
+        assertFalse(verifier.verify(null, IMSI, TIMESTAMP, signature + "00"));
+        assertFalse(verifier.verify(null, IMSI, TIMESTAMP, "zz" + signature.substring(2)));
+        assertFalse(verifier.verify(null, IMSI, TIMESTAMP, ""));
+    }
+
+    @Test
+    public void testVerify_from_many_threads() throws InterruptedException {
+        final AtomicInteger failures = new AtomicInteger();
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final String imsi = IMSI.substring(0, 14) + t;
+            final String signature = DigestUtils.sha256Hex(SECRET + "x-soracom-imsi=" + imsi + "x-soracom-timestamp=" + TIMESTAMP);
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        if (!verifier.verify(null, imsi, TIMESTAMP, signature)) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, failures.get());
+    }
+}
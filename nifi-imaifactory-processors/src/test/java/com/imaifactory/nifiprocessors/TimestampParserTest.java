@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.imaifactory.nifiprocessors;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class TimestampParserTest {
+
+    private static final DateTimeFormatter COMMON_LOG = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH);
+
+    @Test
+    public void testCommon_log_format() {
+        final TimestampParser parser = new TimestampParser();
+        assertEquals(1792299845000L, parse(parser, "[18/Oct/2026:14:04:05 +0900]"));
+        assertEquals(32400, parser.getOffsetSeconds());
+        assertEquals(1792299845000L, parse(parser, "18/Oct/2026:14:04:05 +0900"));
+        assertEquals(1792299845000L, parse(parser, "18/Oct/2026:05:04:05 +0000"));
+        assertEquals(1792299845000L, parse(parser, "17/Oct/2026:23:34:05 -0530"));
+        assertEquals(-19800, parser.getOffsetSeconds());
+        assertEquals(951782400000L, parse(parser, "29/Feb/2000:00:00:00 +0000"));
+    }
+
+    @Test
+    public void testIso_8601() {
+        final TimestampParser parser = new TimestampParser();
+        assertEquals(1792299845000L, parse(parser, "2026-10-18T14:04:05+09:00"));
+        assertEquals(1792299845123L, parse(parser, "2026-10-18T14:04:05.1239+09:00"));
+        assertEquals(1792299845500L, parse(parser, "2026-10-18 14:04:05.5+0900"));
+        assertEquals(1792299845000L, parse(parser, "2026-10-18T14:04:05+09"));
+        assertEquals(1792299845000L, parse(parser, "2026-10-18T05:04:05Z"));
+        assertEquals(1792299845000L, parse(parser, "2026-10-18T05:04:05"));
+        assertEquals(0, parser.getOffsetSeconds());
+    }
+
+    @Test
+    public void testInvalid_values() {
+        final TimestampParser parser = new TimestampParser();
+        final String[] values = {
+                "", "[]", "1792299845", "18/Okt/2026:14:04:05 +0900", "18/Oct/2026:24:04:05 +0900",
+                "29/Feb/2026:14:04:05 +0900", "18/Oct/2026:14:04:05 +1900", "18/Oct/2026 14:04:05 +0900",
+                "2026-13-18T14:04:05Z", "2026-10-18T14:60:05Z", "2026-10-18T14:04:05.Z", "2026-10-18T14:04:05+9",
+                "2026-10-18T14:04:05 +09:00", "2026-10-18X14:04:05Z", "2026-10-18T14:04:05+09:00:00"
+        };
+        for (String value : values) {
+            assertEquals(value, TimestampParser.INVALID, parse(parser, value));
+        }
+    }
+
+    @Test
+    public void testCache_is_keyed_by_second_and_offset() {
+        final TimestampParser parser = new TimestampParser();
+        assertEquals(1792299845100L, parse(parser, "2026-10-18T14:04:05.1+09:00"));
+        assertEquals(1792299845200L, parse(parser, "2026-10-18T14:04:05.2+09:00"));
+        assertEquals(1792332245200L, parse(parser, "2026-10-18T14:04:05.2-00:00"));
+        assertEquals(1792299846000L, parse(parser, "2026-10-18T14:04:06+09:00"));
+        assertEquals(TimestampParser.INVALID, parse(parser, "2026-10-18T14:04:06+09:0x"));
+        assertEquals(1792299846000L, parse(parser, "2026-10-18T14:04:06+09:00"));
+    }
+
+    @Test
+    public void testFormat_iso_8601() {
+        final TimestampParser parser = new TimestampParser();
+        parse(parser, "[18/Oct/2026:14:04:05 +0900]");
+        assertEquals("2026-10-18T14:04:05.000+09:00", format(parser));
+        parse(parser, "2026-10-18T14:04:05.25+09:00");
+        assertEquals("2026-10-18T14:04:05.250+09:00", format(parser));
+        parse(parser, "2026-10-18T05:04:05.007Z");
+        assertEquals("2026-10-18T05:04:05.007+00:00", format(parser));
+        parse(parser, "01/Jan/1969:00:30:00 +0100");
+        assertEquals("1969-01-01T00:30:00.000+01:00", format(parser));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFormat_after_invalid_value() {
+        final TimestampParser parser = new TimestampParser();
+        parse(parser, "2026-10-18T14:04:05Z");
+        parse(parser, "-");
+        parser.formatIso8601();
+    }
+
+    @Test
+    public void testAgrees_with_java_time() {
+        final TimestampParser parser = new TimestampParser();
+        final Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            final long second = (long) (random.nextDouble() * 8000000000L) - 1000000000L;
+            final ZoneOffset offset = ZoneOffset.ofTotalSeconds((random.nextInt(57) - 28) * 1800);
+            final OffsetDateTime time = Instant.ofEpochSecond(second).atOffset(offset);
+            assertEquals(time.toString(), second * 1000, parse(parser, "[" + COMMON_LOG.format(time) + "]"));
+            assertEquals(time.toString(), second * 1000, parse(parser, time.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME)));
+            assertEquals(time, OffsetDateTime.parse(format(parser)));
+        }
+    }
+
+    private static long parse(TimestampParser parser, String value) {
+        final byte[] bytes = ("x" + value + "y").getBytes(StandardCharsets.UTF_8);
+        return parser.parse(bytes, 1, bytes.length - 2);
+    }
+
+    private static String format(TimestampParser parser) {
+        return new String(parser.formatIso8601(), 0, TimestampParser.ISO_8601_LENGTH, StandardCharsets.US_ASCII);
+    }
+}
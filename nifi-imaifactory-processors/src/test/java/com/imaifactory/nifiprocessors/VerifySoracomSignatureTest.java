@@ -19,15 +19,18 @@ package com.imaifactory.nifiprocessors;
 import org.apache.nifi.flowfile.FlowFile;
 import org.apache.nifi.processor.ProcessSession;
 import org.apache.nifi.processor.io.StreamCallback;
-import org.apache.nifi.stream.io.BufferedOutputStream;
 import org.apache.nifi.util.TestRunner;
 import org.apache.nifi.util.TestRunners;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -135,5 +138,94 @@ public class VerifySoracomSignatureTest {
 
     }
 
+    @Test
+    public void testProcessor_batch_routes_each_flowfile_on_its_own() {
+        testRunner.setProperty(VerifySoracomSignature.SECRET, "topsecret");
+        testRunner.setProperty(VerifySoracomSignature.SORACOM_SIGNATURE_VERSION, "20151001");
+        testRunner.setProperty(VerifySoracomSignature.BATCH_SIZE, "3");
+
+        for (int i = 0; i < 5; i++) {
+            String imsi = "44010311493831" + i;
+            String timestamp = "1494631852102";
+            Map<String,String>  attributes = new HashMap<>();
+            attributes.put("http.headers.x-soracom-signature", i % 2 == 0
+                    ? org.apache.commons.codec.digest.DigestUtils.sha256Hex(
+                            "topsecret" + "x-soracom-imsi=" + imsi + "x-soracom-timestamp=" + timestamp)
+                    : "INVALID_SIGNATURE");
+            attributes.put("http.headers.x-soracom-signature-version","20151001");
+            attributes.put("http.headers.x-soracom-timestamp",timestamp);
+            attributes.put("http.headers.x-soracom-imsi",imsi);
+            testRunner.enqueue(new byte[0], attributes);
+        }
+
+        testRunner.run();
+        testRunner.assertTransferCount(VerifySoracomSignature.REL_SUCCESS, 2);
+        testRunner.assertTransferCount(VerifySoracomSignature.REL_FAILURE, 1);
+        testRunner.assertQueueNotEmpty();
+
+        testRunner.run();
+        testRunner.assertTransferCount(VerifySoracomSignature.REL_SUCCESS, 3);
+        testRunner.assertTransferCount(VerifySoracomSignature.REL_FAILURE, 2);
+        testRunner.assertQueueEmpty();
+    }
+
+    @Test
+    public void testProcessor_stale_and_replayed_requests() {
+        testRunner.setProperty(VerifySoracomSignature.SECRET, "topsecret");
+        testRunner.setProperty(VerifySoracomSignature.TIMESTAMP_SKEW_WINDOW, "5 mins");
+
+        String imsi = "440103114938318";
+        String now = String.valueOf(System.currentTimeMillis());
+        String stale = String.valueOf(System.currentTimeMillis() - 10 * 60 * 1000);
+        testRunner.enqueue(new byte[0], signedAttributes(imsi, now));
+        testRunner.enqueue(new byte[0], signedAttributes(imsi, now));
+        testRunner.enqueue(new byte[0], signedAttributes(imsi, stale));
+        testRunner.run();
+
+        testRunner.assertTransferCount(VerifySoracomSignature.REL_SUCCESS, 1);
+        testRunner.assertTransferCount(VerifySoracomSignature.REL_REPLAY, 1);
+        testRunner.assertTransferCount(VerifySoracomSignature.REL_FAILURE, 1);
+        testRunner.getFlowFilesForRelationship(VerifySoracomSignature.REL_FAILURE).get(0)
+                .assertAttributeEquals("http.headers.x-soracom-timestamp", stale);
+    }
+
+    @Test
+    public void testProcessor_secrets_file() throws IOException {
+        File file = File.createTempFile("soracom-secrets", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "44010 = group-a\n44020 = group-b\n".getBytes(StandardCharsets.UTF_8));
+
+        testRunner.setProperty(VerifySoracomSignature.SECRET, "topsecret");
+        testRunner.setProperty(VerifySoracomSignature.SECRETS_FILE, file.getAbsolutePath());
+        testRunner.enqueue(new byte[0], signedAttributes("group-a", "440103114938318", "1494631852102"));
+        testRunner.enqueue(new byte[0], signedAttributes("group-b", "440203114938318", "1494631852102"));
+        testRunner.enqueue(new byte[0], signedAttributes("topsecret", "440303114938318", "1494631852102"));
+        testRunner.enqueue(new byte[0], signedAttributes("group-b", "440103114938318", "1494631852102"));
+        testRunner.run();
+
+        testRunner.assertTransferCount(VerifySoracomSignature.REL_SUCCESS, 3);
+        testRunner.assertTransferCount(VerifySoracomSignature.REL_FAILURE, 1);
+    }
+
+    @Test
+    public void testProcessor_requires_a_secret() {
+        testRunner.assertNotValid();
+        testRunner.setProperty(VerifySoracomSignature.SECRET, "topsecret");
+        testRunner.assertValid();
+    }
+
+    private static Map<String, String> signedAttributes(String imsi, String timestamp) {
+        return signedAttributes("topsecret", imsi, timestamp);
+    }
+
+    private static Map<String, String> signedAttributes(String secret, String imsi, String timestamp) {
+        Map<String,String>  attributes = new HashMap<>();
+        attributes.put("http.headers.x-soracom-signature", org.apache.commons.codec.digest.DigestUtils.sha256Hex(
+                secret + "x-soracom-imsi=" + imsi + "x-soracom-timestamp=" + timestamp));
+        attributes.put("http.headers.x-soracom-signature-version","20151001");
+        attributes.put("http.headers.x-soracom-timestamp",timestamp);
+        attributes.put("http.headers.x-soracom-imsi",imsi);
+        return attributes;
+    }
 
 }